@@ -0,0 +1,12 @@
+#!/bin/sh
+# Runs the JMH benchmarks with the GC profiler (allocation rate per operation) and saves the results under the
+# current commit, so two commits can be compared with
+#    java -cp benchmarks/target/benchmarks.jar bench.Compare benchmarks/results/<old>.csv benchmarks/results/<new>.csv
+# Extra arguments go to JMH, e.g. run.sh NeuralNetBench -p topology=FINGER
+cd "$(dirname "$0")/.." || exit 1
+mkdir -p benchmarks/results
+commit=$(git rev-parse --short HEAD)
+if ! git diff --quiet HEAD -- src; then
+   commit="$commit-dirty"
+fi
+java -jar benchmarks/target/benchmarks.jar -prof gc -rf csv -rff "benchmarks/results/$commit.csv" "$@"
@@ -0,0 +1,119 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two result files written by run.sh, e.g. from the commits before and after a change. Prints every
+ * benchmark's throughput and allocation per operation in both, and the ratio new / old, so a speedup shows as more
+ * than 1.00x throughput and less than 1.00x allocation.
+ *
+ *    java -cp benchmarks/target/benchmarks.jar bench.Compare benchmarks/results/a1b2c3d.csv benchmarks/results/e4f5a6b.csv
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public final class Compare
+{
+   /**
+    * The GC profiler's allocation per operation, the secondary result compared next to the score.
+    */
+   private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+   private Compare()
+   {
+   }
+
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length != 2)
+      {
+         System.err.println("Usage: bench.Compare <old results.csv> <new results.csv>");
+         System.exit(1);
+      }
+
+      Map<String, double[]> before = read(args[0]);
+      Map<String, double[]> after = read(args[1]);
+
+      System.out.printf("%-60s %14s %14s %8s %12s %12s %8s%n", "Benchmark", "old ops/s", "new ops/s", "ratio",
+         "old B/op", "new B/op", "ratio");
+      for (Map.Entry<String, double[]> entry : after.entrySet())
+      {
+         double[] old = before.get(entry.getKey());
+         double[] now = entry.getValue();
+         if (old == null)
+         {
+            System.out.printf("%-60s %14s %14.1f%n", entry.getKey(), "-", now[0]);
+            continue;
+         }
+         System.out.printf("%-60s %14.1f %14.1f %7.2fx %12.1f %12.1f %7s%n", entry.getKey(), old[0], now[0],
+            now[0] / old[0], old[1], now[1], old[1] == 0.0 ? "-" : String.format("%.2fx", now[1] / old[1]));
+      }
+   } // public static void main(String[] args)
+
+   /**
+    * Reads a JMH csv result file.
+    *
+    * @return for every benchmark and parameter combination, its score and allocation per operation (NaN if the GC
+    *         profiler was not used), in file order.
+    */
+   private static Map<String, double[]> read(String file) throws IOException
+   {
+      List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+      List<String> header = split(lines.get(0));
+      int score = header.indexOf("Score");
+
+      Map<String, double[]> results = new LinkedHashMap<>();
+      for (String line : lines.subList(1, lines.size()))
+      {
+         List<String> fields = split(line);
+         String name = fields.get(0);
+         int secondary = name.indexOf(':');
+         String metric = secondary < 0 ? "" : name.substring(secondary + 1);
+         if (secondary >= 0)
+         {
+            name = name.substring(0, secondary);
+         }
+
+         StringBuilder key = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+         for (int i = 0; i < header.size(); i++)
+         {
+            if (header.get(i).startsWith("Param: ") && !fields.get(i).isEmpty())
+            {
+               key.append(' ').append(fields.get(i));
+            }
+         }
+
+         double[] result = results.computeIfAbsent(key.toString(), k -> new double[] {Double.NaN, Double.NaN});
+         double value = Double.parseDouble(fields.get(score));
+         if (metric.isEmpty())
+         {
+            result[0] = value;
+         }
+         else if (metric.endsWith(ALLOCATION))
+         {
+            result[1] = value;
+         }
+      } // for (String line : lines.subList(1, lines.size()))
+      return results;
+   } // private static Map<String, double[]> read(String file)
+
+   /**
+    * Splits one csv line; JMH quotes text fields and never puts quotes inside them.
+    */
+   private static List<String> split(String line)
+   {
+      List<String> fields = new ArrayList<>();
+      for (String field : line.split(",", -1))
+      {
+         fields.add(field.startsWith("\"") && field.endsWith("\"") && field.length() >= 2 ?
+            field.substring(1, field.length() - 1) : field);
+      }
+      return fields;
+   }
+} // public final class Compare
@@ -0,0 +1,92 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DibDump converting a bitmap to a pel file (bmpToPelFile, which writes only the pel text), the same with the opt-in
+ * verification bitmap written as well (bmpToPelFileVerified, see setVerifyFileName) and, for comparison, decoding it
+ * straight into input activations (decodeToInputs). Run from the repository root.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class DibDumpBench
+{
+   @Param({"FingerFiles/one.bmp", "BMP/test1.bmp"})
+   private String bitmap;
+
+   private Object dib;
+   private Object verifyingDib;
+   private File pelFile;
+   private File verifyFile;
+   private double[] inputs;
+
+   @Setup(Level.Trial)
+   public void build() throws Throwable
+   {
+      if (!new File(bitmap).isFile())
+      {
+         throw new IOException(bitmap + " not found; run the benchmarks from the repository root");
+      }
+      dib = Engines.NEW_DIB_DUMP.invokeExact();
+      Engines.SET_VERBOSE.invokeExact(dib, false);
+      pelFile = File.createTempFile("bench", ".txt");
+      if (!(boolean) Engines.BMP_TO_PEL_FILE.invokeExact(dib, bitmap, pelFile.getPath()))
+      {
+         throw new IOException("Could not convert " + bitmap);
+      }
+      inputs = new double[(int) Engines.DIB_WIDTH.invokeExact(dib) * (int) Engines.DIB_HEIGHT.invokeExact(dib)];
+
+      verifyingDib = Engines.NEW_DIB_DUMP.invokeExact();
+      Engines.SET_VERBOSE.invokeExact(verifyingDib, false);
+      verifyFile = File.createTempFile("bench", ".bmp");
+      Engines.SET_VERIFY_FILE_NAME.invokeExact(verifyingDib, verifyFile.getPath());
+   }
+
+   @TearDown(Level.Trial)
+   public void clean()
+   {
+      pelFile.delete();
+      verifyFile.delete();
+   }
+
+   @Benchmark
+   public boolean bmpToPelFile() throws Throwable
+   {
+      return (boolean) Engines.BMP_TO_PEL_FILE.invokeExact(dib, bitmap, pelFile.getPath());
+   }
+
+   @Benchmark
+   public boolean bmpToPelFileVerified() throws Throwable
+   {
+      return (boolean) Engines.BMP_TO_PEL_FILE.invokeExact(verifyingDib, bitmap, pelFile.getPath());
+   }
+
+   @Benchmark
+   public double[] decodeToInputs() throws Throwable
+   {
+      Engines.DECODE_TO_INPUTS.invokeExact(dib, bitmap, inputs);
+      return inputs;
+   }
+} // public class DibDumpBench
@@ -0,0 +1,179 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Bindings to the network and DibDump classes. They live in the default package, which Java code in a package cannot
+ * name and JMH does not allow benchmarks in, so the benchmarks call them through these method handles. The handles
+ * are static final, so the JIT inlines them like direct calls and the measured code is the same as the callers'.
+ * Private members (NeuralNet's weights and trainSet, Perceptron's weights) are reached with a private lookup.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+final class Engines
+{
+   private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+   static final Class<?> DATASET = load("Dataset");
+   static final Class<?> NEURAL_NET = load("NeuralNet");
+   static final Class<?> PERCEPTRON = load("Perceptron");
+   static final Class<?> DIB_DUMP = load("DibDump");
+
+   /**
+    * new Dataset(numInputNodes, hiddenLayer, numOutputNodes, inputSets, expected)
+    */
+   static final MethodHandle NEW_DATASET = constructor(DATASET, int.class, int[].class, int.class, double[][].class,
+      double[][].class);
+
+   /**
+    * new NeuralNet(dataset)
+    */
+   static final MethodHandle NEW_NEURAL_NET = constructor(NEURAL_NET, DATASET);
+
+   static final MethodHandle SET_GRADIENT_DEFAULT = virtual(NEURAL_NET, "setGradientDefault", void.class);
+   static final MethodHandle FILL_ACTIVATIONS = virtual(NEURAL_NET, "fillActivations", void.class, int.class);
+   static final MethodHandle BACK_PROP = virtual(NEURAL_NET, "backProp", void.class);
+   static final MethodHandle TRAIN_SET = virtual(NEURAL_NET, "trainSet", double.class, double[].class, int.class);
+   static final MethodHandle NEURAL_NET_WEIGHT = getter(NEURAL_NET, "weight", double[][][].class);
+
+   /**
+    * new Perceptron(networkStructure, askForWeights)
+    */
+   static final MethodHandle NEW_PERCEPTRON = constructor(PERCEPTRON, int[].class, boolean.class);
+
+   /**
+    * Perceptron.setTrainingData(inputs, outputs, iterations, learningRate, threshold, min, max)
+    */
+   static final MethodHandle SET_TRAINING_DATA = staticMethod(PERCEPTRON, "setTrainingData", void.class,
+      double[][].class, double[][].class, int.class, double.class, double.class, double.class, double.class);
+
+   static final MethodHandle CALCULATE_OUTPUT_VALUE = virtual(PERCEPTRON, "calculateOutputValue", void.class,
+      int.class);
+   static final MethodHandle PERCEPTRON_BACK_PROP = virtual(PERCEPTRON, "backProp", void.class, int.class);
+   static final MethodHandle PERCEPTRON_WEIGHTS = getter(PERCEPTRON, "all_weights", double[][][].class);
+
+   /**
+    * new DibDump()
+    */
+   static final MethodHandle NEW_DIB_DUMP = constructor(DIB_DUMP);
+   static final MethodHandle SET_VERBOSE = setter(DIB_DUMP, "verbose", boolean.class);
+   static final MethodHandle SET_VERIFY_FILE_NAME = virtual(DIB_DUMP, "setVerifyFileName", void.class, String.class);
+   static final MethodHandle BMP_TO_PEL_FILE = virtual(DIB_DUMP, "bmpToPelFile", boolean.class, String.class,
+      String.class);
+   static final MethodHandle DECODE_TO_INPUTS = virtual(DIB_DUMP, "decodeToInputs", void.class, String.class,
+      double[].class);
+   static final MethodHandle DIB_WIDTH = getter(DIB_DUMP, "bmpInfoHeader_biWidth", int.class);
+   static final MethodHandle DIB_HEIGHT = getter(DIB_DUMP, "bmpInfoHeader_biHeight", int.class);
+
+   private Engines()
+   {
+   }
+
+   private static Class<?> load(String name)
+   {
+      try
+      {
+         return Class.forName(name);
+      }
+      catch (ClassNotFoundException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   private static MethodHandles.Lookup privateLookup(Class<?> owner) throws IllegalAccessException
+   {
+      return MethodHandles.privateLookupIn(owner, LOOKUP);
+   }
+
+   /**
+    * A constructor, typed to take and return Object in place of the default package classes, so callers need not
+    * name them.
+    */
+   private static MethodHandle constructor(Class<?> owner, Class<?>... parameters)
+   {
+      try
+      {
+         MethodHandle handle = privateLookup(owner).findConstructor(owner, MethodType.methodType(void.class,
+            parameters));
+         return handle.asType(erase(handle.type()).changeReturnType(Object.class));
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   /**
+    * An instance method, typed to take the receiver (and any default package class) as an Object.
+    */
+   private static MethodHandle virtual(Class<?> owner, String name, Class<?> result, Class<?>... parameters)
+   {
+      try
+      {
+         MethodHandle handle = privateLookup(owner).findVirtual(owner, name, MethodType.methodType(result,
+            parameters));
+         return handle.asType(erase(handle.type()));
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   /**
+    * The type with every default package class (none has a package) replaced by Object.
+    */
+   private static MethodType erase(MethodType type)
+   {
+      for (int i = 0; i < type.parameterCount(); i++)
+      {
+         if (!type.parameterType(i).isPrimitive() && !type.parameterType(i).isArray() &&
+            type.parameterType(i).getPackageName().isEmpty())
+         {
+            type = type.changeParameterType(i, Object.class);
+         }
+      }
+      return type;
+   }
+
+   private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> result, Class<?>... parameters)
+   {
+      try
+      {
+         return privateLookup(owner).findStatic(owner, name, MethodType.methodType(result, parameters));
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   private static MethodHandle getter(Class<?> owner, String name, Class<?> type)
+   {
+      try
+      {
+         MethodHandle handle = privateLookup(owner).findGetter(owner, name, type);
+         return handle.asType(handle.type().changeParameterType(0, Object.class));
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+
+   private static MethodHandle setter(Class<?> owner, String name, Class<?> type)
+   {
+      try
+      {
+         MethodHandle handle = privateLookup(owner).findSetter(owner, name, type);
+         return handle.asType(handle.type().changeParameterType(0, Object.class));
+      }
+      catch (ReflectiveOperationException e)
+      {
+         throw new ExceptionInInitializerError(e);
+      }
+   }
+} // final class Engines
@@ -0,0 +1,84 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NeuralNet's forward pass, back propagation and one training epoch (trainSet over every set, which is what each
+ * iteration of trainNeural does apart from its printing and checkpointing). NeuralNet always has two hidden layers, so
+ * it runs ALL (2-4-6-3) and FINGER (2500-10-50-5); XOR (2-2-1) is measured on Perceptron.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class NeuralNetBench
+{
+   @Param({"ALL", "FINGER"})
+   private Topology topology;
+
+   private Object net;
+   private double[][] inputSets;
+   private double[][][] weight;
+
+   @Setup(Level.Trial)
+   public void build() throws Throwable
+   {
+      inputSets = topology.inputSets();
+      Object dataset = Engines.NEW_DATASET.invokeExact(topology.getInputs(), topology.getHidden(),
+         topology.getOutputs(), inputSets, topology.expected());
+      net = Engines.NEW_NEURAL_NET.invokeExact(dataset);
+      Engines.SET_GRADIENT_DEFAULT.invokeExact(net);
+      weight = (double[][][]) Engines.NEURAL_NET_WEIGHT.invokeExact(net);
+   }
+
+   /**
+    * Every iteration starts from the same weights, since backProp and epoch change them.
+    */
+   @Setup(Level.Iteration)
+   public void reseed() throws Throwable
+   {
+      Topology.seedWeights(weight);
+      double error = (double) Engines.TRAIN_SET.invokeExact(net, inputSets[0], 0);  // Loads set 0's inputs.
+      Topology.seedWeights(weight);
+   }
+
+   @Benchmark
+   public void fillActivations() throws Throwable
+   {
+      Engines.FILL_ACTIVATIONS.invokeExact(net, 0);
+   }
+
+   @Benchmark
+   public void backProp() throws Throwable
+   {
+      Engines.BACK_PROP.invokeExact(net);
+   }
+
+   @Benchmark
+   public double epoch() throws Throwable
+   {
+      double err = 0.0;
+      for (int test = 0; test < inputSets.length; test++)
+      {
+         err += (double) Engines.TRAIN_SET.invokeExact(net, inputSets[test], test);
+      }
+      return err;
+   }
+} // public class NeuralNetBench
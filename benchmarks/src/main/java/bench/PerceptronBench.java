@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Perceptron's forward pass (calculateOutputValue) and back propagation on every topology. Perceptron keeps its
+ * training data in static fields, so each fork runs one topology at a time, which JMH does by default.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+public class PerceptronBench
+{
+   @Param({"XOR", "ALL", "FINGER"})
+   private Topology topology;
+
+   private Object perceptron;
+   private double[][][] weights;
+
+   @Setup(Level.Trial)
+   public void build() throws Throwable
+   {
+      Engines.SET_TRAINING_DATA.invokeExact(topology.inputSets(), topology.expected(), 1, 0.3, 0.01, -1.0, 1.0);
+      perceptron = Engines.NEW_PERCEPTRON.invokeExact(topology.getStructure(), false);
+      weights = (double[][][]) Engines.PERCEPTRON_WEIGHTS.invokeExact(perceptron);
+   }
+
+   /**
+    * Every iteration starts from the same weights, since backProp changes them.
+    */
+   @Setup(Level.Iteration)
+   public void reseed() throws Throwable
+   {
+      Topology.seedWeights(weights);
+      Engines.CALCULATE_OUTPUT_VALUE.invokeExact(perceptron, 0);
+   }
+
+   @Benchmark
+   public void calculateOutputValue() throws Throwable
+   {
+      Engines.CALCULATE_OUTPUT_VALUE.invokeExact(perceptron, 0);
+   }
+
+   @Benchmark
+   public void backProp() throws Throwable
+   {
+      Engines.PERCEPTRON_BACK_PROP.invokeExact(perceptron, 0);
+   }
+} // public class PerceptronBench
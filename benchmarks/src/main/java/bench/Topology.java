@@ -0,0 +1,143 @@
+package bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * The networks the benchmarks run, with their training sets. Everything is generated the same way on every run (the
+ * finger images come from FingerFiles/, the weights from a fixed seed), so results are comparable across commits.
+ *
+ *    XOR     2-2-1      the four XOR cases
+ *    ALL     2-4-6-3    the four cases of AND, OR and XOR at once
+ *    FINGER  2500-10-50-5  the ten 50x50 finger images, one output per number of fingers
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public enum Topology
+{
+   XOR(2, new int[] {2}, 1),
+   ALL(2, new int[] {4, 6}, 3),
+   FINGER(2500, new int[] {10, 50}, 5);
+
+   /**
+    * The seed of the benchmark weights.
+    */
+   static final long SEED = 42L;
+
+   /**
+    * The finger images and the number of fingers on each.
+    */
+   private static final String[] FINGERS = {"one", "one_diagonal", "two", "two_diagonal", "three", "four", "five",
+      "three_diagonal", "four_diagonal", "five_diagonal"};
+   private static final int[] COUNTS = {1, 1, 2, 2, 3, 4, 5, 3, 4, 5};
+
+   private final int inputs;
+   private final int[] hidden;
+   private final int outputs;
+
+   Topology(int inputs, int[] hidden, int outputs)
+   {
+      this.inputs = inputs;
+      this.hidden = hidden;
+      this.outputs = outputs;
+   }
+
+   int getInputs()
+   {
+      return inputs;
+   }
+
+   int[] getHidden()
+   {
+      return hidden.clone();
+   }
+
+   int getOutputs()
+   {
+      return outputs;
+   }
+
+   /**
+    * @return the number of nodes in every layer, input first, as Perceptron takes them.
+    */
+   int[] getStructure()
+   {
+      int[] structure = new int[hidden.length + 2];
+      structure[0] = inputs;
+      System.arraycopy(hidden, 0, structure, 1, hidden.length);
+      structure[structure.length - 1] = outputs;
+      return structure;
+   }
+
+   /**
+    * @return the input activations of every training set. FINGER decodes FingerFiles/, so run from the repository
+    *         root.
+    */
+   double[][] inputSets() throws Throwable
+   {
+      if (this == FINGER)
+      {
+         double[][] sets = new double[FINGERS.length][inputs];
+         Object dib = Engines.NEW_DIB_DUMP.invokeExact();
+         Engines.SET_VERBOSE.invokeExact(dib, false);
+         for (int t = 0; t < sets.length; t++)
+         {
+            Engines.DECODE_TO_INPUTS.invokeExact(dib, "FingerFiles/" + FINGERS[t] + ".bmp", sets[t]);
+         }
+         return sets;
+      }
+      return new double[][] {{0.0, 0.0}, {0.0, 1.0}, {1.0, 0.0}, {1.0, 1.0}};
+   } // double[][] inputSets()
+
+   /**
+    * @return the expected outputs of every training set, indexed [set][output].
+    */
+   double[][] expected()
+   {
+      if (this == FINGER)
+      {
+         double[][] expected = new double[FINGERS.length][outputs];
+         for (int t = 0; t < expected.length; t++)
+         {
+            expected[t][COUNTS[t] - 1] = 1.0;
+         }
+         return expected;
+      }
+
+      double[][] expected = new double[4][outputs];
+      for (int t = 0; t < 4; t++)
+      {
+         int a = t >> 1;
+         int b = t & 1;
+         if (this == XOR)
+         {
+            expected[t][0] = a ^ b;
+         }
+         else
+         {
+            expected[t][0] = a & b;
+            expected[t][1] = a | b;
+            expected[t][2] = a ^ b;
+         }
+      }
+      return expected;
+   } // double[][] expected()
+
+   /**
+    * Fills every weight with a random value in -1.0 - 1.0 drawn from SEED, so each iteration starts from the same
+    * network. Works for NeuralNet's square arrays and Perceptron's jagged ones.
+    */
+   static void seedWeights(double[][][] weights)
+   {
+      SplittableRandom random = new SplittableRandom(SEED);
+      for (double[][] layer : weights)
+      {
+         for (double[] row : layer)
+         {
+            for (int j = 0; j < row.length; j++)
+            {
+               row[j] = random.nextDouble(-1.0, 1.0);
+            }
+         }
+      }
+   } // static void seedWeights(double[][][] weights)
+} // public enum Topology
@@ -0,0 +1,264 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds a trainer with augmented training sets made on worker threads, so augmentation overlaps training instead of
+ * preceding it. Workers take the training sets of a Dataset in turn, write a random variant of each (see Augmenter)
+ * into a free buffer, and put it on a bounded queue. When the queue is full the workers block until the trainer
+ * catches up, and since there are only a fixed number of buffers, which the trainer hands back with release(), no
+ * memory is allocated once the pipeline is running.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class AugmentationPipeline
+{
+   /**
+    * One augmented training set.
+    */
+   public static class Sample
+   {
+      private int set;
+      private double[] inputs;
+
+      /**
+       * @return the index of the training set this is a variant of, which selects its expected outputs.
+       */
+      public int getSet()
+      {
+         return set;
+      }
+
+      /**
+       * @return the augmented input activations.
+       */
+      public double[] getInputs()
+      {
+         return inputs;
+      }
+   } // public static class Sample
+
+   private Dataset data;
+   private Augmenter augmenter;
+   private int threads;
+   private long seed;
+
+   /**
+    * Samples ready for the trainer, and empty samples ready for the workers.
+    */
+   private BlockingQueue<Sample> ready;
+   private BlockingQueue<Sample> free;
+
+   private ExecutorService workers;
+   private volatile boolean running;
+
+   /**
+    * The first exception a worker died of, which the trainer's next take() throws.
+    */
+   private volatile Throwable failure;
+
+   /**
+    * Put on the ready queue by a failing worker to wake a trainer waiting in take().
+    */
+   private static final Sample FAILED = new Sample();
+
+   /**
+    * The number of samples handed out so far, which also picks the training set of the next one.
+    */
+   private AtomicLong next = new AtomicLong();
+   private AtomicLong produced = new AtomicLong();
+
+   /**
+    * Samples the trainer has taken, and the time it spent waiting for them, in nanoseconds. Only written by the
+    * trainer's thread.
+    */
+   private long taken;
+   private long waitNanos;
+
+   /**
+    * Constructor for a pipeline. Nothing runs until start() is called.
+    *
+    * @param data      the training sets to augment.
+    * @param augmenter makes the variants. Its image size must match the dataset's input nodes.
+    * @param threads   the number of worker threads.
+    * @param capacity  the number of finished samples that may wait for the trainer.
+    * @param seed      the seed of the random numbers. Each worker gets its own generator split from it.
+    */
+   public AugmentationPipeline(Dataset data, Augmenter augmenter, int threads, int capacity, long seed)
+   {
+      this.data = data;
+      this.augmenter = augmenter;
+      this.threads = Math.max(1, threads);
+      this.seed = seed;
+
+      capacity = Math.max(1, capacity);
+      ready = new ArrayBlockingQueue<Sample>(capacity);
+      free = new ArrayBlockingQueue<Sample>(capacity + this.threads);
+      for (int i = 0; i < capacity + this.threads; i++)           // One buffer per queue slot plus one per worker.
+      {
+         Sample sample = new Sample();
+         sample.inputs = new double[data.getNumInputNodes()];
+         free.add(sample);
+      }
+   } // public AugmentationPipeline(Dataset data, Augmenter augmenter, int threads, int capacity, long seed)
+
+   /**
+    * Starts the worker threads.
+    */
+   public void start()
+   {
+      running = true;
+      workers = Executors.newFixedThreadPool(threads, runnable -> {
+         Thread thread = new Thread(runnable, "Augmentation worker");
+         thread.setDaemon(true);
+         return thread;
+      });
+
+      SplittableRandom root = new SplittableRandom(seed);
+      for (int w = 0; w < threads; w++)
+      {
+         SplittableRandom random = root.split();
+         workers.execute(() -> work(random));
+      }
+   } // public void start()
+
+   /**
+    * The loop each worker runs until the pipeline is closed. If augmenting a sample fails, every worker stops and the
+    * trainer's next take() throws.
+    *
+    * @param random this worker's random number generator.
+    */
+   private void work(SplittableRandom random)
+   {
+      try
+      {
+         while (running)
+         {
+            Sample sample = free.take();
+            sample.set = (int) (next.getAndIncrement() % data.getNumSets());
+            augmenter.augment(data.getInputSets()[sample.set], sample.inputs, random);
+            ready.put(sample);                                     // Blocks while the trainer is behind.
+            produced.incrementAndGet();
+         }
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();                       // close() was called.
+      }
+      catch (Throwable e)
+      {
+         if (failure == null)
+         {
+            failure = e;
+         }
+         running = false;
+         ready.offer(FAILED);                                      // Full means the trainer is not waiting.
+      }
+   } // private void work(SplittableRandom random)
+
+   /**
+    * Waits for the next augmented sample. Hand it back with release() once its inputs have been used.
+    *
+    * @return the sample.
+    * @throws RuntimeException if a worker failed; its exception is the cause.
+    */
+   public Sample take()
+   {
+      long start = System.nanoTime();
+      try
+      {
+         Sample sample = failure == null ? ready.take() : FAILED;
+         if (sample == FAILED)
+         {
+            throw new RuntimeException("Augmentation pipeline failed", failure);
+         }
+         taken++;
+         return sample;
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      }
+      finally
+      {
+         waitNanos += System.nanoTime() - start;
+      }
+   } // public Sample take()
+
+   /**
+    * Returns a sample's buffer to the workers.
+    *
+    * @param sample a sample from take().
+    */
+   public void release(Sample sample)
+   {
+      free.offer(sample);
+   }
+
+   /**
+    * Stops the workers.
+    */
+   public void close()
+   {
+      running = false;
+      if (workers != null)
+      {
+         workers.shutdownNow();
+         try
+         {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   } // public void close()
+
+   /**
+    * @return the dataset being augmented.
+    */
+   public Dataset getDataset()
+   {
+      return data;
+   }
+
+   /**
+    * @return the number of samples the workers have finished.
+    */
+   public long getProduced()
+   {
+      return produced.get();
+   }
+
+   /**
+    * @return the number of samples the trainer has taken.
+    */
+   public long getTaken()
+   {
+      return taken;
+   }
+
+   /**
+    * @return the time the trainer has spent waiting in take(), in nanoseconds.
+    */
+   public long getWaitNanos()
+   {
+      return waitNanos;
+   }
+
+   /**
+    * Prints how many samples were trained on and made, and how long the trainer waited for them. Called by the
+    * trainer's thread once training is over.
+    */
+   public void printReport()
+   {
+      System.out.printf("Trained on %d augmented samples (%d made), waited %.3f ms for augmentation.\n", taken,
+         produced.get(), waitNanos / 1e6);
+   }
+} // public class AugmentationPipeline
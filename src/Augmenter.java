@@ -0,0 +1,134 @@
+import java.util.SplittableRandom;
+
+/**
+ * Makes randomized variants of a grayscale image held as a flat array of pels (one row after the other, as in a pel
+ * file). Each variant is shifted, rotated about the center and scaled by random amounts within the configured limits,
+ * resampled bilinearly (pels past the edge repeat the edge), and then has gaussian noise added. The result is clamped
+ * to 0.0 - 1.0. augment() allocates nothing and an Augmenter holds no state that changes, so one instance can be used
+ * by several threads as long as each passes its own random number generator.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class Augmenter
+{
+   private int width;
+   private int height;
+   private double maxShift;
+   private double maxRotation;
+   private double minScale;
+   private double maxScale;
+   private double noise;
+
+   /**
+    * Constructor for an augmenter.
+    *
+    * @param width       the width of the images.
+    * @param height      the height of the images.
+    * @param maxShift    the largest shift in pels, in each direction.
+    * @param maxRotation the largest rotation in degrees, either way.
+    * @param minScale    the smallest scale factor, e.g. 0.9.
+    * @param maxScale    the largest scale factor, e.g. 1.1.
+    * @param noise       the standard deviation of the noise added to each pel.
+    */
+   public Augmenter(int width, int height, double maxShift, double maxRotation, double minScale, double maxScale,
+                    double noise)
+   {
+      this.width = width;
+      this.height = height;
+      this.maxShift = maxShift;
+      this.maxRotation = Math.toRadians(maxRotation);
+      this.minScale = minScale;
+      this.maxScale = maxScale;
+      this.noise = noise;
+   }
+
+   /**
+    * Constructor for an augmenter with moderate limits: up to 3 pels of shift, 10 degrees of rotation, 10% of scaling
+    * and noise with a standard deviation of 0.02.
+    *
+    * @param width  the width of the images.
+    * @param height the height of the images.
+    */
+   public Augmenter(int width, int height)
+   {
+      this(width, height, 3.0, 10.0, 0.9, 1.1, 0.02);
+   }
+
+   /**
+    * Writes one random variant of src to dst.
+    *
+    * @param src    the image, width * height pels.
+    * @param dst    receives the variant. Must not be src.
+    * @param random the random number generator to draw the transform and noise from.
+    */
+   public void augment(double[] src, double[] dst, SplittableRandom random)
+   {
+      if (src.length != width * height || dst.length != width * height)
+      {
+         throw new IllegalArgumentException("Augmenter expects " + width * height + " pels but got " + src.length +
+            " and " + dst.length);
+      }
+
+      double dx = uniform(random, -maxShift, maxShift);
+      double dy = uniform(random, -maxShift, maxShift);
+      double angle = uniform(random, -maxRotation, maxRotation);
+      double scale = uniform(random, minScale, maxScale);
+      double cos = Math.cos(angle) / scale;
+      double sin = Math.sin(angle) / scale;
+      double cx = (width - 1) / 2.0;
+      double cy = (height - 1) / 2.0;
+
+      for (int y = 0; y < height; y++)
+      {
+         double v = y - cy - dy;
+         for (int x = 0; x < width; x++)
+         {
+            double u = x - cx - dx;
+            double sx = cos * u + sin * v + cx;                 // Maps the target pel back onto the source.
+            double sy = -sin * u + cos * v + cy;
+
+            double pel = sample(src, sx, sy);
+            if (noise > 0.0)
+            {
+               pel += noise * gaussian(random);
+            }
+            dst[y * width + x] = Math.max(0.0, Math.min(1.0, pel));
+         }
+      }
+   } // public void augment(double[] src, double[] dst, SplittableRandom random)
+
+   /**
+    * Bilinearly interpolates src at (sx, sy). Coordinates past the edge are clamped to it.
+    */
+   private double sample(double[] src, double sx, double sy)
+   {
+      sx = Math.max(0.0, Math.min(width - 1, sx));
+      sy = Math.max(0.0, Math.min(height - 1, sy));
+      int x0 = Math.min((int) sx, width - 2 < 0 ? 0 : width - 2);
+      int y0 = Math.min((int) sy, height - 2 < 0 ? 0 : height - 2);
+      int x1 = Math.min(x0 + 1, width - 1);
+      int y1 = Math.min(y0 + 1, height - 1);
+      double fx = sx - x0;
+      double fy = sy - y0;
+
+      double top = src[y0 * width + x0] * (1.0 - fx) + src[y0 * width + x1] * fx;
+      double bottom = src[y1 * width + x0] * (1.0 - fx) + src[y1 * width + x1] * fx;
+      return top * (1.0 - fy) + bottom * fy;
+   }
+
+   /**
+    * @return a random double between min and max.
+    */
+   private static double uniform(SplittableRandom random, double min, double max)
+   {
+      return min == max ? min : random.nextDouble(min, max);
+   }
+
+   /**
+    * @return a normally distributed random double with mean 0 and standard deviation 1 (Box-Muller).
+    */
+   private static double gaussian(SplittableRandom random)
+   {
+      return Math.sqrt(-2.0 * Math.log(1.0 - random.nextDouble())) * Math.cos(2.0 * Math.PI * random.nextDouble());
+   }
+} // public class Augmenter
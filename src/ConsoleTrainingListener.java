@@ -0,0 +1,29 @@
+/**
+ * Prints a training run the way trainNeural always has: a line per iteration and a DEBUG line saying why training
+ * stopped. The console testers (testGradientDescent and Perceptron.main) add one; anything embedding a network adds it
+ * only if it wants the output.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class ConsoleTrainingListener implements TrainingListener
+{
+   public void epochEnded(TrainingEvent event)
+   {
+      System.out.println("Iteration: " + event.getIteration() + " Total Error: " + event.getError());
+   }
+
+   public void thresholdReached(TrainingEvent event)
+   {
+      System.out.println("DEBUG: Error Threshold Reached" + event.getError());
+   }
+
+   public void maxIterationsReached(TrainingEvent event)
+   {
+      System.out.println("DEBUG: Max Iterations Reached");
+   }
+
+   public void checkpointSaved(TrainingEvent event)
+   {
+      System.out.println("Weights saved.");
+   }
+} // public class ConsoleTrainingListener
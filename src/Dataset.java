@@ -0,0 +1,170 @@
+/**
+ * Holds a parsed training set: the network topology named by a config file, the input activations of every
+ * training set, and the expected outputs of every training set. Instances are treated as read-only once built, so a
+ * single Dataset can be shared by every network that trains on it.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class Dataset
+{
+   /**
+    * The number of input nodes. Equal to the number of values read from each pel file.
+    */
+   private int numInputNodes;
+
+   /**
+    * An array of integers that represent the number of nodes in each hidden layer.
+    */
+   private int[] hiddenLayer;
+
+   /**
+    * The number of output nodes.
+    */
+   private int numOutputNodes;
+
+   /**
+    * The number of training sets.
+    */
+   private int numSets;
+
+   /**
+    * 2D array that stores the inputs for each set of training values.
+    */
+   private double[][] inputSets;
+
+   /**
+    * 2D array that stores the expected outputs for each set of training values.
+    */
+   private double[][] expected;
+
+   /**
+    * The resampler the inputs went through, or null if they are the raw pels.
+    */
+   private Resampler resampler;
+
+   /**
+    * Constructor for a dataset. The arrays are kept, not copied.
+    *
+    * @param numInputNodes  the number of input nodes.
+    * @param hiddenLayer    the number of nodes in each hidden layer.
+    * @param numOutputNodes the number of output nodes.
+    * @param inputSets      the inputs of each training set.
+    * @param expected       the expected outputs of each training set.
+    */
+   public Dataset(int numInputNodes, int[] hiddenLayer, int numOutputNodes, double[][] inputSets,
+                  double[][] expected)
+   {
+      this.numInputNodes = numInputNodes;
+      this.hiddenLayer = hiddenLayer;
+      this.numOutputNodes = numOutputNodes;
+      this.inputSets = inputSets;
+      this.expected = expected;
+      numSets = inputSets.length;
+   }
+
+   /**
+    * Constructor for a dataset whose inputs have already been resampled. The arrays are kept, not copied.
+    *
+    * @param numInputNodes  the number of input nodes, the resampler's target size.
+    * @param hiddenLayer    the number of nodes in each hidden layer.
+    * @param numOutputNodes the number of output nodes.
+    * @param inputSets      the resampled inputs of each training set.
+    * @param expected       the expected outputs of each training set.
+    * @param resampler      the resampler the inputs went through, or null.
+    */
+   public Dataset(int numInputNodes, int[] hiddenLayer, int numOutputNodes, double[][] inputSets,
+                  double[][] expected, Resampler resampler)
+   {
+      this(numInputNodes, hiddenLayer, numOutputNodes, inputSets, expected);
+      this.resampler = resampler;
+   }
+
+   /**
+    * Returns a copy of this dataset with every input set passed through a resampler. The expected outputs are
+    * shared. The number of input nodes becomes the resampler's target size.
+    *
+    * @param resampler the resampler. Its source size must equal the number of input nodes.
+    * @return the resampled dataset.
+    */
+   public Dataset resample(Resampler resampler)
+   {
+      if (resampler.getSourceSize() != numInputNodes)
+      {
+         throw new IllegalArgumentException(resampler + " does not match " + numInputNodes + " input nodes");
+      }
+
+      double[][] resampled = new double[numSets][];
+      for (int set = 0; set < numSets; set++)
+      {
+         resampled[set] = resampler.resample(inputSets[set]);
+      }
+      return new Dataset(resampler.getTargetSize(), hiddenLayer, numOutputNodes, resampled, expected, resampler);
+   } // public Dataset resample(Resampler resampler)
+
+   /**
+    * Returns this dataset for a network with other hidden layers. The training sets are shared, not copied.
+    *
+    * @param hiddenLayer the number of nodes in each hidden layer.
+    * @return the dataset.
+    */
+   public Dataset withHiddenLayer(int[] hiddenLayer)
+   {
+      return new Dataset(numInputNodes, hiddenLayer, numOutputNodes, inputSets, expected, resampler);
+   }
+
+   /**
+    * @return the number of input nodes.
+    */
+   public int getNumInputNodes()
+   {
+      return numInputNodes;
+   }
+
+   /**
+    * @return the number of nodes in each hidden layer.
+    */
+   public int[] getHiddenLayer()
+   {
+      return hiddenLayer;
+   }
+
+   /**
+    * @return the number of output nodes.
+    */
+   public int getNumOutputNodes()
+   {
+      return numOutputNodes;
+   }
+
+   /**
+    * @return the number of training sets.
+    */
+   public int getNumSets()
+   {
+      return numSets;
+   }
+
+   /**
+    * @return the inputs of each training set. Must not be modified.
+    */
+   public double[][] getInputSets()
+   {
+      return inputSets;
+   }
+
+   /**
+    * @return the expected outputs of each training set. Must not be modified.
+    */
+   public double[][] getExpected()
+   {
+      return expected;
+   }
+
+   /**
+    * @return the resampler the inputs went through, or null if they are the raw pels.
+    */
+   public Resampler getResampler()
+   {
+      return resampler;
+   }
+} // public class Dataset
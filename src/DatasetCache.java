@@ -0,0 +1,471 @@
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+
+/**
+ * Loads a Dataset from a config file (the format read by NeuralNet(String config)) and keeps a binary copy of the
+ * parsed values next to the config, in "config.cache". The cache is keyed by the config path plus the size, last
+ * modified time, and CRC32 hash of the config and of every pel file it names. On the next run only the files whose
+ * fingerprint changed are parsed again; everything else is read straight back as doubles.
+ *
+ * A config may end with a resample line (see Resampler). The cache always holds the raw pels, and the returned
+ * Dataset has been resampled to the size the line asks for.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class DatasetCache
+{
+   /**
+    * Marks the start of a cache file. Spells "NNDS".
+    */
+   private static final int MAGIC = 0x4E4E4453;
+
+   /**
+    * Bumped whenever the layout of the cache file changes so old caches are ignored.
+    */
+   private static final int VERSION = 2;
+
+   /**
+    * The size of the buffers used for hashing and for cache file I/O.
+    */
+   private static final int BUFFER_SIZE = 1 << 16;
+
+   /**
+    * Size, last modified time, and hash of one file. The hash is only computed when the size or time no longer
+    * matches, so an untouched file costs one stat call.
+    */
+   private static class Fingerprint
+   {
+      private String path;
+      private long size;
+      private long modified;
+      private long hash;
+
+      /**
+       * Reads the size and modified time of a file. The hash is left at -1 until hash() is called.
+       *
+       * @param path the file.
+       */
+      private Fingerprint(String path)
+      {
+         File file = new File(path);
+         this.path = path;
+         size = file.length();
+         modified = file.lastModified();
+         hash = -1L;
+      }
+
+      /**
+       * Constructor for a fingerprint read back from a cache file.
+       */
+      private Fingerprint(String path, long size, long modified, long hash)
+      {
+         this.path = path;
+         this.size = size;
+         this.modified = modified;
+         this.hash = hash;
+      }
+
+      /**
+       * @return true if the size and modified time are the same as other's.
+       */
+      private boolean sameStat(Fingerprint other)
+      {
+         return other != null && size == other.size && modified == other.modified;
+      }
+
+      /**
+       * Computes the CRC32 of the file contents.
+       *
+       * @return the hash.
+       * @throws IOException if the file cannot be read.
+       */
+      private long hash() throws IOException
+      {
+         if (hash == -1L)
+         {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            InputStream in = new FileInputStream(path);
+            try
+            {
+               int read;
+               while ((read = in.read(buffer)) > 0)
+               {
+                  crc.update(buffer, 0, read);
+               }
+            }
+            finally
+            {
+               in.close();
+            }
+            hash = crc.getValue();
+         }
+         return hash;
+      } // private long hash()
+
+      /**
+       * @return true if this file is unchanged from the cached fingerprint. Falls back on the hash when only the
+       * modified time differs (e.g. the file was touched or copied).
+       * @throws IOException if the file cannot be read.
+       */
+      private boolean matches(Fingerprint cached) throws IOException
+      {
+         if (sameStat(cached))
+         {
+            hash = cached.hash;
+            return true;
+         }
+         return cached != null && size == cached.size && hash() == cached.hash;
+      }
+
+      private void write(DataOutputStream out) throws IOException
+      {
+         out.writeUTF(path);
+         out.writeLong(size);
+         out.writeLong(modified);
+         out.writeLong(hash());
+      }
+
+      private static Fingerprint read(DataInputStream in) throws IOException
+      {
+         return new Fingerprint(in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+      }
+   } // private static class Fingerprint
+
+   /**
+    * The contents of a cache file.
+    */
+   private static class Entry
+   {
+      private Fingerprint config;
+      private Dataset data;
+      private Fingerprint[] pelFiles;
+      private Resampler resampler;
+
+      /**
+       * The pel files parse had to read again. Not written to the cache file.
+       */
+      private int reparsed;
+
+      /**
+       * @return the dataset with the config's resample line applied, if it has one.
+       */
+      private Dataset resampled()
+      {
+         return resampler == null ? data : data.resample(resampler);
+      }
+   }
+
+   /**
+    * Loads the dataset named by a config file, using config.cache when it is still valid and rewriting it when
+    * anything had to be parsed again.
+    *
+    * @param config the config file.
+    * @return the parsed dataset.
+    */
+   public static Dataset load(String config)
+   {
+      NetworkEvents.DatasetLoad event = new NetworkEvents.DatasetLoad();
+      event.begin();
+      String cacheFile = config + ".cache";
+      Entry cached = readCache(cacheFile, config);
+      Dataset data = null;
+      int reparsed = 0;
+      try
+      {
+         Fingerprint configPrint = new Fingerprint(config);
+         if (cached != null && configPrint.matches(cached.config))
+         {
+            boolean allMatch = true;
+            boolean touched = !configPrint.sameStat(cached.config);
+            Fingerprint[] pelPrints = new Fingerprint[cached.pelFiles.length];
+            for (int set = 0; set < cached.pelFiles.length && allMatch; set++)
+            {
+               pelPrints[set] = new Fingerprint(cached.pelFiles[set].path);
+               allMatch = pelPrints[set].matches(cached.pelFiles[set]);
+               touched |= !pelPrints[set].sameStat(cached.pelFiles[set]);
+            }
+
+            if (allMatch)
+            {
+               if (touched)                                 // Same contents, new times. Saves hashing next run.
+               {
+                  cached.config = configPrint;
+                  cached.pelFiles = pelPrints;
+                  writeCache(cacheFile, cached);
+               }
+               data = cached.resampled();
+               event.cacheHit = true;
+            }
+         } // Nothing changed. if (cached != null && configPrint.matches(cached.config))
+
+         if (data == null)
+         {
+            Entry entry = parse(config, configPrint, cached);
+            writeCache(cacheFile, entry);
+            data = entry.resampled();
+            reparsed = entry.reparsed;
+         }
+      }
+      catch (IOException e)
+      {
+         throw new RuntimeException(e);
+      }
+
+      event.end();
+      if (event.shouldCommit())
+      {
+         event.config = config;
+         event.sets = data.getNumSets();
+         event.inputs = data.getNumInputNodes();
+         event.reparsed = reparsed;
+         event.commit();
+      }
+      return data;
+   } // public static Dataset load(String config)
+
+   /**
+    * Parses the config file. Pel files whose fingerprint matches the old cache keep their cached row; the rest
+    * are read with a Scanner.
+    *
+    * @param config      the config file.
+    * @param configPrint the fingerprint of the config file.
+    * @param cached      the old cache, or null.
+    * @return the new cache entry.
+    * @throws IOException if a file cannot be read.
+    */
+   private static Entry parse(String config, Fingerprint configPrint, Entry cached) throws IOException
+   {
+      Map<String, double[]> cachedRows = new HashMap<String, double[]>();
+      Map<String, Fingerprint> cachedPrints = new HashMap<String, Fingerprint>();
+      if (cached != null)
+      {
+         for (int set = 0; set < cached.pelFiles.length; set++)
+         {
+            cachedRows.put(cached.pelFiles[set].path, cached.data.getInputSets()[set]);
+            cachedPrints.put(cached.pelFiles[set].path, cached.pelFiles[set]);
+         }
+      }
+
+      Scanner in = new Scanner(new File(config));
+      int numInputNodes = in.nextInt();
+      int[] hiddenLayer = new int[in.nextInt()];
+      for (int i = 0; i < hiddenLayer.length; i++)
+      {
+         hiddenLayer[i] = in.nextInt();
+      }
+      int numOutputNodes = in.nextInt();
+      int numSets = in.nextInt();
+
+      Fingerprint[] pelFiles = new Fingerprint[numSets];
+      double[][] inputSets = new double[numSets][];
+      int reparsed = 0;
+      for (int set = 0; set < numSets; set++)
+      {
+         String pelFile = in.next();
+         pelFiles[set] = new Fingerprint(pelFile);
+         double[] row = cachedRows.get(pelFile);
+
+         if (row != null && row.length == numInputNodes && pelFiles[set].matches(cachedPrints.get(pelFile)))
+         {
+            inputSets[set] = row;
+         }
+         else
+         {
+            inputSets[set] = readPelFile(pelFile, numInputNodes);
+            reparsed++;
+         }
+      } // for (int set = 0; set < numSets; set++)
+
+      double[][] expected = new double[numSets][numOutputNodes];
+      for (int t = 0; t < numSets; t++)
+      {
+         for (int i = 0; i < numOutputNodes; i++)
+         {
+            expected[t][i] = in.nextDouble();
+         }
+      }
+
+      Resampler resampler = null;
+      if (in.hasNext(Resampler.KEYWORD))
+      {
+         in.next();
+         resampler = Resampler.read(in);
+      }
+      in.close();
+
+      Entry entry = new Entry();
+      entry.config = configPrint;
+      entry.pelFiles = pelFiles;
+      entry.data = new Dataset(numInputNodes, hiddenLayer, numOutputNodes, inputSets, expected);
+      entry.resampler = resampler;
+      entry.reparsed = reparsed;
+      return entry;
+   } // private static Entry parse(String config, Fingerprint configPrint, Entry cached)
+
+   /**
+    * Reads the first count doubles of a pel file.
+    *
+    * @param pelFile the pel file written by DibDump.
+    * @param count   the number of values to read.
+    * @return the values.
+    * @throws FileNotFoundException if the file does not exist.
+    */
+   private static double[] readPelFile(String pelFile, int count) throws FileNotFoundException
+   {
+      double[] row = new double[count];
+      Scanner pelReader = new Scanner(new BufferedReader(new FileReader(pelFile), BUFFER_SIZE));
+      for (int k = 0; k < count; k++)
+      {
+         row[k] = pelReader.nextDouble();
+      }
+      pelReader.close();
+      return row;
+   }
+
+   /**
+    * Reads a cache file.
+    *
+    * @param cacheFile the cache file.
+    * @param config    the config the cache must belong to.
+    * @return the cached entry, or null if there is no usable cache.
+    */
+   private static Entry readCache(String cacheFile, String config)
+   {
+      if (!new File(cacheFile).isFile())
+      {
+         return null;
+      }
+
+      try
+      {
+         DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile),
+            BUFFER_SIZE));
+         try
+         {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+               return null;
+            }
+
+            Entry entry = new Entry();
+            entry.config = Fingerprint.read(in);
+            if (!entry.config.path.equals(config))
+            {
+               return null;
+            }
+
+            int numInputNodes = in.readInt();
+            int[] hiddenLayer = new int[in.readInt()];
+            for (int i = 0; i < hiddenLayer.length; i++)
+            {
+               hiddenLayer[i] = in.readInt();
+            }
+            int numOutputNodes = in.readInt();
+            int numSets = in.readInt();
+
+            entry.pelFiles = new Fingerprint[numSets];
+            double[][] inputSets = new double[numSets][numInputNodes];
+            double[][] expected = new double[numSets][numOutputNodes];
+            for (int set = 0; set < numSets; set++)
+            {
+               entry.pelFiles[set] = Fingerprint.read(in);
+               for (int k = 0; k < numInputNodes; k++)
+               {
+                  inputSets[set][k] = in.readDouble();
+               }
+               for (int i = 0; i < numOutputNodes; i++)
+               {
+                  expected[set][i] = in.readDouble();
+               }
+            } // for (int set = 0; set < numSets; set++)
+
+            entry.data = new Dataset(numInputNodes, hiddenLayer, numOutputNodes, inputSets, expected);
+
+            String resampleLine = in.readUTF();          // Empty when the config has no resample line.
+            if (!resampleLine.isEmpty())
+            {
+               Scanner line = new Scanner(resampleLine);
+               line.next();
+               entry.resampler = Resampler.read(line);
+            }
+            return entry;
+         }
+         finally
+         {
+            in.close();
+         }
+      } // Reads the cache file. try{
+      catch (IOException e)
+      {
+         System.err.println("Ignoring unreadable dataset cache " + cacheFile + ": " + e);
+         return null;
+      }
+   } // private static Entry readCache(String cacheFile, String config)
+
+   /**
+    * Writes a cache file. Failing to write the cache is not fatal; the next run simply parses again.
+    *
+    * @param cacheFile the cache file.
+    * @param entry     the entry to save.
+    */
+   private static void writeCache(String cacheFile, Entry entry)
+   {
+      Dataset data = entry.data;
+      File temp = new File(cacheFile + ".tmp");
+      try
+      {
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp),
+            BUFFER_SIZE));
+         try
+         {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            entry.config.write(out);
+
+            out.writeInt(data.getNumInputNodes());
+            out.writeInt(data.getHiddenLayer().length);
+            for (int i = 0; i < data.getHiddenLayer().length; i++)
+            {
+               out.writeInt(data.getHiddenLayer()[i]);
+            }
+            out.writeInt(data.getNumOutputNodes());
+            out.writeInt(data.getNumSets());
+
+            for (int set = 0; set < data.getNumSets(); set++)
+            {
+               entry.pelFiles[set].write(out);
+               for (int k = 0; k < data.getNumInputNodes(); k++)
+               {
+                  out.writeDouble(data.getInputSets()[set][k]);
+               }
+               for (int i = 0; i < data.getNumOutputNodes(); i++)
+               {
+                  out.writeDouble(data.getExpected()[set][i]);
+               }
+            } // for (int set = 0; set < data.getNumSets(); set++)
+
+            out.writeUTF(entry.resampler == null ? "" : entry.resampler.toString());
+         }
+         finally
+         {
+            out.close();
+         }
+
+         File target = new File(cacheFile);
+         if (!temp.renameTo(target))
+         {
+            target.delete();
+            temp.renameTo(target);
+         }
+      } // Writes the cache file. try{
+      catch (IOException e)
+      {
+         System.err.println("Could not write dataset cache " + cacheFile + ": " + e);
+         temp.delete();
+      }
+   } // private static void writeCache(String cacheFile, Entry entry)
+} // public class DatasetCache
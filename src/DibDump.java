@@ -37,6 +37,29 @@
  *                regardless of how it was read in.
  * Rev: 01/10/17  Was using the term 24-bit color when it was 32-bit in the comments. Fixed the documentation to be correct.
  * REV: 12/13/19  Added a warning message if the bmpFileHeader_bfType is not the expected value of 0x4D42 which are the letters BM. This short field is no longer int-swapped.
+ * Rev: 10/19/26  Decoding moved out of bmpToPelFile and main into readBitmap(). The whole file is read (or memory mapped for large
+ *                files) into a little-endian ByteBuffer by readFile(), so the header no longer needs swapInt/swapShort and the pels are
+ *                no longer read one DataInputStream call at a time. The color table is located from biSize and each scan line from
+ *                bfOffBits and the padded row stride, which also fixes files with larger (V4/V5) info headers. topDownDIB is reset per image.
+ * Rev: 10/19/26  The header fields, imageArray and topDownDIB are no longer static, so each DibDump object holds the state of its
+ *                own decode and several DibDump objects can convert images on different threads. Added the verbose flag and
+ *                verifyFileName. See DibDumpBatch for parallel conversion of whole folders.
+ * Rev: 10/19/26  bmpToPelFile split into writePelFile and writeVerificationBitmap. The pel text is streamed through a buffered writer
+ *                using a precomputed string per gray level instead of growing one String per pel (which was quadratic in the image
+ *                size). The test2.bmp verification bitmap is no longer written unless setVerifyFileName is called.
+ * Rev: 10/19/26  readBitmap split into readHeader and decodeRow (one scan line at a time). Added decodeToInputs, which decodes a
+ *                bitmap from a file, byte array or ByteBuffer straight into a caller's double[] or float[] of input activations
+ *                with the same values and order as the pel file, so inference does not go through the disk.
+ * Rev: 10/19/26  colorToGrayscale no longer allocates an RgbQuad per pel. The channel products come from per-channel lookup tables
+ *                (same values, same order of addition) in grayLevel, and grayRow converts a whole row to input activations.
+ * Rev: 10/19/26  decodeRow copies each scan line's pel bytes out with one bulk get and hands them to a decoder for the color depth.
+ *                1, 2 and 4 bit lines expand each byte through a table of the pels for all 256 byte values, and the gray level
+ *                of every color table entry is computed once per image, so decodeGrayRow does no per pel arithmetic for color
+ *                table images. The color table is cleared between images.
+ * Rev: 10/19/26  Added strip-parallel decoding: readBitmap and decodeToInputs can take a thread count and split the rows of a
+ *                (memory mapped) bitmap into bands that are decoded at the same time by a shared pool of daemon workers.
+ * Rev: 10/19/26  biCompression is no longer ignored. BI_RLE8 and BI_RLE4 bitmaps are decoded as a stream, one row at a time, straight
+ *                from the file buffer by decodeRleRow. BI_BITFIELDS 16 and 32 bit bitmaps are decoded with their color masks.
  *
  * Classes in the file:
  *  RgbQuad
@@ -50,14 +73,42 @@
  *  RgbQuad pelToRGB(int pel)
  *  int     rgbToPel(int red, int green, int blue)
  *  int     colorToGrayscale(int pel)
+ *  int     grayLevel(int pel)
+ *  ByteBuffer readFile(String bmpFileName)
+ *  void    readBitmap(String bmpFileName)
+ *  void    readBitmap(ByteBuffer bmp)
+ *  void    readBitmap(String bmpFileName | ByteBuffer bmp, int threads)
+ *  void    decodeToInputs(ByteBuffer bmp, double[] inputs, int threads)
+ *  void    decodeStrips(ByteBuffer in, int threads, double[] inputs)
+ *  void    decodeBand(ByteBuffer view, int firstRow, int endRow, double[] inputs)
+ *  ExecutorService stripPool()
+ *  ByteBuffer readHeader(ByteBuffer bmp)
+ *  void    buildPalletTables()
+ *  void    decodeRow(ByteBuffer in, int row, int[] pels)
+ *  void    decodeGrayRow(ByteBuffer in, int row, int[] levels)
+ *  void    decodeRow(ByteBuffer in, int row, byte[] line, int[] pels, boolean gray)
+ *  void    decode1(byte[] line, int[] pels, int[] expand)
+ *  void    decodePacked(byte[] line, int[] pels, int[] expand, int pelsPerByte)
+ *  void    decode8 / decode16 / decode24 / decode24Gray / decode32 / decode32Gray(byte[] line, int[] pels)
+ *  void    toGrayLevels(int[] pels)
+ *  void    buildBitfields(int redMask, int greenMask, int blueMask)
+ *  void    decodeBitfields(byte[] line, int[] pels)
+ *  void    decodeRleRow(ByteBuffer in, int row, int[] pels, int[] pallet)
+ *  void    decodeToInputs(String bmpFileName | byte[] bmp | ByteBuffer bmp, double[] inputs | float[] inputs)
+ *  void    checkInputLength(int length)
+ *  ByteBuffer readFileReusing(String bmpFileName)
+ *  boolean bmpToPelFile(String bmpFileName, String outputFile)
+ *  void    setVerifyFileName(String verifyFileName)
+ *  void    writePelFile(String outputFile)
+ *  void    writeVerificationBitmap(String outFileName)
  *  void    main(String[] args)
  *  
  * There is a lot of cutting and pasting from various
  * documents dealing with bitmaps and I have not taken the
  * time to clean up the formatting in the comments. The C syntax is
  * included for reference. The types are declared in windows.h. The C
- * structures and data arrays are predefined static so that they don't
- * ever fall out of scope.
+ * structures and data arrays were originally predefined static so that they don't
+ * ever fall out of scope. They are now instance fields (see Rev 10/19/26).
  *
  * I have not "javafied" this file. Much of it needs to be broken out into
  * various specialty methods. These modifications are left as an exercise
@@ -105,6 +156,18 @@
  *   When lossy casts are done (e.g. int to byte) the conversion is done modulo the length of the smaller type.
  */
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /*
  * A member-variable-only class for holding the RGBQUAD C structure elements.
@@ -119,31 +182,121 @@ final class RgbQuad
 
 public class DibDump
    {
+// The BITMAPFILEHEADER is always 14 bytes. The color table starts right after the BITMAPINFOHEADER that follows it.
+   static final int BITMAPFILEHEADER_SIZE = 14;
+// Files at least this large are memory mapped instead of read into a heap buffer
+   static final int MAP_THRESHOLD = 1 << 20;
 // BITMAPFILEHEADER
-   static int bmpFileHeader_bfType;          // WORD
-   static int bmpFileHeader_bfSize;          // DWORD
-   static int bmpFileHeader_bfReserved1;     // WORD
-   static int bmpFileHeader_bfReserved2;     // WORD
-   static int bmpFileHeader_bfOffBits;       // DWORD
+   int bmpFileHeader_bfType;          // WORD
+   int bmpFileHeader_bfSize;          // DWORD
+   int bmpFileHeader_bfReserved1;     // WORD
+   int bmpFileHeader_bfReserved2;     // WORD
+   int bmpFileHeader_bfOffBits;       // DWORD
 // BITMAPINFOHEADER
-   static int bmpInfoHeader_biSize;          // DWORD
-   static int bmpInfoHeader_biWidth;         // LONG
-   static int bmpInfoHeader_biHeight;        // LONG
-   static int bmpInfoHeader_biPlanes;        // WORD
-   static int bmpInfoHeader_biBitCount;      // WORD
-   static int bmpInfoHeader_biCompression;   // DWORD
-   static int bmpInfoHeader_biSizeImage;     // DWORD
-   static int bmpInfoHeader_biXPelsPerMeter; // LONG
-   static int bmpInfoHeader_biYPelsPerMeter; // LONG
-   static int bmpInfoHeader_biClrUsed;       // DWORD
-   static int bmpInfoHeader_biClrImportant;  // DWORD
+   int bmpInfoHeader_biSize;          // DWORD
+   int bmpInfoHeader_biWidth;         // LONG
+   int bmpInfoHeader_biHeight;        // LONG
+   int bmpInfoHeader_biPlanes;        // WORD
+   int bmpInfoHeader_biBitCount;      // WORD
+   int bmpInfoHeader_biCompression;   // DWORD
+   int bmpInfoHeader_biSizeImage;     // DWORD
+   int bmpInfoHeader_biXPelsPerMeter; // LONG
+   int bmpInfoHeader_biYPelsPerMeter; // LONG
+   int bmpInfoHeader_biClrUsed;       // DWORD
+   int bmpInfoHeader_biClrImportant;  // DWORD
 // The true color pels
-   static int[][] imageArray;
+   int[][] imageArray;
 
 // if bmpInfoHeader_biHeight is negative then the image is a top down DIB. This flag is used to
 // identify it as such. Note that when the image is saved, it will be written out in the usual
 // inverted format with a positive bmpInfoHeader_biHeight value.
-   static boolean topDownDIB = false;
+   boolean topDownDIB = false;
+
+// The header fields and imageArray above belong to one DibDump object, so separate DibDump objects can decode on
+// separate threads at the same time. A single DibDump must not be shared between threads.
+
+// When false the header dump, hex dump and warnings are not printed. Batch conversions turn this off.
+   boolean verbose = true;
+
+// The number of threads bmpToPelFile decodes with. More than one decodes bands of rows at the same time (see decodeStrips),
+// which only pays off for images of several megapixels.
+   int decodeThreads = 1;
+
+// Name of the 24-bit verification bitmap written by bmpToPelFile, or null (the default) to skip writing it.
+   String verifyFileName = null;
+
+// The color table of the last header read by readHeader. Reserve space for the largest possible color table.
+   int[] colorPallet = new int[256];
+
+// The number of bytes in each scan line of the last header read, including the dead bytes that pad it to 4 bytes
+   int rowStride;
+
+// The number of those bytes that hold pels, and a buffer decodeRow reads one scan line's pel bytes into
+   int rowBytes;
+   byte[] lineBytes = new byte[0];
+
+// Tables built from the color table once per image by buildPalletTables: the gray level of each entry, and for 1, 2 and 4
+// bit images the colors (colorExpand) and gray levels (grayExpand) that each byte value expands to
+   int[] grayPallet = new int[256];
+   int[] colorExpand = new int[256 * 8];
+   int[] grayExpand = new int[256 * 8];
+
+// Reused by decodeToInputs: one decoded scan line, and the bytes of the last file read by name
+   int[] rowPels = new int[0];
+   ByteBuffer fileBuffer = ByteBuffer.allocate(0);
+
+// biCompression values
+   static final int BI_RGB = 0;
+   static final int BI_RLE8 = 1;
+   static final int BI_RLE4 = 2;
+   static final int BI_BITFIELDS = 3;
+   static final int BI_ALPHABITFIELDS = 6;
+
+// True when the last header read is BI_RLE8 or BI_RLE4, and the decoder's place in the encoded stream: the next row (in file
+// order) that has codes left, the column to continue at in that row, and whether the end of bitmap code was read
+   boolean rleStream;
+   int rleRow;
+   int rleColumn;
+   boolean rleDone;
+
+// True when the last header read is BI_BITFIELDS with masks other than plain xRGB, and for red, green and blue: the mask, the
+// shift that brings the masked bits (at most the top 8) down to bit 0, and the table that scales them to 0 - 255
+   boolean bitfields;
+   int[] fieldMask = new int[3];
+   int[] fieldShift = new int[3];
+   int[][] fieldScale = new int[3][];
+
+// The fewest rows worth handing to a strip worker, and the workers shared by all strip-parallel decodes (see stripPool)
+   static final int MIN_STRIP_ROWS = 64;
+   static ExecutorService stripPool;
+
+// Size of the buffer writePelFile streams the pel text through
+   static final int PEL_WRITER_BUFFER = 1 << 16;
+
+// The text written for each gray level 0 - 255 by writePelFile: the level divided by 255.0 followed by a space
+   static final String[] PEL_TEXT = new String[256];
+
+// The input activation for each gray level 0 - 255, the same values the pel files hold
+   static final double[] PEL_VALUE = new double[256];
+   static final float[] PEL_VALUE_FLOAT = new float[256];
+
+// Each channel's share of the gray level for every channel value 0 - 255, i.e. 0.3 * red, 0.589 * green and 0.11 * blue
+   static final double[] GRAY_RED = new double[256];
+   static final double[] GRAY_GREEN = new double[256];
+   static final double[] GRAY_BLUE = new double[256];
+
+   static
+   {
+      for (int level = 0; level < PEL_TEXT.length; level++)
+      {
+         PEL_TEXT[level] = (level / 255.0) + " ";
+         PEL_VALUE[level] = level / 255.0;
+         PEL_VALUE_FLOAT[level] = (float) PEL_VALUE[level];
+         GRAY_RED[level] = 0.3 * (double)level;
+         GRAY_GREEN[level] = 0.589 * (double)level;
+         GRAY_BLUE[level] = 0.11 * (double)level;
+      }
+   }
 /*
 * Methods to go between little and big endian integer formats.
 */
@@ -214,41 +367,224 @@ public class DibDump
  */
    public int colorToGrayscale(int pel)
       {
-      RgbQuad rgb = pelToRGB(pel);
-    
-      int lum = (int)Math.round(0.3 * (double)rgb.red + 0.589 * (double)rgb.green + 0.11 * (double)rgb.blue);
+      int lum = grayLevel(pel);
 
-      return rgbToPel(lum, lum, lum);
+      return (lum << 16) | (lum << 8) | lum; // same as rgbToPel(lum, lum, lum)
       }
 
+/*
+ * Method grayLevel returns the gray level 0 - 255 of a color pel, the value colorToGrayscale puts in each channel. The
+ * channel products come from the GRAY_RED, GRAY_GREEN and GRAY_BLUE tables and are added in the same order as the formula,
+ * so the result is identical, but no RgbQuad is allocated and nothing is multiplied per pel.
+ */
+   static int grayLevel(int pel)
+      {
+      return (int)Math.round(GRAY_RED[(pel >> 16) & 0x00FF] + GRAY_GREEN[(pel >> 8) & 0x00FF] + GRAY_BLUE[pel & 0x00FF]);
+      }
 
-      public void bmpToPelFile(String bmpFileName, String outputFile)
+/*
+ * Method readFile loads a whole bitmap into a little-endian ByteBuffer with a handful of system calls. Small files are
+ * read into a heap buffer, large ones are memory mapped so the rows are paged in on demand.
+ */
+   public static ByteBuffer readFile(String bmpFileName) throws IOException
+   {
+      FileChannel channel = FileChannel.open(Paths.get(bmpFileName), StandardOpenOption.READ);
+      try
       {
-         String inFileName, outFileName;
-         int i, j, k;
-         int numberOfColors;
-         int pel;
-         int iByteVal, iColumn, iBytesPerRow, iPelsPerRow, iTrailingBits, iDeadBytes;
-// RBGQUAD
-         int rgbQuad_rgbBlue;
-         int rgbQuad_rgbGreen;
-         int rgbQuad_rgbRed;
-         int rgbQuad_rgbReserved;           // not used in this method
-// The color table
-         int[] colorPallet = new int[256];  // reserve space for the largest possible color table
+         long size = channel.size();
+         ByteBuffer bmp;
+         if (size >= MAP_THRESHOLD)
+         {
+            bmp = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+         }
+         else
+         {
+            bmp = ByteBuffer.allocate((int) size);
+            while (bmp.hasRemaining() && channel.read(bmp) >= 0);
+            bmp.flip();
+         }
+         return bmp.order(ByteOrder.LITTLE_ENDIAN);
+      }
+      finally
+      {
+         channel.close();
+      }
+   } // public static ByteBuffer readFile(String bmpFileName)
+
+/*
+ * Method readBitmap reads a bitmap file and decodes it into imageArray. See readBitmap(ByteBuffer).
+ */
+   public void readBitmap(String bmpFileName) throws IOException
+   {
+      readBitmap(readFile(bmpFileName));
+   }
 
-         DibDump dibdumper = new DibDump(); // needed to get to the byte swapping methods
+/*
+ * Method readBitmap decodes a whole bitmap held in a ByteBuffer (starting at its current position) into the header
+ * fields and imageArray. The header is parsed by readHeader and each scan line is decoded by decodeRow straight into
+ * its row of imageArray, so the image is stored right side up regardless of how it was read in.
+ */
+   public void readBitmap(ByteBuffer bmp)
+   {
+      NetworkEvents.DibDumpDecode event = NetworkEvents.dibDumpDecode();
+      ByteBuffer in = readHeader(bmp);
 
-         inFileName = bmpFileName;
-         outFileName = "test2.bmp";
+      imageArray = new int[bmpInfoHeader_biHeight][bmpInfoHeader_biWidth]; // Create the array for the pels
 
-         try // lots of things can go wrong when doing file i/o
+      for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows (in reverse unless top down)
+      {
+         decodeRow(in, row, imageArray[topDownDIB ? row : bmpInfoHeader_biHeight - 1 - row]);
+      }
+      NetworkEvents.commit(event, this, 1, false);
+   } // public void readBitmap(ByteBuffer bmp)
+
+/*
+ * Method readBitmap with a thread count is the strip-parallel readBitmap for very large images. The file is memory mapped
+ * (see readFile) and, once readHeader knows bfOffBits and the row stride, every row can be found on its own, so the rows
+ * are split into one band per thread and each band is decoded on a worker straight into its rows of imageArray.
+ */
+   public void readBitmap(String bmpFileName, int threads) throws IOException
+   {
+      readBitmap(readFile(bmpFileName), threads);
+   }
+
+   public void readBitmap(ByteBuffer bmp, int threads)
+   {
+      NetworkEvents.DibDumpDecode event = NetworkEvents.dibDumpDecode();
+      ByteBuffer in = readHeader(bmp);
+
+      imageArray = new int[bmpInfoHeader_biHeight][bmpInfoHeader_biWidth]; // Create the array for the pels
+
+      decodeStrips(in, threads, null);
+      NetworkEvents.commit(event, this, threads, false);
+   }
+
+/*
+ * Method decodeToInputs with a thread count is the strip-parallel decodeToInputs. Each band of rows is converted to gray
+ * levels on its own worker and written to its part of inputs.
+ */
+   public void decodeToInputs(ByteBuffer bmp, double[] inputs, int threads)
+   {
+      NetworkEvents.DibDumpDecode event = NetworkEvents.dibDumpDecode();
+      ByteBuffer in = readHeader(bmp);
+      checkInputLength(inputs.length);
+
+      decodeStrips(in, threads, inputs);
+      NetworkEvents.commit(event, this, threads, true);
+   }
+
+/*
+ * Method decodeStrips splits the rows of the image described by the last readHeader into at most threads bands of at least
+ * MIN_STRIP_ROWS rows. All bands but one are decoded on the shared strip pool and the last one on the calling thread, which
+ * then waits for the others. Each band has its own view of the bitmap and its own line buffer; the header fields and tables
+ * are only read. Rows go to imageArray when inputs is null, otherwise their gray levels go to inputs in pel file order.
+ */
+   void decodeStrips(ByteBuffer in, int threads, double[] inputs)
+   {
+      int height = bmpInfoHeader_biHeight;
+      int strips = rleStream ? 1 : Math.max(1, Math.min(threads, height / MIN_STRIP_ROWS)); // RLE rows are not addressable
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+
+      try
+      {
+         for (int s = 0; s < strips; ++s)
+         {
+            final int firstRow = (int)((long)height * s / strips);
+            final int endRow = (int)((long)height * (s + 1) / strips);
+            final ByteBuffer view = s == strips - 1 ? in : in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            Runnable band = () -> decodeBand(view, firstRow, endRow, inputs);
+
+            if (s == strips - 1)
+               band.run();
+            else
+               futures.add(stripPool().submit(band));
+         }
+
+         for (Future<?> future : futures)
+         {
+            future.get();
+         }
+      } // try
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      }
+      catch (ExecutionException e)
+      {
+         throw new RuntimeException(e.getCause());
+      }
+      finally
+      {
+         for (Future<?> future : futures)
+         {
+            future.cancel(false); // only does anything if the caller's band threw
+         }
+      }
+   } // void decodeStrips(ByteBuffer in, int threads, double[] inputs)
+
+/*
+ * Method decodeBand decodes the rows firstRow (inclusive) to endRow (exclusive), counted in file order, for decodeStrips.
+ */
+   void decodeBand(ByteBuffer view, int firstRow, int endRow, double[] inputs)
+   {
+      int width = bmpInfoHeader_biWidth;
+      int height = bmpInfoHeader_biHeight;
+      byte[] line = new byte[rowBytes];
+      int[] levels = inputs == null ? null : new int[width];
+
+      for (int row = firstRow; row < endRow; ++row)
+      {
+         if (inputs == null)
+         {
+            decodeRow(view, row, line, imageArray[topDownDIB ? row : height - 1 - row], false);
+         }
+         else
          {
-            // Open the file that is the first command line parameter
-            FileInputStream fstream = new FileInputStream(inFileName);
+            decodeRow(view, row, line, levels, true);
+            int base = (topDownDIB ? height - 1 - row : row) * width; // pel files start at the bottom row
+            for (int j = 0; j < width; ++j)
+            {
+               inputs[base + j] = PEL_VALUE[levels[j]];
+            }
+         }
+      } // for (int row = firstRow; row < endRow; ++row)
+   } // void decodeBand(ByteBuffer view, int firstRow, int endRow, double[] inputs)
+
+/*
+ * Method stripPool returns the daemon worker pool shared by every strip-parallel decode, creating it on first use with one
+ * thread per available processor.
+ */
+   static synchronized ExecutorService stripPool()
+   {
+      if (stripPool == null)
+      {
+         stripPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "DibDump strip");
+            thread.setDaemon(true);
+            return thread;
+         });
+      }
+      return stripPool;
+   }
+
+/*
+ * Method readHeader reads the BITMAPFILEHEADER, the BITMAPINFOHEADER and the color table of a bitmap held in a ByteBuffer
+ * (starting at its current position). Every field is read with an absolute little-endian get, so there is no byte swapping.
+ * The color table is kept in colorPallet and the padded row stride in rowStride for decodeRow. Returns a little-endian
+ * view of the bitmap whose offsets are from the start of the file; the caller's buffer is not moved.
+ */
+   ByteBuffer readHeader(ByteBuffer bmp)
+   {
+      int i;
+      int numberOfColors;
+// RBGQUAD
+      int rgbQuad_rgbBlue;
+      int rgbQuad_rgbGreen;
+      int rgbQuad_rgbRed;
+      int rgbQuad_rgbReserved;
 
-            // Convert our input stream to a DataInputStream
-            DataInputStream in = new DataInputStream(fstream);
+      ByteBuffer in = bmp.slice().order(ByteOrder.LITTLE_ENDIAN); // offsets below are from the start of the file
 
 /*
  *  Read in BITMAPFILEHEADER
@@ -272,26 +608,23 @@ bfReserved2
 bfOffBits
     Specifies the offset, in bytes, from the BITMAPFILEHEADER structure to the bitmap bits
 */
-
-// Read and Convert to big endian
-            bmpFileHeader_bfType      = in.readUnsignedShort();                         // WORD - un-swapped since it should be the letters BM
-            bmpFileHeader_bfSize      = dibdumper.swapInt(in.readInt());                // DWORD
-            bmpFileHeader_bfReserved1 = dibdumper.swapShort(in.readUnsignedShort());    // WORD
-            bmpFileHeader_bfReserved2 = dibdumper.swapShort(in.readUnsignedShort());    // WORD
-            bmpFileHeader_bfOffBits   = dibdumper.swapInt(in.readInt());                // DWORD
-
-            System.out.printf("\nbfType=%4X bfSize=%d bfReserved1=%h bfReserved2=%h bfOffBits=%d\n\n",
-               bmpFileHeader_bfType,
-               bmpFileHeader_bfSize,
-               bmpFileHeader_bfReserved1,
-               bmpFileHeader_bfReserved2,
-               bmpFileHeader_bfOffBits);
-
-
-            /*
-             ** The WORD value of 0x424D is reversed from the expected 0x4D42 (BM) because Java is big-endian and BMPs are defined as little-endian
-             */
-            if (bmpFileHeader_bfType != 0x424D) System.out.printf("WARNING! This image is NOT a BMP file! Processing anyway... Who am I to argue.\n\n");
+      bmpFileHeader_bfType      = ((in.get(0) & 0xFF) << 8) | (in.get(1) & 0xFF); // WORD - un-swapped since it should be the letters BM
+      bmpFileHeader_bfSize      = in.getInt(2);                                   // DWORD
+      bmpFileHeader_bfReserved1 = in.getShort(6) & 0xFFFF;                        // WORD
+      bmpFileHeader_bfReserved2 = in.getShort(8) & 0xFFFF;                        // WORD
+      bmpFileHeader_bfOffBits   = in.getInt(10);                                  // DWORD
+
+      if (verbose) System.out.printf("\nbfType=%4X bfSize=%d bfReserved1=%h bfReserved2=%h bfOffBits=%d\n\n",
+         bmpFileHeader_bfType,
+         bmpFileHeader_bfSize,
+         bmpFileHeader_bfReserved1,
+         bmpFileHeader_bfReserved2,
+         bmpFileHeader_bfOffBits);
+
+      /*
+       ** The WORD value of 0x424D is reversed from the expected 0x4D42 (BM) because the two bytes are read in file order
+       */
+      if (bmpFileHeader_bfType != 0x424D && verbose) System.out.printf("WARNING! This image is NOT a BMP file! Processing anyway... Who am I to argue.\n\n");
 
 /*
  Read in BITMAPINFOHEADER
@@ -388,43 +721,42 @@ An application should use the information stored in the biSize member to locate
 
 pColor = ((LPSTR)pBitmapInfo + (WORD)(pBitmapInfo->bmiHeader.biSize));
 */
-
-// Read and convert to big endian
-            bmpInfoHeader_biSize          = dibdumper.swapInt(in.readInt());              // DWORD
-            bmpInfoHeader_biWidth         = dibdumper.swapInt(in.readInt());              // LONG
-            bmpInfoHeader_biHeight        = dibdumper.swapInt(in.readInt());              // LONG
-            bmpInfoHeader_biPlanes        = dibdumper.swapShort(in.readUnsignedShort());  // WORD
-            bmpInfoHeader_biBitCount      = dibdumper.swapShort(in.readUnsignedShort());  // WORD
-            bmpInfoHeader_biCompression   = dibdumper.swapInt(in.readInt());              // DWORD
-            bmpInfoHeader_biSizeImage     = dibdumper.swapInt(in.readInt());              // DWORD
-            bmpInfoHeader_biXPelsPerMeter = dibdumper.swapInt(in.readInt());              // LONG
-            bmpInfoHeader_biYPelsPerMeter = dibdumper.swapInt(in.readInt());              // LONG
-            bmpInfoHeader_biClrUsed       = dibdumper.swapInt(in.readInt());              // DWORD
-            bmpInfoHeader_biClrImportant  = dibdumper.swapInt(in.readInt());              // DWORD
-
-            System.out.printf("biSize=%d\nbiWidth=%d\nbiHeight=%d\nbiPlanes=%d\nbiBitCount=%d\nbiCompression=%d\nbiSizeImage=%d\nbiXPelsPerMeter=%d\nbiYPelsPerMeter=%d\nbiClrUsed=%d\nbiClrImportant=%d\n",
-               bmpInfoHeader_biSize,
-               bmpInfoHeader_biWidth,
-               bmpInfoHeader_biHeight,
-               bmpInfoHeader_biPlanes,
-               bmpInfoHeader_biBitCount,
-               bmpInfoHeader_biCompression,
-               bmpInfoHeader_biSizeImage,
-               bmpInfoHeader_biXPelsPerMeter,
-               bmpInfoHeader_biYPelsPerMeter,
-               bmpInfoHeader_biClrUsed,
-               bmpInfoHeader_biClrImportant);
-
-            System.out.printf("\n");
+      bmpInfoHeader_biSize          = in.getInt(14);              // DWORD
+      bmpInfoHeader_biWidth         = in.getInt(18);              // LONG
+      bmpInfoHeader_biHeight        = in.getInt(22);              // LONG
+      bmpInfoHeader_biPlanes        = in.getShort(26) & 0xFFFF;   // WORD
+      bmpInfoHeader_biBitCount      = in.getShort(28) & 0xFFFF;   // WORD
+      bmpInfoHeader_biCompression   = in.getInt(30);              // DWORD
+      bmpInfoHeader_biSizeImage     = in.getInt(34);              // DWORD
+      bmpInfoHeader_biXPelsPerMeter = in.getInt(38);              // LONG
+      bmpInfoHeader_biYPelsPerMeter = in.getInt(42);              // LONG
+      bmpInfoHeader_biClrUsed       = in.getInt(46);              // DWORD
+      bmpInfoHeader_biClrImportant  = in.getInt(50);              // DWORD
+
+      if (verbose) System.out.printf("biSize=%d\nbiWidth=%d\nbiHeight=%d\nbiPlanes=%d\nbiBitCount=%d\nbiCompression=%d\nbiSizeImage=%d\nbiXPelsPerMeter=%d\nbiYPelsPerMeter=%d\nbiClrUsed=%d\nbiClrImportant=%d\n",
+         bmpInfoHeader_biSize,
+         bmpInfoHeader_biWidth,
+         bmpInfoHeader_biHeight,
+         bmpInfoHeader_biPlanes,
+         bmpInfoHeader_biBitCount,
+         bmpInfoHeader_biCompression,
+         bmpInfoHeader_biSizeImage,
+         bmpInfoHeader_biXPelsPerMeter,
+         bmpInfoHeader_biYPelsPerMeter,
+         bmpInfoHeader_biClrUsed,
+         bmpInfoHeader_biClrImportant);
+
+      if (verbose) System.out.printf("\n");
 
 // Since we use the height to crate arrays, it cannot have a negative a value. If the height field is
 // less than zero, then make it positive and set the topDownDIB flag to TRUE so we know that the image is
 // stored on disc upsidedown (which means it is actually rightside up).
-            if (bmpInfoHeader_biHeight < 0)
-            {
-               topDownDIB = true;
-               bmpInfoHeader_biHeight = -bmpInfoHeader_biHeight;
-            }
+      topDownDIB = false;
+      if (bmpInfoHeader_biHeight < 0)
+      {
+         topDownDIB = true;
+         bmpInfoHeader_biHeight = -bmpInfoHeader_biHeight;
+      }
 /*
 Now for the color table. For true color images, there isn't one.
 
@@ -437,928 +769,793 @@ typedef struct tagRGBQUAD {
 
 typedef RGBQUAD FAR* LPRGBQUAD;
 */
+      switch (bmpInfoHeader_biBitCount) // Determine the number of colors in the default color table
+      {
+         case 1:
+            numberOfColors = 2;
+            break;
+         case 2:
+            numberOfColors = 4;
+            break;
+         case 4:
+            numberOfColors = 16;
+            break;
+         case 8:
+            numberOfColors = 256;
+            break;
+         default:
+            numberOfColors = 0; // no color table
+      }
 
-            switch (bmpInfoHeader_biBitCount) // Determine the number of colors in the default color table
-            {
-               case 1:
-                  numberOfColors = 2;
-                  break;
-               case 2:
-                  numberOfColors = 4;
-                  break;
-               case 4:
-                  numberOfColors = 16;
-                  break;
-               case 8:
-                  numberOfColors = 256;
-                  break;
-               default:
-                  numberOfColors = 0; // no color table
-            }
-
-            System.out.printf("Color Depth = %d, %d\n", bmpInfoHeader_biBitCount, numberOfColors);
-            /*
-             * biClrUsed -  Specifies the number of color indexes in the color table that are actually used by the bitmap.
-             *     If this value is zero, the bitmap uses the maximum number of colors corresponding to the value of the biBitCount member for the compression mode specified by biCompression.
-             *     If biClrUsed is nonzero and the biBitCount member is less than 16, the biClrUsed member specifies the actual number of colors the graphics engine or device driver accesses.
-             *     If biBitCount is 16 or greater, the biClrUsed member specifies the size of the color table used to optimize performance of the system color palettes.
-             *     If biBitCount equals 16 or 32, the optimal color palette starts immediately following the three DWORD masks.
-             *     If the bitmap is a packed bitmap (a bitmap in which the bitmap array immediately follows the BITMAPINFO header and is referenced by a single pointer), the biClrUsed member must be either zero or the actual size of the color table.
-             */
-            if (bmpInfoHeader_biClrUsed > 0) numberOfColors = bmpInfoHeader_biClrUsed;
-
-            for (i = 0; i < numberOfColors; ++i) // Read in the color table (or not if numberOfColors is zero)
-            {
-               rgbQuad_rgbBlue      = in.readUnsignedByte(); // lowest byte in the color
-               rgbQuad_rgbGreen     = in.readUnsignedByte();
-               rgbQuad_rgbRed       = in.readUnsignedByte(); // highest byte in the color
-               rgbQuad_rgbReserved  = in.readUnsignedByte();
-
-               // Build the color from the RGB values. Since we declared the rgbQuad values to be int, we can shift and then OR the values
-               // to build up the color. Since we are reading one byte at a time, there are no "endian" issues.
-
-               colorPallet[i] = (rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-// System.out.printf("DEBUG: Color Table = %d, %06X\n", i, colorPallet[i]);
-            } // for (i = 0; i < numberOfColors; ++i)
-
-            /*
-             * Now for the fun part. We need to read in the rest of the bit map, but how we interpret the values depends on the color depth.
-             *
-             * numberOfColors = 2:   Each bit is a pel, so there are 8 pels per byte. The Color Table has only two values for "black" and "white"
-             * numberOfColors = 4:   Each pair of bits is a pel, so there are 4 pels per byte. The Color Table has only four values
-             * numberOfColors = 16;  Each nibble (4 bits) is a pel, so there are 2 pels per byte. The Color Table has 16 entries.
-             * numberOfColors = 256; Each byte is a pel and the value maps into the 256 byte Color Table.
-             *
-             * Any other value is read in as "true" color.
-             *
-             * The BMP image is stored from bottom to top, meaning that the first scan line is the last scan line in the image.
-             *
-             * The rest is the bitmap. Use the height and width information to read it in. And as I mentioned before....
-             * In the 32-bit format, each pixel in the image is represented by a series of four bytes of RGB stored as xBRG,
-             * where the 'x' is an unused byte. For ALL image types each scan line is padded to an even 4-byte boundary.
-             *
-             */
-
-            imageArray = new int[bmpInfoHeader_biHeight][bmpInfoHeader_biWidth]; // Create the array for the pels
-            /*
-             * I use the same loop structure for each case for clarity so you can see the similarities and differences.
-             * The outer loop is over the rows (in reverse), the inner loop over the columns.
-             */
-            switch (bmpInfoHeader_biBitCount)
-            {
-               case 1: // each bit is a color, so there are 8 pels per byte.  Works
-                  /*
-                   * Each byte read in is 8 columns, so we need to break them out. We also have to deal with the case
-                   * where the image width is not an integer multiple of 8, in which case we will
-                   * have bits from part of the remaining byte. Each color is 1 bit which is masked with 0x01.
-                   * The screen ordering of the pels is High-Bit to Low-Bit, so the most significant element is first in the array of pels.
-                   */
-                  iBytesPerRow = bmpInfoHeader_biWidth / 8;
-                  iTrailingBits = bmpInfoHeader_biWidth % 8;
-
-                  iDeadBytes = iBytesPerRow;
-                  if (iTrailingBits > 0) ++iDeadBytes;
-                  iDeadBytes = (4 - iDeadBytes % 4) % 4;
-
-                  for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                     if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                     for (j = 0; j < iBytesPerRow; ++j)
-                     {
-                        iByteVal = in.readUnsignedByte();
-
-                        for (k = 0; k < 8; ++k)     // Get 8 pels from the one byte
-                        {
-                           iColumn = j * 8 + k;
-                           pel = colorPallet[(iByteVal >> (7 - k)) & 0x01];
-                           imageArray[i][iColumn] = pel;
-                        }
-                     }
-                     if (iTrailingBits > 0) // pick up the trailing bits for images that are not mod 8 columns wide
-                     {
-                        iByteVal = in.readUnsignedByte();
-
-                        for (k = 0; k < iTrailingBits; ++k)
-                        {
-                           iColumn = iBytesPerRow * 8 + k;
-                           pel = colorPallet[(iByteVal >> (7 - k)) & 0x01];
-                           imageArray[i][iColumn] = pel;
-                        }
-                     }
-
-                     for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-                  break;
-               case 2: // 4 colors, Each byte is 4 pels (2 bits each),  Should work, not tested.
-                  /*
-                   * Each byte read in is 4 columns, so we need to break them out. We also have to deal with the case
-                   * where the image width is not an integer multiple of 4, in which case we will
-                   * have from 2 to 6 bits of the remaining byte. Each color is 2 bits which is masked with 0x03.
-                   * The screen ordering of the pels is High-Half-Nibble to Low-Half-Nibble, so the most significant element is first in the array of pels.
-                   */
-                  iBytesPerRow = bmpInfoHeader_biWidth / 4;
-                  iTrailingBits = bmpInfoHeader_biWidth % 4; // 0, 1, 2 or 3
-
-                  iDeadBytes = iBytesPerRow;
-                  if (iTrailingBits > 0) ++iDeadBytes;
-                  iDeadBytes = (4 - iDeadBytes % 4) % 4;
-
-                  for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                     if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                     for (j = 0; j < iBytesPerRow; ++j)
-                     {
-                        iByteVal = in.readUnsignedByte();
-
-                        for (k = 0; k < 4; ++k) // Get 4 pels from one byte
-                        {
-                           iColumn = j * 4 + k;
-                           pel = colorPallet[(iByteVal >> ((3 - k) * 2)) & 0x03]; // shift 2 bits at a time and reverse order
-                           imageArray[i][iColumn] = pel;
-                        }
-                     }
-                     if (iTrailingBits > 0) // pick up the trailing nibble for images that are not mod 2 columns wide
-                     {
-                        iByteVal = in.readUnsignedByte();
-
-                        for (k = 0; k < iTrailingBits; ++k)
-                        {
-                           iColumn = iBytesPerRow * 4 + k;
-                           pel = colorPallet[(iByteVal >> ((3 - k) * 2)) & 0x03];
-                           imageArray[i][iColumn] = pel;
-                        }
-                     }
-                     for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-                  break;
-               case 4: // 16 colors, Each byte is two pels. Works
-                  /*
-                   * Each byte read in is 2 columns, so we need to break them out. We also have to deal with the case
-                   * where the image width is not an integer multiple of 2, in which case we will
-                   * have one nibble from part of the remaining byte. We then read in the dead bytes so that each
-                   * scan line is a multiple of 4 bytes. Each color is a nibble (4 bits) which is masked with 0x0F.
-                   * The screen ordering of the pels is High-Nibble Low-Nibble, so the most significant element is first in the array of pels.
-                   */
-                  iPelsPerRow   = bmpInfoHeader_biWidth;
-                  iBytesPerRow  = iPelsPerRow / 2;
-                  iTrailingBits = iPelsPerRow % 2;  // Will either be 0 or 1
-
-                  iDeadBytes = iBytesPerRow;
-                  if (iTrailingBits > 0) ++iDeadBytes;
-                  iDeadBytes = (4 - iDeadBytes % 4) % 4;
-
-                  for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                     if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                     for (j = 0; j < iBytesPerRow; ++j)
-                     {
-                        iByteVal = in.readUnsignedByte();
-
-                        for (k = 0; k < 2; ++k) // Two pels per byte
-                        {
-                           iColumn = j * 2 + k;          // 1 - k  is needed to have High, Low nibble ordering for the image.
-                           pel = colorPallet[(iByteVal >> ((1 - k) * 4)) & 0x0F]; // shift 4 bits at a time
-                           imageArray[i][iColumn] = pel;
-                        }
-                     }
-
-                     if (iTrailingBits > 0) // pick up the trailing nibble for images that are not mod 2 columns wide
-                     {
-                        iByteVal = in.readUnsignedByte();
-
-                        iColumn = iBytesPerRow * 2;
-                        pel = colorPallet[(iByteVal >> 4) & 0x0F]; // The High nibble is the last remaining pel
-                        imageArray[i][iColumn] = pel;
-                     }
-                     for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  } // for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)
-                  break;
-               case 8: // 1 byte, 1 pel, Works
-                  /*
-                   * Each byte read in is 1 column. We then read in the dead bytes so that each scan line is a multiple of 4 bytes.
-                   */
-                  iPelsPerRow = bmpInfoHeader_biWidth;
-                  iDeadBytes = (4 - iPelsPerRow % 4) % 4;
-                  for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                     if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                     for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                        iByteVal = in.readUnsignedByte();
-                        pel = colorPallet[iByteVal];
-                        imageArray[i][j] = pel;
-                     }
-
-                     for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-                  break;
-               case 16: // Not likely to work (format is not internally consistent), not tested.
-                  /*
-                   * Each two bytes read in is 1 column. Each color is 5 bits in the 2 byte word value, so we shift 5 bits and then mask them
-                   * off with 0x1F which is %11111 in binary. We then read in the dead bytes so that each scan line is a multiple of 4 bytes.
-                   */
-                  iPelsPerRow = bmpInfoHeader_biWidth;
-                  iDeadBytes = (4 - iPelsPerRow % 4) % 4;
-                  for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                     if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                     for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                        pel = dibdumper.swapShort(in.readUnsignedShort()); // Need to deal with little endian values
-                        rgbQuad_rgbBlue      =  pel        & 0x1F;
-                        rgbQuad_rgbGreen     = (pel >> 5)  & 0x1F;
-                        rgbQuad_rgbRed       = (pel >> 10) & 0x1F;
-                        pel = (rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-                        imageArray[i][j] = pel;
-                     }
-
-                     for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  } // for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)
-                  break;
-               case 24: // Works
-                  /*
-                   * Each three bytes read in is 1 column. Each scan line is padded to by a multiple of 4 bytes. The disk image has only 3 however.
-                   */
-                  iPelsPerRow = bmpInfoHeader_biWidth;
-                  iDeadBytes = (4 - (iPelsPerRow * 3) % 4) % 4;
-
-                  for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                     if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                     for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                        rgbQuad_rgbBlue      = in.readUnsignedByte();
-                        rgbQuad_rgbGreen     = in.readUnsignedByte();
-                        rgbQuad_rgbRed       = in.readUnsignedByte();
-                        pel = (rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-                        imageArray[i][j] = pel;
-                     }
-                     for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-                  break;
-               case 32: // Works
-                  /*
-                   * Each four bytes read in is 1 column. The number of bytes per line will always be a multiple of 4, so there are no dead bytes.
-                   */
-                  iPelsPerRow = bmpInfoHeader_biWidth;
-                  for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                     if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                     for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                        rgbQuad_rgbBlue      = in.readUnsignedByte();
-                        rgbQuad_rgbGreen     = in.readUnsignedByte();
-                        rgbQuad_rgbRed       = in.readUnsignedByte();
-                        rgbQuad_rgbReserved  = in.readUnsignedByte();
-                        pel =  (rgbQuad_rgbReserved << 24) |(rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-                        imageArray[i][j] = pel;
-                     }
-                  }
-                  break;
-               default: // Oops
-                  System.out.printf("This error should not occur - 1!\n");
+      if (verbose) System.out.printf("Color Depth = %d, %d\n", bmpInfoHeader_biBitCount, numberOfColors);
+      /*
+       * biClrUsed -  Specifies the number of color indexes in the color table that are actually used by the bitmap.
+       *     If this value is zero, the bitmap uses the maximum number of colors corresponding to the value of the biBitCount member for the compression mode specified by biCompression.
+       *     If biClrUsed is nonzero and the biBitCount member is less than 16, the biClrUsed member specifies the actual number of colors the graphics engine or device driver accesses.
+       *     If biBitCount is 16 or greater, the biClrUsed member specifies the size of the color table used to optimize performance of the system color palettes.
+       *     If biBitCount equals 16 or 32, the optimal color palette starts immediately following the three DWORD masks.
+       *     If the bitmap is a packed bitmap (a bitmap in which the bitmap array immediately follows the BITMAPINFO header and is referenced by a single pointer), the biClrUsed member must be either zero or the actual size of the color table.
+       */
+      if (bmpInfoHeader_biClrUsed > 0) numberOfColors = Math.min(bmpInfoHeader_biClrUsed, colorPallet.length);
+
+      Arrays.fill(colorPallet, 0); // entries past numberOfColors must not keep the colors of the last image
+      in.position(BITMAPFILEHEADER_SIZE + bmpInfoHeader_biSize); // the color table follows the BITMAPINFOHEADER
+      for (i = 0; i < numberOfColors; ++i) // Read in the color table (or not if numberOfColors is zero)
+      {
+         rgbQuad_rgbBlue      = in.get() & 0xFF; // lowest byte in the color
+         rgbQuad_rgbGreen     = in.get() & 0xFF;
+         rgbQuad_rgbRed       = in.get() & 0xFF; // highest byte in the color
+         rgbQuad_rgbReserved  = in.get() & 0xFF;
+
+         // Build the color from the RGB values. Since we declared the rgbQuad values to be int, we can shift and then OR the values
+         // to build up the color. Since we are reading one byte at a time, there are no "endian" issues.
+
+         colorPallet[i] = (rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
+      } // for (i = 0; i < numberOfColors; ++i)
+
+      /*
+       * Now for the fun part. We need to read in the rest of the bit map, but how we interpret the values depends on the color depth.
+       *
+       * numberOfColors = 2:   Each bit is a pel, so there are 8 pels per byte. The Color Table has only two values for "black" and "white"
+       * numberOfColors = 4:   Each pair of bits is a pel, so there are 4 pels per byte. The Color Table has only four values
+       * numberOfColors = 16;  Each nibble (4 bits) is a pel, so there are 2 pels per byte. The Color Table has 16 entries.
+       * numberOfColors = 256; Each byte is a pel and the value maps into the 256 byte Color Table.
+       *
+       * Any other value is read in as "true" color.
+       *
+       * The BMP image is stored from bottom to top, meaning that the first scan line is the last scan line in the image.
+       *
+       * The rest is the bitmap. Use the height and width information to read it in. And as I mentioned before....
+       * In the 32-bit format, each pixel in the image is represented by a series of four bytes of RGB stored as xBRG,
+       * where the 'x' is an unused byte. For ALL image types each scan line is padded to an even 4-byte boundary.
+       *
+       */
+      /*
+       * Every scan line is padded to a multiple of 4 bytes, so the offset of a row in the file is bfOffBits plus the
+       * row number times the padded stride. Positioning at that offset skips the dead bytes.
+       */
+      rowStride = ((bmpInfoHeader_biWidth * bmpInfoHeader_biBitCount + 31) / 32) * 4;
+      rowBytes = (bmpInfoHeader_biWidth * bmpInfoHeader_biBitCount + 7) / 8; // the rest of the stride is dead bytes
+      if (lineBytes.length < rowBytes) lineBytes = new byte[rowBytes];
+
+      /*
+       * biCompression: BI_RLE8 and BI_RLE4 bitmaps are run length encoded, so a row cannot be found from the stride. They are
+       * decoded as a stream by decodeRleRow, which needs the rows in file order starting at bfOffBits. BI_BITFIELDS (and
+       * BI_ALPHABITFIELDS) 16 and 32 bit bitmaps give the red, green and blue masks as three DWORDs right after the 40 byte
+       * BITMAPINFOHEADER, which is also where the V4 and V5 headers keep them.
+       */
+      rleStream = false;
+      bitfields = false;
+      switch (bmpInfoHeader_biCompression)
+      {
+         case BI_RGB:
+            break;
+         case BI_RLE8:
+         case BI_RLE4:
+            rleStream = true;
+            rleRow = 0;
+            rleColumn = 0;
+            rleDone = false;
+            in.position(bmpFileHeader_bfOffBits);
+            break;
+         case BI_BITFIELDS:
+         case BI_ALPHABITFIELDS:
+            if (bmpInfoHeader_biBitCount == 16 || bmpInfoHeader_biBitCount == 32)
+               buildBitfields(in.getInt(BITMAPFILEHEADER_SIZE + 40), in.getInt(BITMAPFILEHEADER_SIZE + 44),
+                  in.getInt(BITMAPFILEHEADER_SIZE + 48));
+            break;
+         default:
+            if (verbose) System.out.printf("WARNING! biCompression %d is not supported. Reading it as BI_RGB.\n",
+               bmpInfoHeader_biCompression);
+      } // switch (bmpInfoHeader_biCompression)
+
+      switch (bmpInfoHeader_biBitCount)
+      {
+         case 1: case 2: case 4: case 8:
+            buildPalletTables();
+            break;
+         case 16: case 24: case 32:
+            break;
+         default: // Oops
+            System.out.printf("This error should not occur - 1!\n");
+      }
+      return in;
+   } // ByteBuffer readHeader(ByteBuffer bmp)
 
-            } // switch (bmpInfoHeader_biBitCount)
+/*
+ * Method buildPalletTables precomputes, once per image, the gray level of every color table entry (grayPallet) and, for
+ * images with several pels per byte, the pels every possible byte value expands to (colorExpand and grayExpand). The
+ * screen ordering of the pels is high bits to low bits, so the most significant element of a byte comes first.
+ */
+   void buildPalletTables()
+   {
+      int bits = bmpInfoHeader_biBitCount;
 
-            in.close();
-            fstream.close();
-         } // try
-         catch (Exception e)
-         {
-            System.err.println("File input error" + e);
-         }
-         /*
-          * Console dump of image bytes in HEX if the image is smaller than 33 x 33
-          */
+      for (int i = 0; i < grayPallet.length; ++i)
+      {
+         grayPallet[i] = grayLevel(colorPallet[i]);
+      }
 
-         if ((bmpInfoHeader_biWidth < 33) && (bmpInfoHeader_biHeight < 33))
+      if (bits < 8)
+      {
+         int pelsPerByte = 8 / bits;
+         int mask = (1 << bits) - 1;
+         for (int b = 0; b < 256; ++b)
          {
-            iBytesPerRow = bmpInfoHeader_biWidth;
-            for (i = 0; i < bmpInfoHeader_biHeight; ++i) // read over the rows
+            for (int k = 0; k < pelsPerByte; ++k)
             {
-               for (j = 0; j < iBytesPerRow; ++j)         // j is now just the column counter
-               {
-                  System.out.printf("%08X ", imageArray[i][j]);
-               }
-               System.out.printf("\n");
+               int index = (b >> (8 - bits * (k + 1))) & mask;
+               colorExpand[b * pelsPerByte + k] = colorPallet[index];
+               grayExpand[b * pelsPerByte + k] = grayPallet[index];
             }
          }
+      }
+   } // void buildPalletTables()
 
-         /*
-          * Now write out the true color bitmap (24-bits) to a disk file. This is here mostly to be sure we did it all correctly.
-          *
-          */
-         try
-         {
-            iDeadBytes = (4 - (bmpInfoHeader_biWidth * 3) % 4) % 4;
-
-            bmpInfoHeader_biSizeImage =  (bmpInfoHeader_biWidth * 3 + iDeadBytes) * bmpInfoHeader_biHeight;
-            bmpFileHeader_bfOffBits = 54;        // 54 byte offset for 24 bit images (just open one with this app to get this value)
-            bmpFileHeader_bfSize = bmpInfoHeader_biSizeImage + bmpFileHeader_bfOffBits;
-            bmpInfoHeader_biBitCount = 24;       // 24 bit color image. Changes this number to 32 to write out 32 bit color images
-            bmpInfoHeader_biCompression = 0;     // BI_RGB (which is a value of zero)
-            bmpInfoHeader_biClrUsed = 0;         // Zero for true color
-            bmpInfoHeader_biClrImportant = 0;    // Zero for true color
+/*
+ * Method buildBitfields sets up decodeBitfields for the red, green and blue masks of a BI_BITFIELDS image. Each channel is
+ * shifted down to at most its top 8 bits and then scaled to 0 - 255 through a small table, so a 5 bit channel of 31 becomes
+ * 255. The usual 32 bit masks (0x00FF0000, 0x0000FF00, 0x000000FF) are already xRGB and keep the plain 32 bit decoder.
+ */
+   void buildBitfields(int redMask, int greenMask, int blueMask)
+   {
+      if (bmpInfoHeader_biBitCount == 32 && redMask == 0x00FF0000 && greenMask == 0x0000FF00 && blueMask == 0x000000FF)
+         return;
 
-            FileOutputStream fstream = new FileOutputStream(outFileName);
-            DataOutputStream out = new DataOutputStream(fstream);
+      int[] masks = {redMask, greenMask, blueMask};
+      for (int c = 0; c < 3; ++c)
+      {
+         int bits = Integer.bitCount(masks[c]);
+         int width = Math.min(bits, 8);
+         fieldMask[c] = masks[c];
+         fieldShift[c] = masks[c] == 0 ? 0 : Integer.numberOfTrailingZeros(masks[c]) + bits - width;
+         fieldScale[c] = new int[1 << width];
+         for (int v = 1; v < fieldScale[c].length; ++v)
+         {
+            fieldScale[c][v] = (int)Math.round(v * 255.0 / (fieldScale[c].length - 1));
+         }
+      }
+      bitfields = true;
+   } // void buildBitfields(int redMask, int greenMask, int blueMask)
 
-// BITMAPFILEHEADER
-            out.writeShort(bmpFileHeader_bfType);                           // WORD - un-swapped since should be the letters BM
-            out.writeInt(dibdumper.swapInt(bmpFileHeader_bfSize));          // DWORD
-            out.writeShort(dibdumper.swapShort(bmpFileHeader_bfReserved1)); // WORD
-            out.writeShort(dibdumper.swapShort(bmpFileHeader_bfReserved2)); // WORD
-            out.writeInt(dibdumper.swapInt(bmpFileHeader_bfOffBits));       // DWORD
+/*
+ * Method decodeRow decodes scan line number row, counted in file order (the first scan line in the file is row 0), into
+ * the first biWidth elements of pels as true color values. in is the view returned by readHeader. Rows can be decoded
+ * in any order and pels can be reused from row to row, so a whole image can be decoded through a single row buffer.
+ */
+   void decodeRow(ByteBuffer in, int row, int[] pels)
+   {
+      decodeRow(in, row, lineBytes, pels, false);
+   }
 
-// BITMAPINFOHEADER
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biSize));          // DWORD
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biWidth));         // LONG
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biHeight));        // LONG
-            out.writeShort(dibdumper.swapShort(bmpInfoHeader_biPlanes));    // WORD
-            out.writeShort(dibdumper.swapShort(bmpInfoHeader_biBitCount));  // WORD
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biCompression));   // DWORD
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biSizeImage));     // DWORD
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biXPelsPerMeter)); // LONG
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biYPelsPerMeter)); // LONG
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biClrUsed));       // DWORD
-            out.writeInt(dibdumper.swapInt(bmpInfoHeader_biClrImportant));  // DWORD
+/*
+ * Method decodeGrayRow is decodeRow for gray levels: each element of levels gets the pel's gray level 0 - 255, the same value
+ * grayLevel would give for the color pel. Color table images look the level up in the tables built for the image, so the
+ * grayscale formula is never evaluated per pel.
+ */
+   void decodeGrayRow(ByteBuffer in, int row, int[] levels)
+   {
+      decodeRow(in, row, lineBytes, levels, true);
+   }
 
-// there is no color table for this true color image, so write out the pels
+/*
+ * The work of decodeRow and decodeGrayRow. The padded scan line is located from bfOffBits and rowStride and its pel bytes are
+ * copied into line with one bulk get, then a decoder dedicated to the color depth turns the whole line into pels. line must
+ * hold at least rowBytes bytes. Callers decoding rows on several threads pass each thread its own view of the bitmap
+ * (see ByteBuffer.duplicate) and its own line.
+ */
+   void decodeRow(ByteBuffer in, int row, byte[] line, int[] pels, boolean gray)
+   {
+      if (rleStream)
+      {
+         decodeRleRow(in, row, pels, gray ? grayPallet : colorPallet);
+         return;
+      }
 
-            rgbQuad_rgbReserved = 0;
+      in.position(bmpFileHeader_bfOffBits + row * rowStride);
+      in.get(line, 0, rowBytes);
 
-            String pels = "";
+      if (bitfields)
+      {
+         decodeBitfields(line, pels);
+         if (gray) toGrayLevels(pels);
+         return;
+      }
 
-            for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)    // write over the rows (in the usual inverted format)
-            {
-               for (j = 0; j < bmpInfoHeader_biWidth; ++j) // and the columns
-               {
-                  pel = imageArray[i][j];
-
-                  pel = colorToGrayscale(pel);
-                  RgbQuad rgb = pelToRGB(pel);
-                  double pelByte = (double) rgb.red;
-                  pels += (pelByte / 255.0 + " ");
-
-                  rgbQuad_rgbBlue  = pel & 0x00FF;
-                  rgbQuad_rgbGreen = (pel >> 8)  & 0x00FF;
-                  rgbQuad_rgbRed   = (pel >> 16) & 0x00FF;
-                  out.writeByte(rgbQuad_rgbBlue); // lowest byte in the color
-                  out.writeByte(rgbQuad_rgbGreen);
-                  out.writeByte(rgbQuad_rgbRed);  // highest byte in the color
-                  if (bmpInfoHeader_biBitCount == 32) out.writeByte(rgbQuad_rgbReserved);
-               }
+      switch (bmpInfoHeader_biBitCount)
+      {
+         case 1: // 2 colors, each bit is a pel, so there are 8 pels per byte. Works
+            decode1(line, pels, gray ? grayExpand : colorExpand);
+            break;
+         case 2: // 4 colors, Each byte is 4 pels (2 bits each),  Should work, not tested.
+            decodePacked(line, pels, gray ? grayExpand : colorExpand, 4);
+            break;
+         case 4: // 16 colors, Each byte is two pels. Works
+            decodePacked(line, pels, gray ? grayExpand : colorExpand, 2);
+            break;
+         case 8: // 1 byte, 1 pel, Works
+            decode8(line, pels, gray ? grayPallet : colorPallet);
+            break;
+         case 16: // Not likely to work (format is not internally consistent), not tested.
+            decode16(line, pels);
+            if (gray) toGrayLevels(pels);
+            break;
+         case 24: // Works
+            if (gray) decode24Gray(line, pels); else decode24(line, pels);
+            break;
+         case 32: // Works
+            if (gray) decode32Gray(line, pels); else decode32(line, pels);
+            break;
+         default: // Unsupported depth, already reported by readHeader. The row is left as it was.
+      } // switch (bmpInfoHeader_biBitCount)
+   } // void decodeRow(ByteBuffer in, int row, byte[] line, int[] pels, boolean gray)
 
-               if (bmpInfoHeader_biBitCount != 32)
-               {
-                  for (j = 0; j < iDeadBytes; ++j)
-                  {
-                     out.writeByte(0); // Now write out the "dead bytes" to pad to a 4 byte boundary
-                  }
-               }
+/*
+ * Method decode1 decodes a 1 bit scan line. Each byte is looked up in expand, which holds the 8 pels for every byte value, so
+ * there is no shifting or masking per pel. A width that is not a multiple of 8 takes the leading pels of one more byte.
+ */
+   void decode1(byte[] line, int[] pels, int[] expand)
+   {
+      int width = bmpInfoHeader_biWidth;
+      int fullBytes = width >> 3;
+      int column = 0;
 
-            } // for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)
+      for (int j = 0; j < fullBytes; ++j)
+      {
+         int e = (line[j] & 0xFF) << 3;
+         pels[column]     = expand[e];
+         pels[column + 1] = expand[e + 1];
+         pels[column + 2] = expand[e + 2];
+         pels[column + 3] = expand[e + 3];
+         pels[column + 4] = expand[e + 4];
+         pels[column + 5] = expand[e + 5];
+         pels[column + 6] = expand[e + 6];
+         pels[column + 7] = expand[e + 7];
+         column += 8;
+      }
 
-            FileWriter inputs = new FileWriter(outputFile);
-            inputs.write(pels);
-            inputs.write("\n");
+      if (column < width) // pick up the trailing bits for images that are not mod 8 columns wide
+      {
+         int e = (line[fullBytes] & 0xFF) << 3;
+         for (int k = 0; column < width; ++k)
+         {
+            pels[column++] = expand[e + k];
+         }
+      }
+   } // void decode1(byte[] line, int[] pels, int[] expand)
 
-            inputs.close();
+/*
+ * Method decodePacked decodes a 2 or 4 bit scan line, pelsPerByte pels per byte, through the expand table.
+ */
+   void decodePacked(byte[] line, int[] pels, int[] expand, int pelsPerByte)
+   {
+      int width = bmpInfoHeader_biWidth;
+      int fullBytes = width / pelsPerByte;
+      int column = 0;
 
-            out.close();
-            fstream.close();
+      for (int j = 0; j < fullBytes; ++j)
+      {
+         int e = (line[j] & 0xFF) * pelsPerByte;
+         for (int k = 0; k < pelsPerByte; ++k)
+         {
+            pels[column++] = expand[e + k];
          }
-         catch (Exception e)
+      }
+
+      if (column < width) // the trailing pels for images that are not a multiple of pelsPerByte columns wide
+      {
+         int e = (line[fullBytes] & 0xFF) * pelsPerByte;
+         for (int k = 0; column < width; ++k)
          {
-            System.err.println("File output error" + e);
+            pels[column++] = expand[e + k];
          }
-      } // public bmpToPelFile()
+      }
+   } // void decodePacked(byte[] line, int[] pels, int[] expand, int pelsPerByte)
+
 /*
- *
- * ---- MAIN ----
- *
+ * Method decode8 decodes an 8 bit scan line. Each byte is an index into pallet, which is either the color table or its gray levels.
  */
-   public static void main(String[] args)
+   void decode8(byte[] line, int[] pels, int[] pallet)
+   {
+      for (int j = 0; j < bmpInfoHeader_biWidth; ++j)
       {
-      String inFileName, outFileName;
-      int i, j, k;
-      int numberOfColors;
-      int pel;
-      int iByteVal, iColumn, iBytesPerRow, iPelsPerRow, iTrailingBits, iDeadBytes;
-// RBGQUAD
-      int rgbQuad_rgbBlue;
-      int rgbQuad_rgbGreen;
-      int rgbQuad_rgbRed;
-      int rgbQuad_rgbReserved;           // not used in this method
-// The color table
-      int[] colorPallet = new int[256];  // reserve space for the largest possible color table
-
-      DibDump dibdumper = new DibDump(); // needed to get to the byte swapping methods
-
-      if (args.length > 0)
-         inFileName = args[0];
-      else
-         inFileName = "one_diagonal.bmp";
-
-      if (args.length > 1)
-         outFileName = args[1];
-      else
-         outFileName = "test2.bmp";
+         pels[j] = pallet[line[j] & 0xFF];
+      }
+   }
 
-      try // lots of things can go wrong when doing file i/o
-         {
-         // Open the file that is the first command line parameter
-         FileInputStream fstream = new FileInputStream(inFileName);
+/*
+ * Method decode16 decodes a 16 bit scan line. Each little endian WORD holds 5 bits each of blue, green and red.
+ */
+   void decode16(byte[] line, int[] pels)
+   {
+      for (int j = 0, o = 0; j < bmpInfoHeader_biWidth; ++j, o += 2)
+      {
+         int pel = (line[o] & 0xFF) | ((line[o + 1] & 0xFF) << 8);
+         pels[j] = (((pel >> 10) & 0x1F) << 16) | (((pel >> 5) & 0x1F) << 8) | (pel & 0x1F);
+      }
+   }
 
-         // Convert our input stream to a DataInputStream
-         DataInputStream in = new DataInputStream(fstream);
+/*
+ * Method decode24 decodes a 24 bit scan line of blue, green, red byte triplets.
+ */
+   void decode24(byte[] line, int[] pels)
+   {
+      for (int j = 0, o = 0; j < bmpInfoHeader_biWidth; ++j, o += 3)
+      {
+         pels[j] = ((line[o + 2] & 0xFF) << 16) | ((line[o + 1] & 0xFF) << 8) | (line[o] & 0xFF);
+      }
+   }
 
 /*
- *  Read in BITMAPFILEHEADER
- *
- *              typedef struct tagBITMAPFILEHEADER {
-                    WORD    bfType;
-                    DWORD   bfSize;
-                    WORD    bfReserved1;
-                    WORD    bfReserved2;
-                    DWORD   bfOffBits;
-            } BITMAPFILEHEADER, FAR *LPBITMAPFILEHEADER, *PBITMAPFILEHEADER;
-
-bfType
-    Specifies the file type. It must be set to the signature word BM (0x4D42) to indicate bitmap.
-bfSize
-    Specifies the size, in bytes, of the bitmap file.
-bfReserved1
-    Reserved; set to zero
-bfReserved2
-    Reserved; set to zero
-bfOffBits
-    Specifies the offset, in bytes, from the BITMAPFILEHEADER structure to the bitmap bits
-*/
-
-// Read and Convert to big endian
-         bmpFileHeader_bfType      = in.readUnsignedShort();                         // WORD - un-swapped since it should be the letters BM
-         bmpFileHeader_bfSize      = dibdumper.swapInt(in.readInt());                // DWORD
-         bmpFileHeader_bfReserved1 = dibdumper.swapShort(in.readUnsignedShort());    // WORD
-         bmpFileHeader_bfReserved2 = dibdumper.swapShort(in.readUnsignedShort());    // WORD
-         bmpFileHeader_bfOffBits   = dibdumper.swapInt(in.readInt());                // DWORD
+ * Method decode24Gray decodes a 24 bit scan line straight to gray levels without packing each pel first.
+ */
+   void decode24Gray(byte[] line, int[] levels)
+   {
+      for (int j = 0, o = 0; j < bmpInfoHeader_biWidth; ++j, o += 3)
+      {
+         levels[j] = (int)Math.round(GRAY_RED[line[o + 2] & 0xFF] + GRAY_GREEN[line[o + 1] & 0xFF] + GRAY_BLUE[line[o] & 0xFF]);
+      }
+   }
 
-         System.out.printf("\nbfType=%4X bfSize=%d bfReserved1=%h bfReserved2=%h bfOffBits=%d\n\n",
-                           bmpFileHeader_bfType,
-                           bmpFileHeader_bfSize,
-                           bmpFileHeader_bfReserved1,
-                           bmpFileHeader_bfReserved2,
-                           bmpFileHeader_bfOffBits);
+/*
+ * Method decode32 decodes a 32 bit scan line. The little-endian DWORD is already laid out as xRGB.
+ */
+   void decode32(byte[] line, int[] pels)
+   {
+      for (int j = 0, o = 0; j < bmpInfoHeader_biWidth; ++j, o += 4)
+      {
+         pels[j] = (line[o] & 0xFF) | ((line[o + 1] & 0xFF) << 8) | ((line[o + 2] & 0xFF) << 16) | (line[o + 3] << 24);
+      }
+   }
 
+/*
+ * Method decode32Gray decodes a 32 bit scan line straight to gray levels. The unused high byte is skipped.
+ */
+   void decode32Gray(byte[] line, int[] levels)
+   {
+      for (int j = 0, o = 0; j < bmpInfoHeader_biWidth; ++j, o += 4)
+      {
+         levels[j] = (int)Math.round(GRAY_RED[line[o + 2] & 0xFF] + GRAY_GREEN[line[o + 1] & 0xFF] + GRAY_BLUE[line[o] & 0xFF]);
+      }
+   }
 
 /*
-** The WORD value of 0x424D is reversed from the expected 0x4D42 (BM) because Java is big-endian and BMPs are defined as little-endian
-*/
-         if (bmpFileHeader_bfType != 0x424D) System.out.printf("WARNING! This image is NOT a BMP file! Processing anyway... Who am I to argue.\n\n");
+ * Method toGrayLevels replaces the first biWidth color pels with their gray levels.
+ */
+   void toGrayLevels(int[] pels)
+   {
+      for (int j = 0; j < bmpInfoHeader_biWidth; ++j)
+      {
+         pels[j] = grayLevel(pels[j]);
+      }
+   }
 
 /*
- Read in BITMAPINFOHEADER
+ * Method decodeBitfields decodes a 16 or 32 bit BI_BITFIELDS scan line using the masks set up by buildBitfields.
+ */
+   void decodeBitfields(byte[] line, int[] pels)
+   {
+      int bytesPerPel = bmpInfoHeader_biBitCount / 8;
+      int[] red = fieldScale[0];
+      int[] green = fieldScale[1];
+      int[] blue = fieldScale[2];
 
-               typedef struct tagBITMAPINFOHEADER{
-                       DWORD      biSize;
-                       LONG       biWidth;
-                       LONG       biHeight;
-                       WORD       biPlanes;
-                       WORD       biBitCount;
-                       DWORD      biCompression;
-                       DWORD      biSizeImage;
-                       LONG       biXPelsPerMeter;
-                       LONG       biYPelsPerMeter;
-                       DWORD      biClrUsed;
-                       DWORD      biClrImportant;
-               } BITMAPINFOHEADER, FAR *LPBITMAPINFOHEADER, *PBITMAPINFOHEADER;
+      for (int j = 0, o = 0; j < bmpInfoHeader_biWidth; ++j, o += bytesPerPel)
+      {
+         int pel = (line[o] & 0xFF) | ((line[o + 1] & 0xFF) << 8);
+         if (bytesPerPel == 4) pel |= ((line[o + 2] & 0xFF) << 16) | (line[o + 3] << 24);
 
+         pels[j] = (red[(pel & fieldMask[0]) >>> fieldShift[0]] << 16) |
+                   (green[(pel & fieldMask[1]) >>> fieldShift[1]] << 8) |
+                    blue[(pel & fieldMask[2]) >>> fieldShift[2]];
+      }
+   } // void decodeBitfields(byte[] line, int[] pels)
 
-biSize
-    Specifies the size of the structure, in bytes.
-    This size does not include the color table or the masks mentioned in the biClrUsed member.
-    See the Remarks section for more information.
-biWidth
-    Specifies the width of the bitmap, in pixels.
-biHeight
-    Specifies the height of the bitmap, in pixels.
-    If biHeight is positive, the bitmap is a bottom-up DIB and its origin is the lower left corner.
-    If biHeight is negative, the bitmap is a top-down DIB and its origin is the upper left corner.
-    If biHeight is negative, indicating a top-down DIB, biCompression must be either BI_RGB or BI_BITFIELDS. Top-down DIBs cannot be compressed.
-biPlanes
-    Specifies the number of planes for the target device.
-    This value must be set to 1.
-biBitCount
-    Specifies the number of bits per pixel.
-    The biBitCount member of the BITMAPINFOHEADER structure determines the number of bits that define each pixel and the maximum number of colors in the bitmap.
-    This member must be one of the following values.
-    Value     Description
-    1       The bitmap is monochrome, and the bmiColors member contains two entries.
-            Each bit in the bitmap array represents a pixel. The most significant bit is to the left in the image. 
-            If the bit is clear, the pixel is displayed with the color of the first entry in the bmiColors table.
-            If the bit is set, the pixel has the color of the second entry in the table.
-    2       The bitmap has four possible color values.  The most significant half-nibble is to the left in the image.
-    4       The bitmap has a maximum of 16 colors, and the bmiColors member contains up to 16 entries.
-            Each pixel in the bitmap is represented by a 4-bit index into the color table. The most significant nibble is to the left in the image.
-            For example, if the first byte in the bitmap is 0x1F, the byte represents two pixels. The first pixel contains the color in the second table entry, and the second pixel contains the color in the sixteenth table entry.
-    8       The bitmap has a maximum of 256 colors, and the bmiColors member contains up to 256 entries. In this case, each byte in the array represents a single pixel.
-    16      The bitmap has a maximum of 2^16 colors.
-            If the biCompression member of the BITMAPINFOHEADER is BI_RGB, the bmiColors member is NULL.
-            Each WORD in the bitmap array represents a single pixel. The relative intensities of red, green, and blue are represented with 5 bits for each color component.
-            The value for blue is in the least significant 5 bits, followed by 5 bits each for green and red.
-            The most significant bit is not used. The bmiColors color table is used for optimizing colors used on palette-based devices, and must contain the number of entries specified by the biClrUsed member of the BITMAPINFOHEADER.
-    24      The bitmap has a maximum of 2^24 colors, and the bmiColors member is NULL.
-            Each 3-byte triplet in the bitmap array represents the relative intensities of blue, green, and red, respectively, for a pixel.
-            The bmiColors color table is used for optimizing colors used on palette-based devices, and must contain the number of entries specified by the biClrUsed member of the BITMAPINFOHEADER.
-    32      The bitmap has a maximum of 2^32 colors. If the biCompression member of the BITMAPINFOHEADER is BI_RGB, the bmiColors member is NULL. Each DWORD in the bitmap array represents the relative intensities of blue, green, and red, respectively, for a pixel. The high byte in each DWORD is not used. The bmiColors color table is
-            used for optimizing colors used on palette-based devices, and must contain the number of entries specified by the biClrUsed member of the BITMAPINFOHEADER.
-            If the biCompression member of the BITMAPINFOHEADER is BI_BITFIELDS, the bmiColors member contains three DWORD color masks that specify the red, green, and blue components, respectively, of each pixel.
-            Each DWORD in the bitmap array represents a single pixel.
-biCompression
-    Specifies the type of compression for a compressed bottom-up bitmap (top-down DIBs cannot be compressed). This member can be one of the following values.
-    Value               Description
-    BI_RGB              An uncompressed format.
-    BI_BITFIELDS        Specifies that the bitmap is not compressed and that the color table consists of three DWORD color masks that specify the red, green, and blue components of each pixel.
-                        This is valid when used with 16- and 32-bpp bitmaps.
-                        This value is valid in Windows Embedded CE versions 2.0 and later.
-    BI_ALPHABITFIELDS   Specifies that the bitmap is not compressed and that the color table consists of four DWORD color masks that specify the red, green, blue, and alpha components of each pixel.
-                        This is valid when used with 16- and 32-bpp bitmaps.
-                        This value is valid in Windows CE .NET 4.0 and later.
-                        You can OR any of the values in the above table with BI_SRCPREROTATE to specify that the source DIB section has the same rotation angle as the destination.
-biSizeImage
-    Specifies the size, in bytes, of the image. This value will be the number of bytes in each scan line which must be padded to
-    insure the line is a multiple of 4 bytes (it must align on a DWORD boundary) times the number of rows.
-    This value may be set to zero for BI_RGB bitmaps (so you cannot be sure it will be set).
-biXPelsPerMeter
-    Specifies the horizontal resolution, in pixels per meter, of the target device for the bitmap.
-    An application can use this value to select a bitmap from a resource group that best matches the characteristics of the current device.
-biYPelsPerMeter
-    Specifies the vertical resolution, in pixels per meter, of the target device for the bitmap
-biClrUsed
-    Specifies the number of color indexes in the color table that are actually used by the bitmap.
-    If this value is zero, the bitmap uses the maximum number of colors corresponding to the value of the biBitCount member for the compression mode specified by biCompression.
-    If biClrUsed is nonzero and the biBitCount member is less than 16, the biClrUsed member specifies the actual number of colors the graphics engine or device driver accesses.
-    If biBitCount is 16 or greater, the biClrUsed member specifies the size of the color table used to optimize performance of the system color palettes.
-    If biBitCount equals 16 or 32, the optimal color palette starts immediately following the three DWORD masks.
-    If the bitmap is a packed bitmap (a bitmap in which the bitmap array immediately follows the BITMAPINFO header and is referenced by a single pointer), the biClrUsed member must be either zero or the actual size of the color table.
-biClrImportant
-    Specifies the number of color indexes required for displaying the bitmap.
-    If this value is zero, all colors are required.
-Remarks
+/*
+ * Method decodeRleRow decodes the next row of a BI_RLE8 or BI_RLE4 bitmap straight from the encoded stream in into pels,
+ * looking each color index up in pallet. Nothing is expanded ahead of time: the stream is read a code at a time and the
+ * decoder only remembers where it is (rleRow, rleColumn, rleDone) between rows. Pels the encoding skips over with a delta
+ * or an early end of line get color index 0. The codes are
+ *    n c      (n > 0) n pels of index c; for RLE4 the two nibbles of c alternate, high nibble first
+ *    0 0      end of line
+ *    0 1      end of bitmap
+ *    0 2 x y  delta: move x pels right and y rows up
+ *    0 n ...  (n > 2) n literal indexes (bytes for RLE8, nibbles for RLE4), padded to an even number of bytes
+ */
+   void decodeRleRow(ByteBuffer in, int row, int[] pels, int[] pallet)
+   {
+      int width = bmpInfoHeader_biWidth;
+      boolean rle4 = bmpInfoHeader_biCompression == BI_RLE4;
 
-The BITMAPINFO structure combines the BITMAPINFOHEADER structure and a color table to provide a complete definition of the dimensions and colors of a DIB.
-An application should use the information stored in the biSize member to locate the color table in a BITMAPINFO structure, as follows.
+      Arrays.fill(pels, 0, width, pallet[0]);
+      if (rleDone || rleRow != row) return; // past the end of the bitmap, or skipped by a delta
 
-pColor = ((LPSTR)pBitmapInfo + (WORD)(pBitmapInfo->bmiHeader.biSize));
-*/
+      int column = rleColumn;
+      rleColumn = 0;
 
-// Read and convert to big endian
-         bmpInfoHeader_biSize          = dibdumper.swapInt(in.readInt());              // DWORD
-         bmpInfoHeader_biWidth         = dibdumper.swapInt(in.readInt());              // LONG
-         bmpInfoHeader_biHeight        = dibdumper.swapInt(in.readInt());              // LONG
-         bmpInfoHeader_biPlanes        = dibdumper.swapShort(in.readUnsignedShort());  // WORD
-         bmpInfoHeader_biBitCount      = dibdumper.swapShort(in.readUnsignedShort());  // WORD
-         bmpInfoHeader_biCompression   = dibdumper.swapInt(in.readInt());              // DWORD
-         bmpInfoHeader_biSizeImage     = dibdumper.swapInt(in.readInt());              // DWORD
-         bmpInfoHeader_biXPelsPerMeter = dibdumper.swapInt(in.readInt());              // LONG
-         bmpInfoHeader_biYPelsPerMeter = dibdumper.swapInt(in.readInt());              // LONG
-         bmpInfoHeader_biClrUsed       = dibdumper.swapInt(in.readInt());              // DWORD
-         bmpInfoHeader_biClrImportant  = dibdumper.swapInt(in.readInt());              // DWORD
-
-         System.out.printf("biSize=%d\nbiWidth=%d\nbiHeight=%d\nbiPlanes=%d\nbiBitCount=%d\nbiCompression=%d\nbiSizeImage=%d\nbiXPelsPerMeter=%d\nbiYPelsPerMeter=%d\nbiClrUsed=%d\nbiClrImportant=%d\n",
-                    bmpInfoHeader_biSize,
-                    bmpInfoHeader_biWidth,
-                    bmpInfoHeader_biHeight,
-                    bmpInfoHeader_biPlanes,
-                    bmpInfoHeader_biBitCount,
-                    bmpInfoHeader_biCompression,
-                    bmpInfoHeader_biSizeImage,
-                    bmpInfoHeader_biXPelsPerMeter,
-                    bmpInfoHeader_biYPelsPerMeter,
-                    bmpInfoHeader_biClrUsed,
-                    bmpInfoHeader_biClrImportant);
-
-         System.out.printf("\n");
+      while (true)
+      {
+         if (in.remaining() < 2) // a truncated stream ends the bitmap
+         {
+            rleDone = true;
+            return;
+         }
+         int count = in.get() & 0xFF;
+         int value = in.get() & 0xFF;
 
-// Since we use the height to crate arrays, it cannot have a negative a value. If the height field is
-// less than zero, then make it positive and set the topDownDIB flag to TRUE so we know that the image is
-// stored on disc upsidedown (which means it is actually rightside up).
-        if (bmpInfoHeader_biHeight < 0)
+         if (count > 0) // encoded run
+         {
+            for (int k = 0; k < count; ++k, ++column)
+            {
+               int index = !rle4 ? value : (k & 1) == 0 ? value >> 4 : value & 0x0F;
+               if (column < width) pels[column] = pallet[index];
+            }
+         }
+         else if (value == 0) // end of line
+         {
+            ++rleRow;
+            return;
+         }
+         else if (value == 1) // end of bitmap
+         {
+            rleDone = true;
+            return;
+         }
+         else if (value == 2) // delta
+         {
+            column += in.get() & 0xFF;
+            int rows = in.get() & 0xFF;
+            if (rows > 0)
+            {
+               rleRow += rows;
+               rleColumn = column;
+               return;
+            }
+         }
+         else // absolute run of value literal indexes
+         {
+            int bytes = rle4 ? (value + 1) / 2 : value;
+            int b = 0;
+            for (int k = 0; k < value; ++k, ++column)
             {
-            topDownDIB = true;
-            bmpInfoHeader_biHeight = -bmpInfoHeader_biHeight;
+               int index;
+               if (!rle4)
+                  index = in.get() & 0xFF;
+               else if ((k & 1) == 0)
+                  index = (b = in.get() & 0xFF) >> 4;
+               else
+                  index = b & 0x0F;
+               if (column < width) pels[column] = pallet[index];
             }
+            if ((bytes & 1) == 1) in.get(); // runs are padded to a 16 bit boundary
+         }
+      } // while (true)
+   } // void decodeRleRow(ByteBuffer in, int row, int[] pels, int[] pallet)
+
 /*
-Now for the color table. For true color images, there isn't one.
+ * Methods decodeToInputs decode a bitmap straight into a network's input activations without writing or parsing a pel
+ * file. inputs must hold exactly biWidth * biHeight values; each is the pel's gray level scaled to 0.0 - 1.0, in the same
+ * order and with the same values as the pel file writePelFile would have written. No image sized array is allocated:
+ * every scan line is decoded into rowPels and converted in place, and a file read by name goes into fileBuffer, which
+ * is only grown when a larger file comes along. Throws IllegalArgumentException if inputs is the wrong length.
+ */
+   public void decodeToInputs(String bmpFileName, double[] inputs) throws IOException
+   {
+      decodeToInputs(readFileReusing(bmpFileName), inputs);
+   }
 
-typedef struct tagRGBQUAD {
-        BYTE    rgbBlue;
-        BYTE    rgbGreen;
-        BYTE    rgbRed;
-        BYTE    rgbReserved;
-        } RGBQUAD;
+   public void decodeToInputs(byte[] bmp, double[] inputs)
+   {
+      decodeToInputs(ByteBuffer.wrap(bmp), inputs);
+   }
 
-typedef RGBQUAD FAR* LPRGBQUAD;
-*/
+   public void decodeToInputs(ByteBuffer bmp, double[] inputs)
+   {
+      NetworkEvents.DibDumpDecode event = NetworkEvents.dibDumpDecode();
+      ByteBuffer in = readHeader(bmp);
+      int width = bmpInfoHeader_biWidth;
+      checkInputLength(inputs.length);
 
-         switch (bmpInfoHeader_biBitCount) // Determine the number of colors in the default color table
-            {
-            case 1:
-               numberOfColors = 2;
-               break;
-            case 2:
-               numberOfColors = 4;
-               break;
-            case 4:
-               numberOfColors = 16;
-               break;
-            case 8:
-               numberOfColors = 256;
-               break;
-            default:
-               numberOfColors = 0; // no color table
-            }
+      for (int row = 0; row < bmpInfoHeader_biHeight; ++row)
+      {
+         decodeGrayRow(in, row, rowPels);
+         int base = (topDownDIB ? bmpInfoHeader_biHeight - 1 - row : row) * width; // pel files start at the bottom row
+         for (int j = 0; j < width; ++j)
+         {
+            inputs[base + j] = PEL_VALUE[rowPels[j]];
+         }
+      }
+      NetworkEvents.commit(event, this, 1, true);
+   } // public void decodeToInputs(ByteBuffer bmp, double[] inputs)
 
-         System.out.printf("Color Depth = %d, %d\n", bmpInfoHeader_biBitCount, numberOfColors);
-/*
-* biClrUsed -  Specifies the number of color indexes in the color table that are actually used by the bitmap.
-*     If this value is zero, the bitmap uses the maximum number of colors corresponding to the value of the biBitCount member for the compression mode specified by biCompression.
-*     If biClrUsed is nonzero and the biBitCount member is less than 16, the biClrUsed member specifies the actual number of colors the graphics engine or device driver accesses.
-*     If biBitCount is 16 or greater, the biClrUsed member specifies the size of the color table used to optimize performance of the system color palettes.
-*     If biBitCount equals 16 or 32, the optimal color palette starts immediately following the three DWORD masks.
-*     If the bitmap is a packed bitmap (a bitmap in which the bitmap array immediately follows the BITMAPINFO header and is referenced by a single pointer), the biClrUsed member must be either zero or the actual size of the color table.
-*/
-         if (bmpInfoHeader_biClrUsed > 0) numberOfColors = bmpInfoHeader_biClrUsed;
-               
-         for (i = 0; i < numberOfColors; ++i) // Read in the color table (or not if numberOfColors is zero)
-            {
-            rgbQuad_rgbBlue      = in.readUnsignedByte(); // lowest byte in the color
-            rgbQuad_rgbGreen     = in.readUnsignedByte();
-            rgbQuad_rgbRed       = in.readUnsignedByte(); // highest byte in the color
-            rgbQuad_rgbReserved  = in.readUnsignedByte();
+   public void decodeToInputs(String bmpFileName, float[] inputs) throws IOException
+   {
+      decodeToInputs(readFileReusing(bmpFileName), inputs);
+   }
 
-            // Build the color from the RGB values. Since we declared the rgbQuad values to be int, we can shift and then OR the values
-            // to build up the color. Since we are reading one byte at a time, there are no "endian" issues.
+   public void decodeToInputs(byte[] bmp, float[] inputs)
+   {
+      decodeToInputs(ByteBuffer.wrap(bmp), inputs);
+   }
 
-            colorPallet[i] = (rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-// System.out.printf("DEBUG: Color Table = %d, %06X\n", i, colorPallet[i]);
-            } // for (i = 0; i < numberOfColors; ++i)
+   public void decodeToInputs(ByteBuffer bmp, float[] inputs)
+   {
+      NetworkEvents.DibDumpDecode event = NetworkEvents.dibDumpDecode();
+      ByteBuffer in = readHeader(bmp);
+      int width = bmpInfoHeader_biWidth;
+      checkInputLength(inputs.length);
+
+      for (int row = 0; row < bmpInfoHeader_biHeight; ++row)
+      {
+         decodeGrayRow(in, row, rowPels);
+         int base = (topDownDIB ? bmpInfoHeader_biHeight - 1 - row : row) * width; // pel files start at the bottom row
+         for (int j = 0; j < width; ++j)
+         {
+            inputs[base + j] = PEL_VALUE_FLOAT[rowPels[j]];
+         }
+      }
+      NetworkEvents.commit(event, this, 1, true);
+   } // public void decodeToInputs(ByteBuffer bmp, float[] inputs)
 
 /*
- * Now for the fun part. We need to read in the rest of the bit map, but how we interpret the values depends on the color depth.
- *
- * numberOfColors = 2:   Each bit is a pel, so there are 8 pels per byte. The Color Table has only two values for "black" and "white"
- * numberOfColors = 4:   Each pair of bits is a pel, so there are 4 pels per byte. The Color Table has only four values
- * numberOfColors = 16;  Each nibble (4 bits) is a pel, so there are 2 pels per byte. The Color Table has 16 entries.
- * numberOfColors = 256; Each byte is a pel and the value maps into the 256 byte Color Table.
- *
- * Any other value is read in as "true" color.
- *
- * The BMP image is stored from bottom to top, meaning that the first scan line is the last scan line in the image.
- *
- * The rest is the bitmap. Use the height and width information to read it in. And as I mentioned before....
- * In the 32-bit format, each pixel in the image is represented by a series of four bytes of RGB stored as xBRG,
- * where the 'x' is an unused byte. For ALL image types each scan line is padded to an even 4-byte boundary.
- *
+ * Method checkInputLength makes sure an input array matches the header just read and that rowPels can hold a scan line.
  */
+   void checkInputLength(int length)
+   {
+      if (length != bmpInfoHeader_biWidth * bmpInfoHeader_biHeight)
+      {
+         throw new IllegalArgumentException("Bitmap is " + bmpInfoHeader_biWidth + "x" + bmpInfoHeader_biHeight +
+            " but the input array holds " + length + " values");
+      }
+      if (rowPels.length < bmpInfoHeader_biWidth) rowPels = new int[bmpInfoHeader_biWidth];
+   }
 
-         imageArray = new int[bmpInfoHeader_biHeight][bmpInfoHeader_biWidth]; // Create the array for the pels
 /*
- * I use the same loop structure for each case for clarity so you can see the similarities and differences.
- * The outer loop is over the rows (in reverse), the inner loop over the columns. 
+ * Method readFileReusing is readFile for repeated decodes: small files are read into fileBuffer, which is kept from call
+ * to call, instead of into a new buffer each time. Large files are still memory mapped.
  */
-         switch (bmpInfoHeader_biBitCount)
-            {
-            case 1: // each bit is a color, so there are 8 pels per byte.  Works
-/*
- * Each byte read in is 8 columns, so we need to break them out. We also have to deal with the case
- * where the image width is not an integer multiple of 8, in which case we will
- * have bits from part of the remaining byte. Each color is 1 bit which is masked with 0x01.
- * The screen ordering of the pels is High-Bit to Low-Bit, so the most significant element is first in the array of pels.
-*/
-               iBytesPerRow = bmpInfoHeader_biWidth / 8;
-               iTrailingBits = bmpInfoHeader_biWidth % 8;
+   ByteBuffer readFileReusing(String bmpFileName) throws IOException
+   {
+      FileChannel channel = FileChannel.open(Paths.get(bmpFileName), StandardOpenOption.READ);
+      try
+      {
+         long size = channel.size();
+         if (size >= MAP_THRESHOLD)
+         {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+         }
+         if (fileBuffer.capacity() < size) fileBuffer = ByteBuffer.allocate((int) size);
+         fileBuffer.clear().limit((int) size);
+         while (fileBuffer.hasRemaining() && channel.read(fileBuffer) >= 0);
+         fileBuffer.flip();
+         return fileBuffer.order(ByteOrder.LITTLE_ENDIAN);
+      }
+      finally
+      {
+         channel.close();
+      }
+   } // ByteBuffer readFileReusing(String bmpFileName)
 
-               iDeadBytes = iBytesPerRow;
-               if (iTrailingBits > 0) ++iDeadBytes;
-               iDeadBytes = (4 - iDeadBytes % 4) % 4;
 
-               for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                  if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-                  
-                  for (j = 0; j < iBytesPerRow; ++j)
-                     {
-                     iByteVal = in.readUnsignedByte();
-
-                     for (k = 0; k < 8; ++k)     // Get 8 pels from the one byte
-                        {
-                        iColumn = j * 8 + k;
-                        pel = colorPallet[(iByteVal >> (7 - k)) & 0x01];
-                        imageArray[i][iColumn] = pel;
-                        }
-                     }
-                  if (iTrailingBits > 0) // pick up the trailing bits for images that are not mod 8 columns wide
-                     {
-                     iByteVal = in.readUnsignedByte();
-
-                     for (k = 0; k < iTrailingBits; ++k)
-                        {
-                        iColumn = iBytesPerRow * 8 + k;
-                        pel = colorPallet[(iByteVal >> (7 - k)) & 0x01];
-                        imageArray[i][iColumn] = pel;
-                        }
-                     }
-
-                  for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-               break;
-            case 2: // 4 colors, Each byte is 4 pels (2 bits each),  Should work, not tested.
 /*
-* Each byte read in is 4 columns, so we need to break them out. We also have to deal with the case
-* where the image width is not an integer multiple of 4, in which case we will
-* have from 2 to 6 bits of the remaining byte. Each color is 2 bits which is masked with 0x03.
-* The screen ordering of the pels is High-Half-Nibble to Low-Half-Nibble, so the most significant element is first in the array of pels.
-*/
-               iBytesPerRow = bmpInfoHeader_biWidth / 4;
-               iTrailingBits = bmpInfoHeader_biWidth % 4; // 0, 1, 2 or 3
+ * Method bmpToPelFile decodes a bitmap with readBitmap and writes the grayscale pels, scaled to 0.0 - 1.0, to outputFile.
+ * If verifyFileName is set (see setVerifyFileName) the grayscale image is also written there as a 24-bit bitmap so the
+ * conversion can be checked by eye. Returns false (after printing the error) if the bitmap could not be read or the
+ * output could not be written.
+ */
+      public boolean bmpToPelFile(String bmpFileName, String outputFile)
+      {
+         int i, j;
+         int iBytesPerRow;
 
-               iDeadBytes = iBytesPerRow;
-               if (iTrailingBits > 0) ++iDeadBytes;
-               iDeadBytes = (4 - iDeadBytes % 4) % 4;
+         try // lots of things can go wrong when doing file i/o
+         {
+            readBitmap(bmpFileName, decodeThreads);
+         }
+         catch (Exception e)
+         {
+            System.err.println("File input error" + e);
+            return false;
+         }
+         /*
+          * Console dump of image bytes in HEX if the image is smaller than 33 x 33
+          */
 
-               for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                  if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                  for (j = 0; j < iBytesPerRow; ++j)
-                     {
-                     iByteVal = in.readUnsignedByte();
-
-                     for (k = 0; k < 4; ++k) // Get 4 pels from one byte
-                        {
-                        iColumn = j * 4 + k;
-                        pel = colorPallet[(iByteVal >> ((3 - k) * 2)) & 0x03]; // shift 2 bits at a time and reverse order
-                        imageArray[i][iColumn] = pel;
-                        }
-                     }
-                  if (iTrailingBits > 0) // pick up the trailing nibble for images that are not mod 2 columns wide
-                     {
-                     iByteVal = in.readUnsignedByte();
-
-                     for (k = 0; k < iTrailingBits; ++k)
-                        {
-                        iColumn = iBytesPerRow * 4 + k;  
-                        pel = colorPallet[(iByteVal >> ((3 - k) * 2)) & 0x03];
-                        imageArray[i][iColumn] = pel;
-                        }
-                     }
-                  for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-               break;
-            case 4: // 16 colors, Each byte is two pels. Works
-/*
-* Each byte read in is 2 columns, so we need to break them out. We also have to deal with the case
-* where the image width is not an integer multiple of 2, in which case we will
-* have one nibble from part of the remaining byte. We then read in the dead bytes so that each
-* scan line is a multiple of 4 bytes. Each color is a nibble (4 bits) which is masked with 0x0F.
-* The screen ordering of the pels is High-Nibble Low-Nibble, so the most significant element is first in the array of pels.
-*/
-               iPelsPerRow   = bmpInfoHeader_biWidth;
-               iBytesPerRow  = iPelsPerRow / 2;
-               iTrailingBits = iPelsPerRow % 2;  // Will either be 0 or 1
+         if (verbose && (bmpInfoHeader_biWidth < 33) && (bmpInfoHeader_biHeight < 33))
+         {
+            iBytesPerRow = bmpInfoHeader_biWidth;
+            for (i = 0; i < bmpInfoHeader_biHeight; ++i) // read over the rows
+            {
+               for (j = 0; j < iBytesPerRow; ++j)         // j is now just the column counter
+               {
+                  System.out.printf("%08X ", imageArray[i][j]);
+               }
+               System.out.printf("\n");
+            }
+         }
 
-               iDeadBytes = iBytesPerRow;
-               if (iTrailingBits > 0) ++iDeadBytes;
-               iDeadBytes = (4 - iDeadBytes % 4) % 4;
+         try
+         {
+            writePelFile(outputFile);
+            if (verifyFileName != null) writeVerificationBitmap(verifyFileName);
+         }
+         catch (Exception e)
+         {
+            System.err.println("File output error" + e);
+            return false;
+         }
+         return true;
+      } // public bmpToPelFile()
 
-               for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                  if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                  for (j = 0; j < iBytesPerRow; ++j)
-                     {
-                     iByteVal = in.readUnsignedByte();
-
-                     for (k = 0; k < 2; ++k) // Two pels per byte
-                        {
-                        iColumn = j * 2 + k;          // 1 - k  is needed to have High, Low nibble ordering for the image.
-                        pel = colorPallet[(iByteVal >> ((1 - k) * 4)) & 0x0F]; // shift 4 bits at a time
-                        imageArray[i][iColumn] = pel;
-                        }
-                     }
-
-                  if (iTrailingBits > 0) // pick up the trailing nibble for images that are not mod 2 columns wide
-                     {
-                     iByteVal = in.readUnsignedByte();
-
-                     iColumn = iBytesPerRow * 2;
-                     pel = colorPallet[(iByteVal >> 4) & 0x0F]; // The High nibble is the last remaining pel
-                     imageArray[i][iColumn] = pel;
-                     }
-                  for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  } // for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)
-               break;
-            case 8: // 1 byte, 1 pel, Works
 /*
-* Each byte read in is 1 column. We then read in the dead bytes so that each scan line is a multiple of 4 bytes.
-*/
-               iPelsPerRow = bmpInfoHeader_biWidth;
-               iDeadBytes = (4 - iPelsPerRow % 4) % 4;
-               for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                  if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                  for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                     iByteVal = in.readUnsignedByte();
-                     pel = colorPallet[iByteVal];
-                     imageArray[i][j] = pel;
-                     }
+ * Method setVerifyFileName turns on writing the grayscale verification bitmap in bmpToPelFile (pass a file name, e.g.
+ * test2.bmp) or turns it off again (pass null). It is off by default.
+ */
+   public void setVerifyFileName(String verifyFileName)
+   {
+      this.verifyFileName = verifyFileName;
+   }
 
-                  for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-               break;
-            case 16: // Not likely to work (format is not internally consistent), not tested.
 /*
-* Each two bytes read in is 1 column. Each color is 5 bits in the 2 byte word value, so we shift 5 bits and then mask them
-* off with 0x1F which is %11111 in binary. We then read in the dead bytes so that each scan line is a multiple of 4 bytes.
-*/
-               iPelsPerRow = bmpInfoHeader_biWidth;
-               iDeadBytes = (4 - iPelsPerRow % 4) % 4;
-               for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                  if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                  for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                     pel = dibdumper.swapShort(in.readUnsignedShort()); // Need to deal with little endian values
-                     rgbQuad_rgbBlue      =  pel        & 0x1F;
-                     rgbQuad_rgbGreen     = (pel >> 5)  & 0x1F;   
-                     rgbQuad_rgbRed       = (pel >> 10) & 0x1F;
-                     pel = (rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-                     imageArray[i][j] = pel;
-                     }
-
-                  for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  } // for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)
-               break;
-            case 24: // Works
+ * Method writePelFile streams the grayscale value of every pel in imageArray, scaled to 0.0 - 1.0 and separated by spaces,
+ * through a buffered writer. Rows are written bottom to top (the order they are stored on disk), which is the order the
+ * networks were trained on. Each gray level's text comes from PEL_TEXT, so no number is formatted and no String is built
+ * per pel; the output is identical to appending (gray / 255.0 + " ") for each pel.
+ */
+   public void writePelFile(String outputFile) throws IOException
+   {
+      Writer out = new BufferedWriter(new FileWriter(outputFile), PEL_WRITER_BUFFER);
+      try
+      {
+         for (int i = bmpInfoHeader_biHeight - 1; i >= 0; --i)    // write over the rows (in the usual inverted format)
+         {
+            int[] row = imageArray[i];
+            for (int j = 0; j < bmpInfoHeader_biWidth; ++j)       // and the columns
+            {
+               out.write(PEL_TEXT[grayLevel(row[j])]);
+            }
+         }
+         out.write("\n");
+      }
+      finally
+      {
+         out.close();
+      }
+   } // public void writePelFile(String outputFile)
+
 /*
-* Each three bytes read in is 1 column. Each scan line is padded to by a multiple of 4 bytes. The disk image has only 3 however.
-*/
-               iPelsPerRow = bmpInfoHeader_biWidth;
-               iDeadBytes = (4 - (iPelsPerRow * 3) % 4) % 4;
+ * Method writeVerificationBitmap writes the grayscale version of imageArray to a 24-bit true color bitmap. This is here mostly
+ * to be sure we did it all correctly. Note that it rewrites the header fields to describe the 24-bit file.
+ */
+   public void writeVerificationBitmap(String outFileName) throws IOException
+   {
+      int i, j;
+      int pel;
+      int iDeadBytes;
+// RBGQUAD
+      int rgbQuad_rgbBlue;
+      int rgbQuad_rgbGreen;
+      int rgbQuad_rgbRed;
+      int rgbQuad_rgbReserved;
 
-               for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                  if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                  for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                     rgbQuad_rgbBlue      = in.readUnsignedByte();
-                     rgbQuad_rgbGreen     = in.readUnsignedByte();
-                     rgbQuad_rgbRed       = in.readUnsignedByte();
-                     pel = (rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-                     imageArray[i][j] = pel;
-                     }
-                  for (j = 0; j < iDeadBytes; ++j) in.readUnsignedByte(); // Now read in the "dead bytes" to pad to a 4 byte boundary
-                  }
-               break;
-            case 32: // Works
+      iDeadBytes = (4 - (bmpInfoHeader_biWidth * 3) % 4) % 4;
+
+      bmpInfoHeader_biSizeImage =  (bmpInfoHeader_biWidth * 3 + iDeadBytes) * bmpInfoHeader_biHeight;
+      bmpFileHeader_bfOffBits = 54;        // 54 byte offset for 24 bit images (just open one with this app to get this value)
+      bmpFileHeader_bfSize = bmpInfoHeader_biSizeImage + bmpFileHeader_bfOffBits;
+      bmpInfoHeader_biBitCount = 24;       // 24 bit color image. Changes this number to 32 to write out 32 bit color images
+      bmpInfoHeader_biCompression = 0;     // BI_RGB (which is a value of zero)
+      bmpInfoHeader_biClrUsed = 0;         // Zero for true color
+      bmpInfoHeader_biClrImportant = 0;    // Zero for true color
+
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFileName)));
+      try
+      {
+// BITMAPFILEHEADER
+         out.writeShort(bmpFileHeader_bfType);                 // WORD - un-swapped since should be the letters BM
+         out.writeInt(swapInt(bmpFileHeader_bfSize));          // DWORD
+         out.writeShort(swapShort(bmpFileHeader_bfReserved1)); // WORD
+         out.writeShort(swapShort(bmpFileHeader_bfReserved2)); // WORD
+         out.writeInt(swapInt(bmpFileHeader_bfOffBits));       // DWORD
+
+// BITMAPINFOHEADER
+         out.writeInt(swapInt(bmpInfoHeader_biSize));          // DWORD
+         out.writeInt(swapInt(bmpInfoHeader_biWidth));         // LONG
+         out.writeInt(swapInt(bmpInfoHeader_biHeight));        // LONG
+         out.writeShort(swapShort(bmpInfoHeader_biPlanes));    // WORD
+         out.writeShort(swapShort(bmpInfoHeader_biBitCount));  // WORD
+         out.writeInt(swapInt(bmpInfoHeader_biCompression));   // DWORD
+         out.writeInt(swapInt(bmpInfoHeader_biSizeImage));     // DWORD
+         out.writeInt(swapInt(bmpInfoHeader_biXPelsPerMeter)); // LONG
+         out.writeInt(swapInt(bmpInfoHeader_biYPelsPerMeter)); // LONG
+         out.writeInt(swapInt(bmpInfoHeader_biClrUsed));       // DWORD
+         out.writeInt(swapInt(bmpInfoHeader_biClrImportant));  // DWORD
+
+// there is no color table for this true color image, so write out the pels
+
+         rgbQuad_rgbReserved = 0;
+
+         for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)    // write over the rows (in the usual inverted format)
+         {
+            for (j = 0; j < bmpInfoHeader_biWidth; ++j) // and the columns
+            {
+               pel = colorToGrayscale(imageArray[i][j]);
+
+               rgbQuad_rgbBlue  = pel & 0x00FF;
+               rgbQuad_rgbGreen = (pel >> 8)  & 0x00FF;
+               rgbQuad_rgbRed   = (pel >> 16) & 0x00FF;
+               out.writeByte(rgbQuad_rgbBlue); // lowest byte in the color
+               out.writeByte(rgbQuad_rgbGreen);
+               out.writeByte(rgbQuad_rgbRed);  // highest byte in the color
+               if (bmpInfoHeader_biBitCount == 32) out.writeByte(rgbQuad_rgbReserved);
+            }
+
+            if (bmpInfoHeader_biBitCount != 32)
+            {
+               for (j = 0; j < iDeadBytes; ++j)
+               {
+                  out.writeByte(0); // Now write out the "dead bytes" to pad to a 4 byte boundary
+               }
+            }
+         } // for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)
+      }
+      finally
+      {
+         out.close();
+      }
+   } // public void writeVerificationBitmap(String outFileName)
 /*
-* Each four bytes read in is 1 column. The number of bytes per line will always be a multiple of 4, so there are no dead bytes.
-*/
-               iPelsPerRow = bmpInfoHeader_biWidth;
-               for (int row = 0; row < bmpInfoHeader_biHeight; ++row) // read over the rows
-                  {
-                  if (topDownDIB) i = row; else i = bmpInfoHeader_biHeight - 1 - row;
-
-                  for (j = 0; j < iPelsPerRow; ++j)         // j is now just the column counter
-                     {
-                     rgbQuad_rgbBlue      = in.readUnsignedByte();
-                     rgbQuad_rgbGreen     = in.readUnsignedByte();
-                     rgbQuad_rgbRed       = in.readUnsignedByte();
-                     rgbQuad_rgbReserved  = in.readUnsignedByte();
-                     pel =  (rgbQuad_rgbReserved << 24) |(rgbQuad_rgbRed << 16) | (rgbQuad_rgbGreen << 8) | rgbQuad_rgbBlue;
-                     imageArray[i][j] = pel;
-                     }
-                  }
-               break;
-            default: // Oops
-               System.out.printf("This error should not occur - 1!\n");
+ *
+ * ---- MAIN ----
+ *
+ */
+   public static void main(String[] args)
+      {
+      String inFileName, outFileName;
+      int i, j;
+      int pel;
+      int iBytesPerRow, iDeadBytes;
+// RBGQUAD
+      int rgbQuad_rgbBlue;
+      int rgbQuad_rgbGreen;
+      int rgbQuad_rgbRed;
+      int rgbQuad_rgbReserved;           // not used in this method
 
-            } // switch (bmpInfoHeader_biBitCount)
+      DibDump dibdumper = new DibDump(); // needed to get to the byte swapping methods
 
-         in.close();
-         fstream.close();
+      if (args.length > 0)
+         inFileName = args[0];
+      else
+         inFileName = "one_diagonal.bmp";
+
+      if (args.length > 1)
+         outFileName = args[1];
+      else
+         outFileName = "test2.bmp";
+
+      try // lots of things can go wrong when doing file i/o
+         {
+         dibdumper.readBitmap(inFileName);
          } // try
       catch (Exception e)
          {
@@ -1368,14 +1565,14 @@ typedef RGBQUAD FAR* LPRGBQUAD;
  * Console dump of image bytes in HEX if the image is smaller than 33 x 33
  */
 
-      if ((bmpInfoHeader_biWidth < 33) && (bmpInfoHeader_biHeight < 33))
+      if ((dibdumper.bmpInfoHeader_biWidth < 33) && (dibdumper.bmpInfoHeader_biHeight < 33))
          {
-         iBytesPerRow = bmpInfoHeader_biWidth;
-         for (i = 0; i < bmpInfoHeader_biHeight; ++i) // read over the rows
+         iBytesPerRow = dibdumper.bmpInfoHeader_biWidth;
+         for (i = 0; i < dibdumper.bmpInfoHeader_biHeight; ++i) // read over the rows
             {
             for (j = 0; j < iBytesPerRow; ++j)         // j is now just the column counter
                {
-               System.out.printf("%08X ", imageArray[i][j]);
+               System.out.printf("%08X ", dibdumper.imageArray[i][j]);
                }
             System.out.printf("\n");
             }
@@ -1387,58 +1584,58 @@ typedef RGBQUAD FAR* LPRGBQUAD;
  */
       try
          {
-         iDeadBytes = (4 - (bmpInfoHeader_biWidth * 3) % 4) % 4;
+         iDeadBytes = (4 - (dibdumper.bmpInfoHeader_biWidth * 3) % 4) % 4;
 
-         bmpInfoHeader_biSizeImage =  (bmpInfoHeader_biWidth * 3 + iDeadBytes) * bmpInfoHeader_biHeight;
-         bmpFileHeader_bfOffBits = 54;        // 54 byte offset for 24 bit images (just open one with this app to get this value)
-         bmpFileHeader_bfSize = bmpInfoHeader_biSizeImage + bmpFileHeader_bfOffBits;
-         bmpInfoHeader_biBitCount = 24;       // 24 bit color image. Changes this number to 32 to write out 32 bit color images
-         bmpInfoHeader_biCompression = 0;     // BI_RGB (which is a value of zero)
-         bmpInfoHeader_biClrUsed = 0;         // Zero for true color
-         bmpInfoHeader_biClrImportant = 0;    // Zero for true color
+         dibdumper.bmpInfoHeader_biSizeImage =  (dibdumper.bmpInfoHeader_biWidth * 3 + iDeadBytes) * dibdumper.bmpInfoHeader_biHeight;
+         dibdumper.bmpFileHeader_bfOffBits = 54;        // 54 byte offset for 24 bit images (just open one with this app to get this value)
+         dibdumper.bmpFileHeader_bfSize = dibdumper.bmpInfoHeader_biSizeImage + dibdumper.bmpFileHeader_bfOffBits;
+         dibdumper.bmpInfoHeader_biBitCount = 24;       // 24 bit color image. Changes this number to 32 to write out 32 bit color images
+         dibdumper.bmpInfoHeader_biCompression = 0;     // BI_RGB (which is a value of zero)
+         dibdumper.bmpInfoHeader_biClrUsed = 0;         // Zero for true color
+         dibdumper.bmpInfoHeader_biClrImportant = 0;    // Zero for true color
 
          FileOutputStream fstream = new FileOutputStream(outFileName);
          DataOutputStream out = new DataOutputStream(fstream);
 
 // BITMAPFILEHEADER
-         out.writeShort(bmpFileHeader_bfType);                           // WORD - un-swapped since should be the letters BM
-         out.writeInt(dibdumper.swapInt(bmpFileHeader_bfSize));          // DWORD
-         out.writeShort(dibdumper.swapShort(bmpFileHeader_bfReserved1)); // WORD
-         out.writeShort(dibdumper.swapShort(bmpFileHeader_bfReserved2)); // WORD
-         out.writeInt(dibdumper.swapInt(bmpFileHeader_bfOffBits));       // DWORD
+         out.writeShort(dibdumper.bmpFileHeader_bfType);                           // WORD - un-swapped since should be the letters BM
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpFileHeader_bfSize));          // DWORD
+         out.writeShort(dibdumper.swapShort(dibdumper.bmpFileHeader_bfReserved1)); // WORD
+         out.writeShort(dibdumper.swapShort(dibdumper.bmpFileHeader_bfReserved2)); // WORD
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpFileHeader_bfOffBits));       // DWORD
 
 // BITMAPINFOHEADER
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biSize));          // DWORD
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biWidth));         // LONG
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biHeight));        // LONG
-         out.writeShort(dibdumper.swapShort(bmpInfoHeader_biPlanes));    // WORD
-         out.writeShort(dibdumper.swapShort(bmpInfoHeader_biBitCount));  // WORD
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biCompression));   // DWORD
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biSizeImage));     // DWORD
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biXPelsPerMeter)); // LONG
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biYPelsPerMeter)); // LONG
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biClrUsed));       // DWORD
-         out.writeInt(dibdumper.swapInt(bmpInfoHeader_biClrImportant));  // DWORD
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biSize));          // DWORD
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biWidth));         // LONG
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biHeight));        // LONG
+         out.writeShort(dibdumper.swapShort(dibdumper.bmpInfoHeader_biPlanes));    // WORD
+         out.writeShort(dibdumper.swapShort(dibdumper.bmpInfoHeader_biBitCount));  // WORD
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biCompression));   // DWORD
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biSizeImage));     // DWORD
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biXPelsPerMeter)); // LONG
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biYPelsPerMeter)); // LONG
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biClrUsed));       // DWORD
+         out.writeInt(dibdumper.swapInt(dibdumper.bmpInfoHeader_biClrImportant));  // DWORD
 
 // there is no color table for this true color image, so write out the pels
 
          rgbQuad_rgbReserved = 0;
 
-         for (i = bmpInfoHeader_biHeight - 1; i >= 0; --i)    // write over the rows (in the usual inverted format)
+         for (i = dibdumper.bmpInfoHeader_biHeight - 1; i >= 0; --i)    // write over the rows (in the usual inverted format)
           {
-             for (j = 0; j < bmpInfoHeader_biWidth; ++j) // and the columns
+             for (j = 0; j < dibdumper.bmpInfoHeader_biWidth; ++j) // and the columns
              {
-               pel = imageArray[i][j];
+               pel = dibdumper.imageArray[i][j];
                rgbQuad_rgbBlue  = pel & 0x00FF;
                rgbQuad_rgbGreen = (pel >> 8)  & 0x00FF;
                rgbQuad_rgbRed   = (pel >> 16) & 0x00FF;
                out.writeByte(rgbQuad_rgbBlue); // lowest byte in the color
                out.writeByte(rgbQuad_rgbGreen);
                out.writeByte(rgbQuad_rgbRed);  // highest byte in the color
-               if (bmpInfoHeader_biBitCount == 32) out.writeByte(rgbQuad_rgbReserved);
+               if (dibdumper.bmpInfoHeader_biBitCount == 32) out.writeByte(rgbQuad_rgbReserved);
               }
 
-               if (bmpInfoHeader_biBitCount != 32)
+               if (dibdumper.bmpInfoHeader_biBitCount != 32)
                {
                   for (j = 0; j < iDeadBytes; ++j)
                   {
@@ -0,0 +1,253 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Converts many bitmaps to pel files at once. Each image is decoded by its own DibDump object on a fixed-size pool of
+ * worker threads. The pool's queue is bounded, so submitting a large folder never queues more than a few images
+ * ahead of the workers; when it is full the submitting thread converts the image itself. After a batch, a report
+ * gives the time and pel throughput of every image and of the batch as a whole.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class DibDumpBatch
+{
+   /**
+    * How many images may wait in the queue per worker thread.
+    */
+   private static final int QUEUE_PER_THREAD = 2;
+
+   /**
+    * The outcome of converting one bitmap.
+    */
+   public static class Result
+   {
+      private String bmpFile;
+      private String pelFile;
+      private int width;
+      private int height;
+      private long nanos;
+      private boolean converted;
+
+      /**
+       * @return the bitmap that was converted.
+       */
+      public String getBmpFile()
+      {
+         return bmpFile;
+      }
+
+      /**
+       * @return the pel file that was written.
+       */
+      public String getPelFile()
+      {
+         return pelFile;
+      }
+
+      /**
+       * @return the number of pels in the image.
+       */
+      public long getPels()
+      {
+         return (long) width * height;
+      }
+
+      /**
+       * @return the time the conversion took, in nanoseconds.
+       */
+      public long getNanos()
+      {
+         return nanos;
+      }
+
+      /**
+       * @return true if the pel file was written.
+       */
+      public boolean isConverted()
+      {
+         return converted;
+      }
+   } // public static class Result
+
+   /**
+    * The number of worker threads.
+    */
+   private int threads;
+
+   /**
+    * Wall clock time of the last batch, in nanoseconds.
+    */
+   private long wallNanos;
+
+   /**
+    * Constructor for a batch converter.
+    *
+    * @param threads the number of images to convert at the same time.
+    */
+   public DibDumpBatch(int threads)
+   {
+      this.threads = Math.max(1, threads);
+   }
+
+   /**
+    * Constructor for a batch converter with one worker per available processor.
+    */
+   public DibDumpBatch()
+   {
+      this(Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * Converts every .bmp file in a directory. Each pel file is named after its bitmap with a .txt extension.
+    *
+    * @param bmpDir the directory holding the bitmaps.
+    * @param pelDir the directory to write the pel files to. Created if it does not exist.
+    * @return the result of each conversion, in file name order.
+    */
+   public List<Result> convertDirectory(String bmpDir, String pelDir)
+   {
+      File[] files = new File(bmpDir).listFiles((dir, name) -> name.toLowerCase().endsWith(".bmp"));
+      if (files == null)
+      {
+         throw new RuntimeException("Not a directory: " + bmpDir);
+      }
+      Arrays.sort(files);
+      new File(pelDir).mkdirs();
+
+      String[] bmpFiles = new String[files.length];
+      String[] pelFiles = new String[files.length];
+      for (int i = 0; i < files.length; i++)
+      {
+         String name = files[i].getName();
+         bmpFiles[i] = files[i].getPath();
+         pelFiles[i] = new File(pelDir, name.substring(0, name.length() - 4) + ".txt").getPath();
+      }
+      return convert(bmpFiles, pelFiles);
+   } // public List<Result> convertDirectory(String bmpDir, String pelDir)
+
+   /**
+    * Converts each bitmap to the pel file at the same index.
+    *
+    * @param bmpFiles the bitmaps.
+    * @param pelFiles the pel files to write.
+    * @return the result of each conversion, in the order given.
+    */
+   public List<Result> convert(String[] bmpFiles, String[] pelFiles)
+   {
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+         new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+      List<Future<Result>> futures = new ArrayList<Future<Result>>();
+      long start = System.nanoTime();
+      try
+      {
+         for (int i = 0; i < bmpFiles.length; i++)
+         {
+            final String bmpFile = bmpFiles[i];
+            final String pelFile = pelFiles[i];
+            futures.add(pool.submit(() -> convertOne(bmpFile, pelFile)));
+         }
+
+         List<Result> results = new ArrayList<Result>();
+         for (Future<Result> future : futures)
+         {
+            results.add(future.get());
+         }
+         wallNanos = System.nanoTime() - start;
+         return results;
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      }
+      catch (ExecutionException e)
+      {
+         throw new RuntimeException(e.getCause());
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+   } // public List<Result> convert(String[] bmpFiles, String[] pelFiles)
+
+   /**
+    * Converts a single bitmap with a DibDump object of its own.
+    *
+    * @param bmpFile the bitmap.
+    * @param pelFile the pel file to write.
+    * @return the result.
+    */
+   private Result convertOne(String bmpFile, String pelFile)
+   {
+      DibDump dib = new DibDump();
+      dib.verbose = false;
+
+      Result result = new Result();
+      result.bmpFile = bmpFile;
+      result.pelFile = pelFile;
+      long start = System.nanoTime();
+      result.converted = dib.bmpToPelFile(bmpFile, pelFile);
+      result.nanos = System.nanoTime() - start;
+      result.width = dib.bmpInfoHeader_biWidth;
+      result.height = dib.bmpInfoHeader_biHeight;
+      return result;
+   } // private Result convertOne(String bmpFile, String pelFile)
+
+   /**
+    * @return the wall clock time of the last batch, in nanoseconds.
+    */
+   public long getWallNanos()
+   {
+      return wallNanos;
+   }
+
+   /**
+    * Prints the time and throughput of each image followed by the totals for the batch.
+    *
+    * @param results the results of the last batch.
+    */
+   public void printReport(List<Result> results)
+   {
+      long totalPels = 0;
+      long busyNanos = 0;
+      int converted = 0;
+      for (Result result : results)
+      {
+         System.out.printf("%-40s %5dx%-5d %9.3f ms %9.2f Mpels/s%s\n", result.bmpFile, result.width, result.height,
+            result.nanos / 1e6, result.getPels() * 1e3 / Math.max(1L, result.nanos),
+            result.converted ? "" : "  FAILED");
+         totalPels += result.getPels();
+         busyNanos += result.nanos;
+         if (result.converted)
+         {
+            converted++;
+         }
+      }
+
+      double seconds = wallNanos / 1e9;
+      System.out.printf("Converted %d of %d images on %d threads in %.3f ms: %.1f images/s, %.2f Mpels/s, " +
+         "%.2fx parallel speedup\n", converted, results.size(), threads, wallNanos / 1e6,
+         results.size() / Math.max(seconds, 1e-9), totalPels / 1e6 / Math.max(seconds, 1e-9),
+         busyNanos / (double) Math.max(1L, wallNanos));
+   } // public void printReport(List<Result> results)
+
+   /**
+    * Converts a directory of bitmaps from the command line.
+    *
+    * @param args the bitmap directory, the pel file directory, and optionally the number of threads.
+    */
+   public static void main(String[] args)
+   {
+      if (args.length < 2)
+      {
+         System.out.println("Usage: DibDumpBatch bmpDirectory pelDirectory [threads]");
+         return;
+      }
+
+      DibDumpBatch batch = args.length > 2 ? new DibDumpBatch(Integer.parseInt(args[2])) : new DibDumpBatch();
+      batch.printReport(batch.convertDirectory(args[0], args[1]));
+   }
+} // public class DibDumpBatch
@@ -0,0 +1,509 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trains every network implementation (NeuralNet, NeuralNet3PlusBackProp, BackPropABC, NeuralNetABC,
+ * NeuralNetGradient and Perceptron) on the same problems from the same seed, without prompts, and prints a table of
+ * the epochs each took to reach the error threshold, the training wall time, training sets per second, the peak heap
+ * and the final error.
+ *
+ * The implementations compute their own training error differently (a running average, a sum, or a per-set error),
+ * so the harness measures every network the same way instead: after each epoch it evaluates every training set with
+ * testSet and averages 1/2 * (T-F)^2 summed over the outputs. Training stops once that error is under the threshold
+ * or after the maximum number of epochs. Only the epochs themselves are timed, not the evaluation. Before the timed
+ * run each implementation trains a throwaway network for a second so the JIT has compiled it.
+ *
+ * NeuralNet and NeuralNet3PlusBackProp only run two hidden layers, BackPropABC, NeuralNetABC and NeuralNetGradient
+ * only one, and NeuralNetGradient only one output, so each problem has a one and a two hidden layer topology and an
+ * implementation that cannot run a problem is listed as skipped. Perceptron runs the two hidden layer topology. All
+ * use lambda 5 and weights in -2 - 2, the gradient defaults they share; Perceptron's randomizer adds 1 to the range.
+ *
+ *    java EngineComparison [problems [seed [threshold [maxEpochs]]]]
+ *    java EngineComparison xor,all,finger 42 0.01
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class EngineComparison
+{
+   /**
+    * The implementations, in the order of the table.
+    */
+   public static final String[] ENGINES = {"NeuralNet", "NeuralNet3PlusBackProp", "BackPropABC", "NeuralNetABC",
+      "NeuralNetGradient", "Perceptron"};
+
+   /**
+    * The finger images and the number of fingers on each, the same as Perceptron.main trains on.
+    */
+   private static final String[] FINGERS = {"one", "one_diagonal", "two", "two_diagonal", "three", "four", "five",
+      "three_diagonal", "four_diagonal", "five_diagonal"};
+   private static final int[] FINGER_COUNTS = {1, 1, 2, 2, 3, 4, 5, 3, 4, 5};
+
+   private static final double LAMBDA = 5.0;
+   private static final double MIN_WEIGHT = -2.0;
+   private static final double MAX_WEIGHT = 2.0;
+   private static final long WARMUP_NANOS = 1000000000L;
+
+   /**
+    * One network being trained, whatever its class.
+    */
+   private interface Engine
+   {
+      /**
+       * Sets the weights to random values from the seed.
+       */
+      void randomize(long seed);
+
+      /**
+       * Trains on every training set once.
+       */
+      void trainEpoch();
+
+      /**
+       * @return the error of one training set, 1/2 * (T-F)^2 summed over the outputs.
+       */
+      double testSet(int test);
+   } // private interface Engine
+
+   /**
+    * A training problem: the training sets and a topology of each depth for them.
+    */
+   public static class Problem
+   {
+      private String name;
+      private int[] oneHidden;
+      private int[] twoHidden;
+      private double[][] inputSets;
+      private double[][] expected;
+      private int maxEpochs;
+
+      public Problem(String name, int[] oneHidden, int[] twoHidden, double[][] inputSets, double[][] expected,
+                     int maxEpochs)
+      {
+         this.name = name;
+         this.oneHidden = oneHidden;
+         this.twoHidden = twoHidden;
+         this.inputSets = inputSets;
+         this.expected = expected;
+         this.maxEpochs = maxEpochs;
+      }
+
+      /**
+       * @return the training sets with the given hidden layers. The arrays are shared.
+       */
+      public Dataset toDataset(int[] hiddenLayer)
+      {
+         return new Dataset(inputSets[0].length, hiddenLayer, expected[0].length, inputSets, expected);
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+
+      /**
+       * @return the two hidden layer topology, the one NeuralNet runs.
+       */
+      public int[] getTwoHidden()
+      {
+         return twoHidden.clone();
+      }
+
+      /**
+       * @return the most epochs the problem is trained for by default.
+       */
+      public int getMaxEpochs()
+      {
+         return maxEpochs;
+      }
+   } // public static class Problem
+
+   /**
+    * The outcome of training one implementation on one problem.
+    */
+   public static class Result
+   {
+      private String engine;
+      private String problem;
+      private String topology;
+      private String skipped;
+      private int epochs;
+      private boolean reached;
+      private long trainNanos;
+      private long samples;
+      private long peakHeap;
+      private double finalError;
+
+      /**
+       * @return the number of epochs trained, which is the number to reach the threshold if it was reached.
+       */
+      public int getEpochs()
+      {
+         return epochs;
+      }
+
+      public boolean isReached()
+      {
+         return reached;
+      }
+
+      public double getFinalError()
+      {
+         return finalError;
+      }
+
+      /**
+       * @return the training sets trained per second of epoch time.
+       */
+      public double getSamplesPerSecond()
+      {
+         return trainNanos == 0L ? 0.0 : samples * 1e9 / trainNanos;
+      }
+   } // public static class Result
+
+   private double threshold;
+   private long seed;
+   private int maxEpochs;
+
+   /**
+    * Constructor for a harness.
+    *
+    * @param seed      the seed of every network's random weights.
+    * @param threshold the error to train to.
+    * @param maxEpochs the most epochs to train, or 0 for each problem's own limit.
+    */
+   public EngineComparison(long seed, double threshold, int maxEpochs)
+   {
+      this.seed = seed;
+      this.threshold = threshold;
+      this.maxEpochs = maxEpochs;
+   }
+
+   /**
+    * Makes one of the named problems.
+    *
+    * @param name xor (2-2-1), all (AND, OR and XOR at once, 2-6-3 / 2-4-6-3) or finger (the ten finger images,
+    *             2500-50-5 / 2500-10-50-5; run from the directory holding FingerFiles).
+    * @return the problem.
+    */
+   public static Problem problem(String name) throws IOException
+   {
+      double[][] logic = {{0.0, 0.0}, {0.0, 1.0}, {1.0, 0.0}, {1.0, 1.0}};
+      if (name.equalsIgnoreCase("xor"))
+      {
+         return new Problem("XOR", new int[] {2}, new int[] {2, 2}, logic,
+            new double[][] {{0.0}, {1.0}, {1.0}, {0.0}}, 10000);
+      }
+      if (name.equalsIgnoreCase("all"))
+      {
+         return new Problem("AND/OR/XOR", new int[] {6}, new int[] {4, 6}, logic,
+            new double[][] {{0.0, 0.0, 0.0}, {0.0, 1.0, 1.0}, {0.0, 1.0, 1.0}, {1.0, 1.0, 0.0}}, 10000);
+      }
+      if (name.equalsIgnoreCase("finger"))
+      {
+         DibDump dib = new DibDump();
+         dib.verbose = false;
+         double[][] inputSets = new double[FINGERS.length][2500];
+         double[][] expected = new double[FINGERS.length][5];
+         for (int t = 0; t < FINGERS.length; t++)
+         {
+            dib.decodeToInputs("FingerFiles/" + FINGERS[t] + ".bmp", inputSets[t]);
+            expected[t][FINGER_COUNTS[t] - 1] = 1.0;
+         }
+         return new Problem("Finger", new int[] {50}, new int[] {10, 50}, inputSets, expected, 200);
+      }
+      throw new IllegalArgumentException("Unknown problem " + name + "; use xor, all or finger");
+   } // public static Problem problem(String name)
+
+   /**
+    * Makes a network of one implementation for a problem.
+    *
+    * @return the network, or null if the implementation cannot run the problem; the reason is put in result.
+    */
+   private static Engine create(String engine, Problem problem, Result result)
+   {
+      int outputs = problem.expected[0].length;
+      boolean twoHidden = engine.equals("NeuralNet") || engine.equals("NeuralNet3PlusBackProp") ||
+         engine.equals("Perceptron");
+      Dataset data = problem.toDataset(twoHidden ? problem.twoHidden : problem.oneHidden);
+
+      StringBuilder topology = new StringBuilder().append(data.getNumInputNodes());
+      for (int nodes : data.getHiddenLayer())
+      {
+         topology.append('-').append(nodes);
+      }
+      result.topology = topology.append('-').append(outputs).toString();
+
+      if (engine.equals("NeuralNet"))
+      {
+         NeuralNet net = new NeuralNet(data);
+         net.setGradientDefault();
+         return new Engine()
+         {
+            public void randomize(long seed)
+            {
+               net.setSeed(seed);
+               net.setWeightsRandom();
+            }
+
+            public void trainEpoch()
+            {
+               net.trainEpoch();
+            }
+
+            public double testSet(int test)
+            {
+               return net.testSet(test);
+            }
+         };
+      } // if (engine.equals("NeuralNet"))
+      if (engine.equals("NeuralNet3PlusBackProp"))
+      {
+         NeuralNet3PlusBackProp net = new NeuralNet3PlusBackProp(data);
+         net.setGradientDefault();
+         return new Engine()
+         {
+            public void randomize(long seed)
+            {
+               net.setSeed(seed);
+               net.setWeightsRandom();
+            }
+
+            public void trainEpoch()
+            {
+               net.trainEpoch();
+            }
+
+            public double testSet(int test)
+            {
+               return net.testSet(test);
+            }
+         };
+      } // if (engine.equals("NeuralNet3PlusBackProp"))
+      if (engine.equals("BackPropABC"))
+      {
+         BackPropABC net = new BackPropABC(data);
+         net.setGradientDefault();
+         return new Engine()
+         {
+            public void randomize(long seed)
+            {
+               net.setSeed(seed);
+               net.setWeightsRandom();
+            }
+
+            public void trainEpoch()
+            {
+               net.trainEpoch();
+            }
+
+            public double testSet(int test)
+            {
+               return net.testSet(test);
+            }
+         };
+      } // if (engine.equals("BackPropABC"))
+      if (engine.equals("NeuralNetABC"))
+      {
+         NeuralNetABC net = new NeuralNetABC(data);
+         net.setGradientDefault();
+         return new Engine()
+         {
+            public void randomize(long seed)
+            {
+               net.setSeed(seed);
+               net.setWeightsRandom();
+            }
+
+            public void trainEpoch()
+            {
+               net.trainEpoch();
+            }
+
+            public double testSet(int test)
+            {
+               return net.testSet(test);
+            }
+         };
+      } // if (engine.equals("NeuralNetABC"))
+      if (engine.equals("NeuralNetGradient"))
+      {
+         if (outputs != 1)
+         {
+            result.skipped = "A-B-1 only";
+            return null;
+         }
+         NeuralNetGradient net = new NeuralNetGradient(data);
+         net.setGradientDefault();
+         return new Engine()
+         {
+            public void randomize(long seed)
+            {
+               net.setSeed(seed);
+               net.setWeightsRandom();
+            }
+
+            public void trainEpoch()
+            {
+               net.trainEpoch();
+            }
+
+            public double testSet(int test)
+            {
+               return net.testSet(test);
+            }
+         };
+      } // if (engine.equals("NeuralNetGradient"))
+      if (engine.equals("Perceptron"))
+      {
+         int[] structure = new int[data.getHiddenLayer().length + 2];
+         structure[0] = data.getNumInputNodes();
+         System.arraycopy(data.getHiddenLayer(), 0, structure, 1, data.getHiddenLayer().length);
+         structure[structure.length - 1] = outputs;
+
+         Perceptron.setTrainingData(problem.inputSets, problem.expected, Integer.MAX_VALUE, LAMBDA, 0.0, MIN_WEIGHT,
+            MAX_WEIGHT);                                   // Perceptron keeps its training data in static fields.
+         Perceptron net = new Perceptron(structure, false);
+         return new Engine()
+         {
+            public void randomize(long seed)
+            {
+               net.setSeed(seed);
+               net.randomizeWeights();
+            }
+
+            public void trainEpoch()
+            {
+               net.trainEpoch();
+            }
+
+            public double testSet(int test)
+            {
+               return net.testSet(test);
+            }
+         };
+      } // if (engine.equals("Perceptron"))
+      throw new IllegalArgumentException("Unknown implementation " + engine);
+   } // private static Engine create(String engine, Problem problem, Result result)
+
+   /**
+    * Trains one implementation on one problem.
+    *
+    * @param engine the implementation's class name, one of ENGINES.
+    * @param problem the problem.
+    * @return the outcome.
+    */
+   public Result run(String engine, Problem problem)
+   {
+      Result result = new Result();
+      result.engine = engine;
+      result.problem = problem.name;
+      int numSets = problem.inputSets.length;
+      int epochLimit = maxEpochs > 0 ? maxEpochs : problem.maxEpochs;
+
+      Engine warmup = create(engine, problem, result);
+      if (warmup == null)
+      {
+         return result;
+      }
+      warmup.randomize(seed);
+      long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+      for (int epoch = 0; epoch < epochLimit && System.nanoTime() < warmupEnd; epoch++)
+      {
+         warmup.trainEpoch();
+      }
+      warmup = null;
+
+      Engine net = create(engine, problem, result);
+      net.randomize(seed);
+      System.gc();
+      List<MemoryPoolMXBean> heap = new ArrayList<>();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      {
+         if (pool.getType() == MemoryType.HEAP)
+         {
+            pool.resetPeakUsage();
+            heap.add(pool);
+         }
+      }
+
+      double error = Double.MAX_VALUE;
+      while (result.epochs < epochLimit && !result.reached)
+      {
+         long start = System.nanoTime();
+         net.trainEpoch();
+         result.trainNanos += System.nanoTime() - start;
+         result.epochs++;
+
+         error = 0.0;
+         for (int test = 0; test < numSets; test++)
+         {
+            error += net.testSet(test);
+         }
+         error /= numSets;
+         result.reached = error < threshold;
+      } // while (result.epochs < epochLimit && !result.reached)
+
+      result.samples = (long) result.epochs * numSets;
+      result.finalError = error;
+      for (MemoryPoolMXBean pool : heap)
+      {
+         result.peakHeap += pool.getPeakUsage().getUsed();
+      }
+      return result;
+   } // public Result run(String engine, Problem problem)
+
+   /**
+    * Prints the results as a table.
+    */
+   public void printTable(List<Result> results)
+   {
+      System.out.printf("%-11s %-23s %-14s %10s %10s %14s %9s %12s%n", "Problem", "Implementation", "Topology",
+         "Epochs", "Time (ms)", "Samples/s", "Heap (MB)", "Final error");
+      for (Result result : results)
+      {
+         if (result.skipped != null)
+         {
+            System.out.printf("%-11s %-23s %-14s %s%n", result.problem, result.engine, result.topology,
+               "skipped: " + result.skipped);
+            continue;
+         }
+         System.out.printf("%-11s %-23s %-14s %10s %10.1f %14.0f %9.1f %12.6f%n", result.problem, result.engine,
+            result.topology, result.reached ? String.valueOf(result.epochs) : ">" + result.epochs,
+            result.trainNanos / 1e6, result.getSamplesPerSecond(), result.peakHeap / (1024.0 * 1024.0),
+            result.finalError);
+      }
+      System.out.println("Threshold " + threshold + ", seed " + seed + "; \">\" means the threshold was not reached.");
+   } // public void printTable(List<Result> results)
+
+   /**
+    * Trains every implementation on the given problems and prints the table.
+    *
+    * @param args [problems [seed [threshold [maxEpochs]]]]: a comma separated list of xor, all and finger (default
+    *             xor,all), the seed (default 42), the error threshold (default 0.01) and the most epochs (default
+    *             10000, or 200 for finger).
+    */
+   public static void main(String[] args) throws IOException
+   {
+      String[] names = (args.length > 0 ? args[0] : "xor,all").split(",");
+      long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+      double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+      int maxEpochs = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+
+      EngineComparison harness = new EngineComparison(seed, threshold, maxEpochs);
+      List<Result> results = new ArrayList<>();
+      for (String name : names)
+      {
+         Problem problem = problem(name.trim());
+         for (String engine : ENGINES)
+         {
+            System.out.println("Training " + engine + " on " + problem.getName() + ".");
+            results.add(harness.run(engine, problem));
+         }
+      }
+      harness.printTable(results);
+   } // public static void main(String[] args)
+} // public class EngineComparison
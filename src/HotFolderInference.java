@@ -0,0 +1,535 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies bitmaps as they are dropped into a folder. A WatchService reports each new .bmp file; it is decoded with
+ * DibDump on a pool of worker threads (each with its own DibDump), resampled if the model was trained on resampled
+ * images, and queued for the network current when it arrived. A single batcher thread runs the networks: it takes the
+ * first waiting image, gathers more for up to the batch wait or until the batch is full, classifies the batch with one
+ * predict() call and appends a line per image to the results file. The network comes from a ModelHolder, so it can be
+ * replaced while the folder is watched; an image always finishes on the network it was decoded for, and main()
+ * reloads the weights file whenever it changes. The latency of every image, from the moment the folder reported it
+ * until it was classified, goes into a LatencyRecorder whose percentiles are printed after every batch, and into the
+ * JVM's NeuralNetMetrics (JMX).
+ *
+ * A results line is "bmpFile class output0 output1 ... latencyMs", where class is the index of the largest output, or
+ * "bmpFile error exception" for every image of a batch the network failed on; the batcher then goes on with the next
+ * batch. A file that cannot be decoded yet, e.g. because it is still being copied in, is retried a few times. A file
+ * written again under the same name after its line was written is classified again. With a PredictionCache, a bitmap
+ * whose bytes were seen before is answered from the cache without being decoded.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class HotFolderInference
+{
+   /**
+    * How often, and how long apart, a bitmap that fails to decode is tried again.
+    */
+   private static final int DECODE_RETRIES = 5;
+   private static final long RETRY_MILLIS = 100L;
+
+   /**
+    * The number of outputs main() caches.
+    */
+   private static final int CACHE_ENTRIES = 4096;
+
+   /**
+    * How often main() checks the weights file for a retrained network, in milliseconds.
+    */
+   private static final long WEIGHTS_CHECK_MILLIS = 2000L;
+
+   /**
+    * One decoded image waiting for the model.
+    */
+   private static class Job
+   {
+      private Path path;
+      private String file;
+      private long arrivedNanos;
+      private ModelHolder.Lease lease;
+      private long key;
+      private double[] inputs;
+      private double[] output;
+   }
+
+   private ModelHolder models;
+   private Path folder;
+   private String resultsFile;
+   private int maxBatch;
+   private long batchWaitNanos;
+
+   private ExecutorService decoders;
+   private ThreadLocal<DibDump> dibs = ThreadLocal.withInitial(() -> {
+      DibDump dib = new DibDump();
+      dib.verbose = false;
+      return dib;
+   });
+   private BlockingQueue<Job> decoded;
+
+   /**
+    * The files being decoded or classified. A file leaves once its line is written, so the set only holds the images
+    * in flight.
+    */
+   private Set<Path> pending = ConcurrentHashMap.newKeySet();
+   private LatencyRecorder latency = new LatencyRecorder();
+   private NeuralNetMetrics metrics = NeuralNetMetrics.getInstance();
+   private PredictionCache cache;
+   private volatile boolean running;
+   private WatchService watcher;
+   private Thread batcher;
+
+   /**
+    * Constructor for the service with one network that is never replaced. Nothing runs until run() is called.
+    *
+    * @param model           the trained network.
+    * @param folder          the folder to watch.
+    * @param resultsFile     the file the predictions are appended to.
+    * @param decodeThreads   the number of threads decoding at the same time.
+    * @param maxBatch        the largest number of images classified in one batch.
+    * @param batchWaitMillis how long the batcher waits for a batch to fill once it has its first image.
+    */
+   public HotFolderInference(NeuralNet model, String folder, String resultsFile, int decodeThreads, int maxBatch,
+                             long batchWaitMillis)
+   {
+      this(new ModelHolder(model), folder, resultsFile, decodeThreads, maxBatch, batchWaitMillis);
+   }
+
+   /**
+    * Constructor for the service. Nothing runs until run() is called.
+    *
+    * @param models          holds the trained network, which may be replaced while the service runs.
+    * @param folder          the folder to watch.
+    * @param resultsFile     the file the predictions are appended to.
+    * @param decodeThreads   the number of threads decoding at the same time.
+    * @param maxBatch        the largest number of images classified in one batch.
+    * @param batchWaitMillis how long the batcher waits for a batch to fill once it has its first image.
+    */
+   public HotFolderInference(ModelHolder models, String folder, String resultsFile, int decodeThreads, int maxBatch,
+                             long batchWaitMillis)
+   {
+      this.models = models;
+      this.folder = Paths.get(folder);
+      this.resultsFile = resultsFile;
+      this.maxBatch = Math.max(1, maxBatch);
+      batchWaitNanos = TimeUnit.MILLISECONDS.toNanos(batchWaitMillis);
+
+      decoded = new ArrayBlockingQueue<Job>(4 * this.maxBatch);
+      decoders = Executors.newFixedThreadPool(Math.max(1, decodeThreads), runnable -> {
+         Thread thread = new Thread(runnable, "Hot folder decoder");
+         thread.setDaemon(true);
+         return thread;
+      });
+   } // public HotFolderInference(ModelHolder models, String folder, ...)
+
+   /**
+    * Watches the folder until stop() is called. Bitmaps already in the folder are classified first.
+    */
+   public void run() throws IOException
+   {
+      running = true;
+      watcher = FileSystems.getDefault().newWatchService();
+      folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+      batcher = new Thread(this::batchLoop, "Hot folder batcher");
+      batcher.setDaemon(true);
+      batcher.start();
+
+      DirectoryStream<Path> existing = Files.newDirectoryStream(folder, "*.{bmp,BMP}");
+      for (Path file : existing)
+      {
+         submit(file);
+      }
+      existing.close();
+      System.out.println("Watching " + folder.toAbsolutePath() + " for bitmaps.");
+
+      try
+      {
+         while (running)
+         {
+            WatchKey key = watcher.take();
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+               if (event.kind() != StandardWatchEventKinds.OVERFLOW)
+               {
+                  submit(folder.resolve((Path) event.context()));
+               }
+            }
+            if (!key.reset())
+            {
+               System.err.println("Hot folder " + folder + " is no longer accessible.");
+               running = false;
+            }
+         } // while (running)
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      catch (ClosedWatchServiceException e)
+      {
+         // stop() was called.
+      }
+      finally
+      {
+         stop();
+      }
+   } // public void run()
+
+   /**
+    * Hands a new bitmap to the decoders. A file reported again while it is still being decoded or classified (created,
+    * then modified while copied in) is only classified once.
+    */
+   private void submit(Path file)
+   {
+      String name = file.getFileName().toString().toLowerCase();
+      if (!name.endsWith(".bmp") || !pending.add(file))
+      {
+         return;
+      }
+
+      long arrived = System.nanoTime();
+      decoders.execute(() -> {
+         Job job = new Job();
+         job.path = file;
+         job.file = file.toString();
+         job.arrivedNanos = arrived;
+         job.lease = models.acquire();                          // The image finishes on this network.
+         boolean queued = false;
+         try
+         {
+            if (decode(file, job))
+            {
+               decoded.put(job);                                // Blocks while the model is behind.
+               queued = true;
+            }
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+         finally
+         {
+            if (!queued)
+            {
+               job.lease.close();
+               pending.remove(file);
+            }
+         }
+      });
+   } // private void submit(Path file)
+
+   /**
+    * Decodes a bitmap to the model's inputs, retrying while the file is incomplete. A bitmap found in the cache is
+    * not decoded; its outputs are taken from the cache instead.
+    *
+    * @return false if the file could not be decoded.
+    */
+   private boolean decode(Path file, Job job)
+   {
+      for (int attempt = 1; ; attempt++)
+      {
+         try
+         {
+            ByteBuffer bmp = DibDump.readFile(file.toString());
+            if (cache != null)
+            {
+               job.key = PredictionCache.hash(bmp);
+               job.output = cache.get(job.lease.getVersion(), job.key);
+            }
+            if (job.output == null)
+            {
+               job.inputs = toInputs(dibs.get(), job.lease.getModel(), bmp);
+            }
+            return true;
+         }
+         catch (IOException | RuntimeException e)
+         {
+            if (attempt >= DECODE_RETRIES)
+            {
+               System.err.println("Could not decode " + file + ": " + e);
+               return false;
+            }
+         }
+
+         try
+         {
+            Thread.sleep(RETRY_MILLIS);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            return false;
+         }
+      } // for (int attempt = 1; ; attempt++)
+   } // private boolean decode(Path file, Job job)
+
+   /**
+    * Decodes a bitmap to a model's input activations, resampling it first if the model was trained on resampled
+    * images.
+    *
+    * @param dib   the decoder.
+    * @param model the network.
+    * @param bmp   the bitmap file's bytes.
+    * @return the input activations.
+    */
+   static double[] toInputs(DibDump dib, NeuralNet model, ByteBuffer bmp)
+   {
+      Resampler resampler = model.getResampler();
+      if (resampler == null)
+      {
+         double[] inputs = new double[model.getNumInputNodes()];
+         dib.decodeToInputs(bmp, inputs);
+         return inputs;
+      }
+
+      double[] pels = new double[resampler.getSourceSize()];
+      dib.decodeToInputs(bmp, pels);
+      return resampler.resample(pels);
+   } // static double[] toInputs(DibDump dib, NeuralNet model, ByteBuffer bmp)
+
+   /**
+    * @return the index of the largest output.
+    */
+   static int argMax(double[] output)
+   {
+      int best = 0;
+      for (int i = 1; i < output.length; i++)
+      {
+         if (output[i] > output[best])
+         {
+            best = i;
+         }
+      }
+      return best;
+   }
+
+   /**
+    * The batcher thread: gathers decoded images into batches, classifies them and appends the results. A batch the
+    * network throws on gets an error line per image and is dropped, and the loop goes on.
+    */
+   private void batchLoop()
+   {
+      Job[] batch = new Job[maxBatch];
+      double[][] inputs = new double[maxBatch][];
+      double[][] outputs;
+      try (ModelHolder.Lease lease = models.acquire())
+      {
+         outputs = new double[maxBatch][lease.getModel().getNumOutputNodes()];  // Swaps keep the output count.
+      }
+      Job next = null;
+
+      try (BufferedWriter results = new BufferedWriter(new FileWriter(resultsFile, true)))
+      {
+         while (running)
+         {
+            Job first = next != null ? next : decoded.poll(100, TimeUnit.MILLISECONDS);
+            next = null;
+            if (first == null)
+            {
+               continue;
+            }
+
+            int count = 0;
+            batch[count++] = first;
+            NeuralNet model = first.lease.getModel();
+            long deadline = System.nanoTime() + batchWaitNanos;
+            while (count < maxBatch)
+            {
+               Job job = decoded.poll(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+               if (job == null)
+               {
+                  break;
+               }
+               if (job.lease.getModel() != model)              // Decoded for another network: next batch.
+               {
+                  next = job;
+                  break;
+               }
+               batch[count++] = job;
+            }
+
+            try
+            {
+               classify(batch, count, model, inputs, outputs, results);
+               System.out.println("Classified " + count + " bitmap(s). " + latency.summary() +
+                  (cache == null ? "" : ", " + cache.summary()));
+            }
+            catch (RuntimeException e)
+            {
+               System.err.println("Could not classify a batch of " + count + " bitmap(s): " + e);
+               for (int b = 0; b < count; b++)
+               {
+                  results.write(batch[b].file + " error " + e.toString().replace('\n', ' '));
+                  results.newLine();
+               }
+            }
+            finally
+            {
+               for (int b = 0; b < count; b++)
+               {
+                  batch[b].lease.close();
+                  pending.remove(batch[b].path);
+                  batch[b] = null;
+                  inputs[b] = null;
+               }
+               results.flush();
+            }
+         } // while (running)
+      } // try (BufferedWriter results ...)
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      catch (IOException e)
+      {
+         System.err.println("File output error " + e);
+         running = false;
+      }
+   } // private void batchLoop()
+
+   /**
+    * Classifies one batch and writes a results line per image.
+    *
+    * @param batch   the images, all decoded for model.
+    * @param count   the number of images in the batch.
+    * @param model   the network.
+    * @param inputs  room for the inputs of the images not found in the cache.
+    * @param outputs room for their outputs.
+    * @param results the results file.
+    * @throws IOException if the results cannot be written.
+    */
+   private void classify(Job[] batch, int count, NeuralNet model, double[][] inputs, double[][] outputs,
+                         BufferedWriter results) throws IOException
+   {
+      int misses = 0;
+      for (int b = 0; b < count; b++)
+      {
+         if (batch[b].output == null)
+         {
+            inputs[misses++] = batch[b].inputs;
+         }
+      }
+      model.predict(inputs, outputs, misses);
+
+      long now = System.nanoTime();
+      for (int b = 0, m = 0; b < count; b++)
+      {
+         double[] output = batch[b].output;
+         if (output == null)
+         {
+            output = outputs[m++];
+            if (cache != null)
+            {
+               cache.put(batch[b].lease.getVersion(), batch[b].key, output);
+            }
+         }
+
+         long nanos = now - batch[b].arrivedNanos;
+         StringBuilder line = new StringBuilder(batch[b].file).append(' ').append(argMax(output));
+         for (double value : output)
+         {
+            line.append(' ').append(value);
+         }
+         line.append(' ').append(String.format("%.3f", nanos / 1e6));
+         results.write(line.toString());
+         results.newLine();
+
+         latency.record(nanos);
+         metrics.predicted(nanos);
+      }
+   } // private void classify(Job[] batch, int count, NeuralNet model, double[][] inputs, ...)
+
+   /**
+    * Stops watching, decoding and classifying.
+    */
+   public void stop()
+   {
+      running = false;
+      decoders.shutdownNow();
+      try
+      {
+         if (watcher != null)
+         {
+            watcher.close();
+         }
+         if (batcher != null && batcher != Thread.currentThread())
+         {
+            batcher.join(1000L);
+         }
+      }
+      catch (IOException e)
+      {
+         System.err.println("File IO error " + e);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+   } // public void stop()
+
+   /**
+    * Answers bitmaps seen before from a cache, keyed by the hash of the bitmap file's bytes.
+    *
+    * @param cache the cache, or null for none.
+    */
+   public void setCache(PredictionCache cache)
+   {
+      this.cache = cache;
+   }
+
+   /**
+    * @return the end-to-end latencies of the images classified so far.
+    */
+   public LatencyRecorder getLatency()
+   {
+      return latency;
+   }
+
+   /**
+    * Runs the service until the JVM is stopped.
+    *
+    * @param args the config file, the trained weights file, the folder to watch, the results file and optionally
+    *             the number of decode threads, the largest batch and the batch wait in milliseconds.
+    */
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 4)
+      {
+         System.out.println("Usage: java HotFolderInference config weights folder results [threads [batch [waitMs]]]");
+         return;
+      }
+
+      int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+      int batch = args.length > 5 ? Integer.parseInt(args[5]) : 16;
+      long wait = args.length > 6 ? Long.parseLong(args[6]) : 20L;
+
+      ModelHolder models = new ModelHolder(args[0], args[1]);
+      models.watchWeights(WEIGHTS_CHECK_MILLIS);
+      HotFolderInference service = new HotFolderInference(models, args[2], args[3], threads, batch, wait);
+      service.setCache(new PredictionCache(CACHE_ENTRIES));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         service.stop();
+         System.out.println("Hot folder: " + service.getLatency().summary() + ", " + service.cache.summary());
+      }));
+      service.run();
+   } // public static void main(String[] args)
+} // public class HotFolderInference
@@ -0,0 +1,369 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains many NeuralNets at once, one per combination of hyperparameters (a trial), instead of answering the
+ * testGradientDescent prompts one run at a time. The trials come from a grid (every combination of the given values)
+ * or a random search (lambda drawn log-uniformly, the weight range uniformly, the hidden layers from a list), and run
+ * on a pool with a thread per processor. Every trial's network is made from the same Dataset, whose training sets are
+ * shared rather than copied (see Dataset.withHiddenLayer), and each trains with trainNeural until its error is under
+ * the threshold or it runs out of iterations.
+ *
+ * The results are ranked: trials that reached the threshold first, fastest first, then the rest by final error. The
+ * time to the threshold is the wall time of trainNeural, so it depends on how many trials share the processors; the
+ * iterations do not. Every network holds its weights and deltas in maxActivations^2 arrays per layer, about 300 MB
+ * for the finger topology, so sweep that one with few threads. Trials running in parallel do not report to
+ * NeuralNetMetrics, whose training attributes describe a single run; with one thread, each trial does in turn.
+ *
+ *    java HyperparameterSweep [data [grid|random [maxIterations [threshold [seed [threads]]]]]]
+ *    java HyperparameterSweep xor random 10000 0.01 42
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class HyperparameterSweep
+{
+   /**
+    * One combination of hyperparameters.
+    */
+   public static class Trial
+   {
+      private int[] hiddenLayer;
+      private double lambda;
+      private double minWeight;
+      private double maxWeight;
+      private int maxIterations;
+      private long seed;
+
+      /**
+       * Constructor for a trial.
+       *
+       * @param hiddenLayer   the number of nodes in each of the two hidden layers.
+       * @param lambda        the learning factor.
+       * @param minWeight     the least random weight.
+       * @param maxWeight     the greatest random weight.
+       * @param maxIterations the most iterations to train.
+       * @param seed          the seed of the random weights.
+       */
+      public Trial(int[] hiddenLayer, double lambda, double minWeight, double maxWeight, int maxIterations, long seed)
+      {
+         if (hiddenLayer.length != 2)
+         {
+            throw new IllegalArgumentException("NeuralNet trains two hidden layers, not " + hiddenLayer.length);
+         }
+         this.hiddenLayer = hiddenLayer.clone();
+         this.lambda = lambda;
+         this.minWeight = minWeight;
+         this.maxWeight = maxWeight;
+         this.maxIterations = maxIterations;
+         this.seed = seed;
+      }
+
+      public int[] getHiddenLayer()
+      {
+         return hiddenLayer.clone();
+      }
+
+      public double getLambda()
+      {
+         return lambda;
+      }
+
+      public double getMinWeight()
+      {
+         return minWeight;
+      }
+
+      public double getMaxWeight()
+      {
+         return maxWeight;
+      }
+
+      public int getMaxIterations()
+      {
+         return maxIterations;
+      }
+
+      public long getSeed()
+      {
+         return seed;
+      }
+
+      public String toString()
+      {
+         return String.format("hidden %d-%d, lambda %.4g, weights %.3g - %.3g, max %d, seed %d", hiddenLayer[0],
+            hiddenLayer[1], lambda, minWeight, maxWeight, maxIterations, seed);
+      }
+   } // public static class Trial
+
+   /**
+    * The outcome of training one trial.
+    */
+   public static class Result
+   {
+      private Trial trial;
+      private boolean reached;
+      private int iterations;
+      private double finalError;
+      private long trainNanos;
+
+      public Trial getTrial()
+      {
+         return trial;
+      }
+
+      public boolean isReached()
+      {
+         return reached;
+      }
+
+      public int getIterations()
+      {
+         return iterations;
+      }
+
+      public double getFinalError()
+      {
+         return finalError;
+      }
+
+      /**
+       * @return the wall time of training, which is the time to the threshold if it was reached.
+       */
+      public double getSeconds()
+      {
+         return trainNanos / 1e9;
+      }
+   } // public static class Result
+
+   /**
+    * Reached before not reached, then faster, then lower final error.
+    */
+   private static final Comparator<Result> RANKING = (a, b) -> {
+      if (a.reached != b.reached)
+      {
+         return a.reached ? -1 : 1;
+      }
+      return a.reached ? Long.compare(a.trainNanos, b.trainNanos) : Double.compare(a.finalError, b.finalError);
+   };
+
+   private Dataset data;
+   private double errorThreshold;
+   private int threads;
+
+   /**
+    * Constructor for a sweep.
+    *
+    * @param data           the training sets every trial trains on. Its hidden layers are replaced by each trial's.
+    * @param errorThreshold the error below which a trial stops.
+    * @param threads        the trials trained at once.
+    */
+   public HyperparameterSweep(Dataset data, double errorThreshold, int threads)
+   {
+      this.data = data;
+      this.errorThreshold = errorThreshold;
+      this.threads = Math.max(1, threads);
+   }
+
+   /**
+    * Makes every combination of the given values. Each trial has a seed of its own, drawn from a SplittableRandom
+    * seeded with seed, so the same arguments always make the same trials.
+    *
+    * @param hiddenLayers  the two hidden layer sizes to try.
+    * @param lambdas       the learning factors to try.
+    * @param weightRanges  the {minWeight, maxWeight} pairs to try.
+    * @param maxIterations the iteration limits to try.
+    * @param seed          the seed of the trials' seeds.
+    * @return the trials.
+    */
+   public static List<Trial> grid(int[][] hiddenLayers, double[] lambdas, double[][] weightRanges,
+                                  int[] maxIterations, long seed)
+   {
+      SplittableRandom seeds = new SplittableRandom(seed);
+      List<Trial> trials = new ArrayList<>();
+      for (int[] hiddenLayer : hiddenLayers)
+      {
+         for (double lambda : lambdas)
+         {
+            for (double[] range : weightRanges)
+            {
+               for (int iterations : maxIterations)
+               {
+                  trials.add(new Trial(hiddenLayer, lambda, range[0], range[1], iterations, seeds.nextLong()));
+               }
+            }
+         }
+      } // for (int[] hiddenLayer : hiddenLayers)
+      return trials;
+   } // public static List<Trial> grid(int[][] hiddenLayers, double[] lambdas, double[][] weightRanges, ...)
+
+   /**
+    * Makes trials at random: lambda log-uniform in [minLambda, maxLambda], weights in -w - w with w uniform in
+    * [minRange, maxRange], and the hidden layers one of the given ones. The search and the trials' seeds are separate
+    * streams split from a SplittableRandom seeded with seed.
+    *
+    * @param count         the number of trials.
+    * @param seed          the seed of the search and of the trials' seeds.
+    * @param hiddenLayers  the two hidden layer sizes to choose from.
+    * @param minLambda     the least learning factor.
+    * @param maxLambda     the greatest learning factor.
+    * @param minRange      the least weight magnitude.
+    * @param maxRange      the greatest weight magnitude.
+    * @param maxIterations the iteration limit of every trial.
+    * @return the trials.
+    */
+   public static List<Trial> random(int count, long seed, int[][] hiddenLayers, double minLambda, double maxLambda,
+                                    double minRange, double maxRange, int maxIterations)
+   {
+      SplittableRandom search = new SplittableRandom(seed);
+      SplittableRandom seeds = search.split();
+      List<Trial> trials = new ArrayList<>();
+      for (int i = 0; i < count; i++)
+      {
+         int[] hiddenLayer = hiddenLayers[search.nextInt(hiddenLayers.length)];
+         double lambda = minLambda * Math.pow(maxLambda / minLambda, search.nextDouble());
+         double range = minRange + (maxRange - minRange) * search.nextDouble();
+         trials.add(new Trial(hiddenLayer, lambda, -range, range, maxIterations, seeds.nextLong()));
+      }
+      return trials;
+   } // public static List<Trial> random(int count, long seed, int[][] hiddenLayers, ...)
+
+   /**
+    * Trains every trial, threads at a time.
+    *
+    * @param trials the trials.
+    * @return the results, best first.
+    */
+   public List<Result> run(List<Trial> trials)
+   {
+      ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+         Thread thread = new Thread(runnable, "HyperparameterSweep trial");
+         thread.setDaemon(true);
+         return thread;
+      });
+      try
+      {
+         List<Future<Result>> futures = new ArrayList<>();
+         for (Trial trial : trials)
+         {
+            futures.add(pool.submit(() -> train(trial)));
+         }
+
+         List<Result> results = new ArrayList<>();
+         for (Future<Result> future : futures)
+         {
+            results.add(future.get());
+         }
+         Collections.sort(results, RANKING);
+         return results;
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      }
+      catch (ExecutionException e)
+      {
+         throw new RuntimeException(e.getCause());
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+   } // public List<Result> run(List<Trial> trials)
+
+   /**
+    * Trains one trial on a network of its own.
+    */
+   private Result train(Trial trial)
+   {
+      NeuralNet net = new NeuralNet(data.withHiddenLayer(trial.hiddenLayer));
+      net.setGradient(trial.lambda, trial.maxIterations, errorThreshold, trial.minWeight, trial.maxWeight);
+      net.setSeed(trial.seed);
+      net.setMetricsEnabled(threads == 1);              // NeuralNetMetrics describes one run at a time.
+
+      Result result = new Result();
+      result.trial = trial;
+      long start = System.nanoTime();
+      net.trainNeural();
+      result.trainNanos = System.nanoTime() - start;
+      result.iterations = net.getIterations();
+      result.finalError = net.getFinalError();
+      result.reached = result.finalError < errorThreshold;
+      return result;
+   } // private Result train(Trial trial)
+
+   /**
+    * Prints the ranked results as a table.
+    */
+   public void printTable(List<Result> results)
+   {
+      System.out.printf("%4s %-10s %10s %18s %8s %10s %14s %12s%n", "Rank", "Hidden", "Lambda", "Weights", "Max",
+         "Iterations", "To threshold", "Final error");
+      int rank = 0;
+      for (Result result : results)
+      {
+         Trial trial = result.trial;
+         System.out.printf("%4d %-10s %10.4g %18s %8d %10d %14s %12.6f%n", ++rank,
+            trial.hiddenLayer[0] + "-" + trial.hiddenLayer[1], trial.lambda,
+            String.format("%.3g - %.3g", trial.minWeight, trial.maxWeight), trial.maxIterations, result.iterations,
+            result.reached ? String.format("%.1f ms", result.trainNanos / 1e6) : "-", result.finalError);
+      }
+      System.out.println("Threshold " + errorThreshold + ", " + threads + " threads; \"-\" means it was not reached.");
+   } // public void printTable(List<Result> results)
+
+   /**
+    * Sweeps a problem or a config file and prints the ranked table. The hidden layers tried are the data's own, half
+    * of them and twice them; a grid also tries lambda 1, 2, 5 and 10 and weights in -0.5 - 0.5, -1 - 1 and -2 - 2,
+    * and a random search makes as many trials from lambda 0.5 - 20 and weight magnitudes 0.25 - 3.
+    *
+    * @param args [data [grid|random [maxIterations [threshold [seed [threads]]]]]]: xor, all or finger (see
+    *             EngineComparison.problem) or a config file (default xor), the search (default grid), the iteration
+    *             limit (default the problem's, or 10000), the error threshold (default 0.01), the seed (default 42)
+    *             and the threads (default one per processor).
+    */
+   public static void main(String[] args) throws IOException
+   {
+      String name = args.length > 0 ? args[0] : "xor";
+      boolean grid = args.length < 2 || args[1].equalsIgnoreCase("grid");
+      double threshold = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+      long seed = args.length > 4 ? Long.parseLong(args[4]) : 42L;
+      int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+
+      Dataset data;
+      int maxIterations = 10000;
+      if (name.equalsIgnoreCase("xor") || name.equalsIgnoreCase("all") || name.equalsIgnoreCase("finger"))
+      {
+         EngineComparison.Problem problem = EngineComparison.problem(name);
+         data = problem.toDataset(problem.getTwoHidden());
+         maxIterations = problem.getMaxEpochs();
+      }
+      else
+      {
+         data = DatasetCache.load(name);
+      }
+      if (args.length > 2)
+      {
+         maxIterations = Integer.parseInt(args[2]);
+      }
+
+      int[] own = data.getHiddenLayer();
+      int[][] hiddenLayers = {{Math.max(1, own[0] / 2), Math.max(1, own[1] / 2)}, own, {own[0] * 2, own[1] * 2}};
+      List<Trial> trials = grid(hiddenLayers, new double[] {1.0, 2.0, 5.0, 10.0},
+         new double[][] {{-0.5, 0.5}, {-1.0, 1.0}, {-2.0, 2.0}}, new int[] {maxIterations}, seed);
+      if (!grid)
+      {
+         trials = random(trials.size(), seed, hiddenLayers, 0.5, 20.0, 0.25, 3.0, maxIterations);
+      }
+
+      HyperparameterSweep sweep = new HyperparameterSweep(data, threshold, threads);
+      sweep.printTable(sweep.run(trials));
+   } // public static void main(String[] args)
+} // public class HyperparameterSweep
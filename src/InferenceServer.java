@@ -0,0 +1,420 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a trained network over HTTP on the loopback interface, so other processes on the host can classify images
+ * without starting a JVM each. The model is loaded once, and can be replaced through a ModelHolder while serving.
+ *
+ *    POST /predict   the body is a bitmap file. The response is "class output0 output1 ...", where class is the
+ *                    index of the largest output.
+ *    GET  /stats     the model version, the number of requests, the throughput and the latency percentiles.
+ *    POST /reload    loads the weights file again, e.g. after retraining, without stopping the server. main() also
+ *                    reloads it by itself whenever the file changes.
+ *
+ * Requests are handled on a fixed pool of threads. Each leases the current network from the ModelHolder, decodes its
+ * bitmap (each thread with its own DibDump) and queues it. A single batcher thread runs the networks: once it has a
+ * request it waits up to the latency budget for more, classifies them all with one predict() call and completes each
+ * request. Under load the batches fill up and the model is taken once per batch instead of once per request; when
+ * idle a request waits at most the budget. A batch only holds requests leased on the same network, so a request that
+ * arrived before a swap finishes on the old one. The latency of every request, from arrival until its response is
+ * sent, goes into a LatencyRecorder and the JVM's NeuralNetMetrics (JMX). With a PredictionCache, a bitmap sent
+ * before is answered from the cache without being decoded.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class InferenceServer
+{
+   /**
+    * One decoded image waiting for the model.
+    */
+   private static class Request
+   {
+      private NeuralNet model;
+      private double[] inputs;
+      private CompletableFuture<double[]> output = new CompletableFuture<double[]>();
+   }
+
+   /**
+    * The number of outputs main() caches.
+    */
+   private static final int CACHE_ENTRIES = 4096;
+
+   /**
+    * How often main() checks the weights file for a retrained network, in milliseconds.
+    */
+   private static final long WEIGHTS_CHECK_MILLIS = 2000L;
+
+   private ModelHolder models;
+   private int maxBatch;
+   private long budgetNanos;
+
+   private HttpServer server;
+   private ExecutorService handlers;
+   private ThreadLocal<DibDump> dibs = ThreadLocal.withInitial(() -> {
+      DibDump dib = new DibDump();
+      dib.verbose = false;
+      return dib;
+   });
+   private BlockingQueue<Request> pending;
+   private LatencyRecorder latency = new LatencyRecorder();
+   private NeuralNetMetrics metrics = NeuralNetMetrics.getInstance();
+   private PredictionCache cache;
+   private volatile boolean running;
+   private Thread batcher;
+
+   /**
+    * Constructor for a server of one network that is never replaced. Nothing is served until start() is called.
+    *
+    * @param model         the trained network.
+    * @param port          the port to listen on, on the loopback interface. 0 picks a free port.
+    * @param threads       the number of threads handling requests.
+    * @param maxBatch      the largest number of requests classified in one batch.
+    * @param budgetMillis  how long the first request of a batch may wait for others.
+    */
+   public InferenceServer(NeuralNet model, int port, int threads, int maxBatch, long budgetMillis) throws IOException
+   {
+      this(new ModelHolder(model), port, threads, maxBatch, budgetMillis);
+   }
+
+   /**
+    * Constructor for a server. Nothing is served until start() is called.
+    *
+    * @param models        holds the trained network, which POST /reload replaces.
+    * @param port          the port to listen on, on the loopback interface. 0 picks a free port.
+    * @param threads       the number of threads handling requests.
+    * @param maxBatch      the largest number of requests classified in one batch.
+    * @param budgetMillis  how long the first request of a batch may wait for others.
+    */
+   public InferenceServer(ModelHolder models, int port, int threads, int maxBatch, long budgetMillis) throws IOException
+   {
+      this.models = models;
+      this.maxBatch = Math.max(1, maxBatch);
+      budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+      pending = new ArrayBlockingQueue<Request>(Math.max(4 * this.maxBatch, threads));
+
+      handlers = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+         Thread thread = new Thread(runnable, "Inference handler");
+         thread.setDaemon(true);
+         return thread;
+      });
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+      server.setExecutor(handlers);
+      server.createContext("/predict", this::predict);
+      server.createContext("/stats", this::stats);
+      server.createContext("/reload", this::reload);
+   } // public InferenceServer(ModelHolder models, int port, int threads, int maxBatch, long budgetMillis)
+
+   /**
+    * Starts serving.
+    */
+   public void start()
+   {
+      running = true;
+      batcher = new Thread(this::batchLoop, "Inference batcher");
+      batcher.setDaemon(true);
+      batcher.start();
+      server.start();
+   }
+
+   /**
+    * Stops serving. Requests still waiting for the model fail.
+    */
+   public void stop()
+   {
+      running = false;
+      server.stop(0);
+      handlers.shutdownNow();
+      batcher.interrupt();
+   }
+
+   /**
+    * Answers requests for bitmaps seen before from a cache, keyed by the hash of the bitmap's bytes.
+    *
+    * @param cache the cache, or null for none.
+    */
+   public void setCache(PredictionCache cache)
+   {
+      this.cache = cache;
+   }
+
+   /**
+    * @return the port the server listens on.
+    */
+   public int getPort()
+   {
+      return server.getAddress().getPort();
+   }
+
+   /**
+    * @return the latencies of the requests served so far.
+    */
+   public LatencyRecorder getLatency()
+   {
+      return latency;
+   }
+
+   /**
+    * Handles POST /predict.
+    */
+   private void predict(HttpExchange exchange) throws IOException
+   {
+      long start = System.nanoTime();
+      try
+      {
+         if (!exchange.getRequestMethod().equals("POST"))
+         {
+            respond(exchange, 405, "Use POST with a bitmap as the body.\n");
+            return;
+         }
+
+         ByteBuffer bmp = ByteBuffer.wrap(readAll(exchange.getRequestBody())).order(ByteOrder.LITTLE_ENDIAN);
+         double[] output = null;
+         try (ModelHolder.Lease lease = models.acquire())           // The request finishes on this network.
+         {
+            NeuralNet model = lease.getModel();
+            long key = 0L;
+            if (cache != null)
+            {
+               key = PredictionCache.hash(bmp);
+               output = cache.get(lease.getVersion(), key);
+            }
+
+            if (output == null)
+            {
+               Request request = new Request();
+               request.model = model;
+               try
+               {
+                  request.inputs = HotFolderInference.toInputs(dibs.get(), model, bmp);
+               }
+               catch (RuntimeException e)
+               {
+                  respond(exchange, 400, "Could not decode the bitmap: " + e + "\n");
+                  return;
+               }
+
+               pending.put(request);                               // Blocks while the model is behind.
+               output = request.output.get();
+               if (cache != null)
+               {
+                  cache.put(lease.getVersion(), key, output);
+               }
+            } // if (output == null)
+         } // try (ModelHolder.Lease lease = models.acquire())
+
+         StringBuilder line = new StringBuilder().append(HotFolderInference.argMax(output));
+         for (double value : output)
+         {
+            line.append(' ').append(value);
+         }
+         respond(exchange, 200, line.append('\n').toString());
+         long nanos = System.nanoTime() - start;
+         latency.record(nanos);
+         metrics.predicted(nanos);
+      } // try
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         respond(exchange, 503, "Server stopping.\n");
+      }
+      catch (ExecutionException e)
+      {
+         respond(exchange, 500, "Inference failed: " + e.getCause() + "\n");
+      }
+   } // private void predict(HttpExchange exchange)
+
+   /**
+    * Handles GET /stats.
+    */
+   private void stats(HttpExchange exchange) throws IOException
+   {
+      respond(exchange, 200, "model version " + models.getVersion() + "\n" + latency.summary() +
+         (cache == null ? "" : "\n" + cache.summary()) + "\n");
+   }
+
+   /**
+    * Handles POST /reload: loads the weights file again in the background and answers once the new network is
+    * published or has been rejected. Requests keep being served meanwhile.
+    */
+   private void reload(HttpExchange exchange) throws IOException
+   {
+      if (!exchange.getRequestMethod().equals("POST"))
+      {
+         respond(exchange, 405, "Use POST to reload the model.\n");
+         return;
+      }
+
+      try
+      {
+         models.reload().get();
+         respond(exchange, 200, "Published model version " + models.getVersion() + "\n");
+      }
+      catch (IllegalStateException e)
+      {
+         respond(exchange, 409, e.getMessage() + "\n");
+      }
+      catch (ExecutionException e)
+      {
+         respond(exchange, 422, "Kept model version " + models.getVersion() + ": " + e.getCause() + "\n");
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         respond(exchange, 503, "Server stopping.\n");
+      }
+   } // private void reload(HttpExchange exchange)
+
+   /**
+    * Sends a text response and closes the exchange.
+    */
+   private static void respond(HttpExchange exchange, int status, String text) throws IOException
+   {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+      exchange.sendResponseHeaders(status, bytes.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(bytes);
+      out.close();
+   }
+
+   /**
+    * @return every byte of a request body.
+    */
+   private static byte[] readAll(InputStream in) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int n; (n = in.read(buffer)) > 0; )
+      {
+         bytes.write(buffer, 0, n);
+      }
+      in.close();
+      return bytes.toByteArray();
+   }
+
+   /**
+    * The batcher thread: gathers waiting requests into batches within the latency budget and classifies them.
+    */
+   private void batchLoop()
+   {
+      Request[] batch = new Request[maxBatch];
+      double[][] inputs = new double[maxBatch][];
+      double[][] outputs;
+      try (ModelHolder.Lease lease = models.acquire())
+      {
+         outputs = new double[maxBatch][lease.getModel().getNumOutputNodes()];  // Swaps keep the output count.
+      }
+      Request next = null;
+
+      try
+      {
+         while (running)
+         {
+            int count = 0;
+            batch[count++] = next == null ? pending.take() : next;
+            next = null;
+            long deadline = System.nanoTime() + budgetNanos;
+            while (count < maxBatch)
+            {
+               Request request = pending.poll(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+               if (request == null)
+               {
+                  break;
+               }
+               if (request.model != batch[0].model)             // Admitted under another network: next batch.
+               {
+                  next = request;
+                  break;
+               }
+               batch[count++] = request;
+            }
+
+            for (int b = 0; b < count; b++)
+            {
+               inputs[b] = batch[b].inputs;
+            }
+            try
+            {
+               batch[0].model.predict(inputs, outputs, count);
+               for (int b = 0; b < count; b++)
+               {
+                  batch[b].output.complete(outputs[b].clone());
+               }
+            }
+            catch (RuntimeException e)
+            {
+               for (int b = 0; b < count; b++)
+               {
+                  batch[b].output.completeExceptionally(e);
+               }
+            }
+
+            for (int b = 0; b < count; b++)
+            {
+               batch[b] = null;
+               inputs[b] = null;
+            }
+         } // while (running)
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();                       // stop() was called.
+      }
+
+      if (next != null)
+      {
+         next.output.completeExceptionally(new IllegalStateException("Server stopped"));
+      }
+      for (Request request; (request = pending.poll()) != null; )
+      {
+         request.output.completeExceptionally(new IllegalStateException("Server stopped"));
+      }
+   } // private void batchLoop()
+
+   /**
+    * Runs the server until the JVM is stopped.
+    *
+    * @param args the config file, the trained weights file and optionally the port, the number of handler threads,
+    *             the largest batch and the latency budget in milliseconds.
+    */
+   public static void main(String[] args) throws IOException
+   {
+      if (args.length < 2)
+      {
+         System.out.println("Usage: java InferenceServer config weights [port [threads [batch [budgetMs]]]]");
+         return;
+      }
+
+      int port = args.length > 2 ? Integer.parseInt(args[2]) : 8080;
+      int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4 * Runtime.getRuntime().availableProcessors();
+      int batch = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+      long budget = args.length > 5 ? Long.parseLong(args[5]) : 5L;
+
+      ModelHolder models = new ModelHolder(args[0], args[1]);
+      models.watchWeights(WEIGHTS_CHECK_MILLIS);
+      InferenceServer server = new InferenceServer(models, port, threads, batch, budget);
+      server.setCache(new PredictionCache(CACHE_ENTRIES));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         server.stop();
+         System.out.println("Inference server: " + server.getLatency().summary() + ", " + server.cache.summary());
+      }));
+      server.start();
+      System.out.println("Serving on http://localhost:" + server.getPort() + "/predict");
+   } // public static void main(String[] args)
+} // public class InferenceServer
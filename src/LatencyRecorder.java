@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * Records the latencies of requests and reports their count, throughput and percentiles. The percentiles are taken
+ * over the most recent latencies only (a fixed window), so recording never allocates and a long-running service keeps
+ * reporting its current behavior. All methods are synchronized, so any number of threads may record at once.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class LatencyRecorder
+{
+   /**
+    * The number of latencies kept for the percentiles if no window is given.
+    */
+   private static final int DEFAULT_WINDOW = 8192;
+
+   private long[] window;
+   private int next;
+   private long count;
+   private long totalNanos;
+   private long maxNanos;
+   private long startNanos = System.nanoTime();
+
+   /**
+    * Constructor for a recorder that keeps the last 8192 latencies.
+    */
+   public LatencyRecorder()
+   {
+      this(DEFAULT_WINDOW);
+   }
+
+   /**
+    * Constructor for a recorder.
+    *
+    * @param size the number of most recent latencies the percentiles are taken over.
+    */
+   public LatencyRecorder(int size)
+   {
+      window = new long[Math.max(1, size)];
+   }
+
+   /**
+    * Records one latency.
+    *
+    * @param nanos the latency in nanoseconds.
+    */
+   public synchronized void record(long nanos)
+   {
+      window[next] = nanos;
+      next = (next + 1) % window.length;
+      count++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+   }
+
+   /**
+    * @return the number of latencies recorded.
+    */
+   public synchronized long getCount()
+   {
+      return count;
+   }
+
+   /**
+    * @return the mean of every latency recorded, in nanoseconds.
+    */
+   public synchronized double getMeanNanos()
+   {
+      return count == 0 ? 0.0 : (double) totalNanos / count;
+   }
+
+   /**
+    * @return the largest latency recorded, in nanoseconds.
+    */
+   public synchronized long getMaxNanos()
+   {
+      return maxNanos;
+   }
+
+   /**
+    * @return the number of latencies recorded per second since the recorder was made.
+    */
+   public synchronized double getThroughput()
+   {
+      return count * 1e9 / Math.max(1L, System.nanoTime() - startNanos);
+   }
+
+   /**
+    * Returns a percentile of the recent latencies, e.g. percentile(99.0) for the p99.
+    *
+    * @param percent the percentile, 0 - 100.
+    * @return the latency in nanoseconds, or 0 if nothing has been recorded.
+    */
+   public synchronized long percentile(double percent)
+   {
+      int n = (int) Math.min(count, window.length);
+      if (n == 0)
+      {
+         return 0L;
+      }
+
+      long[] sorted = Arrays.copyOf(window, n);           // The first n slots are the filled ones.
+      Arrays.sort(sorted);
+      int rank = (int) Math.ceil(percent / 100.0 * n) - 1;
+      return sorted[Math.max(0, Math.min(n - 1, rank))];
+   } // public synchronized long percentile(double percent)
+
+   /**
+    * @return a one-line summary, e.g. "1200 requests, 85.3/s, p50 4.120 ms, p90 7.800 ms, p99 12.050 ms, max 20.1 ms".
+    */
+   public synchronized String summary()
+   {
+      return String.format("%d requests, %.1f/s, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms", count,
+         getThroughput(), percentile(50.0) / 1e6, percentile(90.0) / 1e6, percentile(99.0) / 1e6, maxNanos / 1e6);
+   }
+} // public class LatencyRecorder
@@ -0,0 +1,296 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the network a long-running service predicts with and replaces it without stopping the service. A new weights
+ * file is loaded and validated on a background thread while the current network keeps serving; only a network that
+ * passes is published, by swapping a volatile reference. Readers lease the current network for the length of a
+ * prediction or batch, so work that started on the old network finishes on it. Each network counts its leases, and
+ * once it has been replaced and its last lease is closed the holder drops it, so its weights can be collected. The
+ * current version and the replaced networks still held are reported to NeuralNetMetrics (JMX).
+ *
+ *    try (ModelHolder.Lease lease = holder.acquire())
+ *    {
+ *       lease.getModel().predict(inputs, outputs);
+ *    }
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class ModelHolder
+{
+   /**
+    * One published network and its readers.
+    */
+   private static class Version
+   {
+      private NeuralNet model;
+      private int number;
+      private AtomicInteger readers = new AtomicInteger();
+      private volatile boolean retired;
+      private AtomicBoolean released = new AtomicBoolean();
+
+      private Version(NeuralNet model, int number)
+      {
+         this.model = model;
+         this.number = number;
+      }
+   } // private static class Version
+
+   /**
+    * A reader's hold on one network. Close it when the prediction is done.
+    */
+   public class Lease implements AutoCloseable
+   {
+      private Version version;
+      private boolean closed;
+
+      private Lease(Version version)
+      {
+         this.version = version;
+      }
+
+      /**
+       * @return the leased network. It stays valid until the lease is closed, even if a new one is published.
+       */
+      public NeuralNet getModel()
+      {
+         return version.model;
+      }
+
+      /**
+       * @return the number of the leased network; the first network is 1 and every swap adds one.
+       */
+      public int getVersion()
+      {
+         return version.number;
+      }
+
+      /**
+       * Ends the hold. Closing a lease twice does nothing.
+       */
+      public void close()
+      {
+         if (!closed)
+         {
+            closed = true;
+            if (version.readers.decrementAndGet() == 0 && version.retired)
+            {
+               release(version);
+            }
+         }
+      }
+   } // public class Lease
+
+   private volatile Version current;
+   private String config;
+   private String weightsFile;
+   private long weightsModified;
+   private long lastSeenModified;
+   private ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "Model loader");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   /**
+    * Constructor for a holder of an already loaded network. reload() is not available without a config file; use
+    * load(config, weightsFile).
+    *
+    * @param model the first network.
+    */
+   public ModelHolder(NeuralNet model)
+   {
+      current = new Version(model, 1);
+      NeuralNetMetrics.getInstance().modelPublished(current.number);
+   }
+
+   /**
+    * Constructor for a holder that loads its first network now (see NeuralNet.loadModel).
+    *
+    * @param config      the config file the network was trained with.
+    * @param weightsFile the trained weights.
+    */
+   public ModelHolder(String config, String weightsFile)
+   {
+      this(NeuralNet.loadModel(config, weightsFile));
+      this.config = config;
+      this.weightsFile = weightsFile;
+      weightsModified = new File(weightsFile).lastModified();
+   }
+
+   /**
+    * Leases the current network.
+    *
+    * @return the lease. Close it when done.
+    */
+   public Lease acquire()
+   {
+      while (true)
+      {
+         Version version = current;
+         version.readers.incrementAndGet();
+         if (version == current)                          // Not replaced between the read and the increment.
+         {
+            return new Lease(version);
+         }
+         if (version.readers.decrementAndGet() == 0 && version.retired)
+         {
+            release(version);
+         }
+      }
+   } // public Lease acquire()
+
+   /**
+    * @return the number of the current network.
+    */
+   public int getVersion()
+   {
+      return current.number;
+   }
+
+   /**
+    * Loads the weights file the holder was made with again, e.g. after it was retrained, in the background.
+    *
+    * @return completes with the new network once it is published, or exceptionally if it failed to load or validate.
+    */
+   public CompletableFuture<NeuralNet> reload()
+   {
+      if (config == null)
+      {
+         throw new IllegalStateException("This holder was not made from a config and weights file");
+      }
+      return load(config, weightsFile);
+   }
+
+   /**
+    * Checks the weights file the holder was made with every so often and reloads it when it has changed, e.g. when a
+    * training run has written a new trainedWeights.txt. A change is only loaded once the file has stayed the same for
+    * a whole period, so a file still being written is not read.
+    *
+    * @param periodMillis the time between checks.
+    */
+   public void watchWeights(long periodMillis)
+   {
+      if (config == null)
+      {
+         throw new IllegalStateException("This holder was not made from a config and weights file");
+      }
+
+      loader.scheduleWithFixedDelay(() -> {
+         long modified = new File(weightsFile).lastModified();
+         if (modified != 0L && modified != weightsModified && modified == lastSeenModified)
+         {
+            weightsModified = modified;
+            reload();
+         }
+         lastSeenModified = modified;
+      }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+   } // public void watchWeights(long periodMillis)
+
+   /**
+    * Loads, validates and publishes a network in the background. The current network keeps serving until then and is
+    * kept if the new one fails.
+    *
+    * @param config      the config file the network was trained with.
+    * @param weightsFile the trained weights.
+    * @return completes with the new network once it is published, or exceptionally if it failed to load or validate.
+    */
+   public CompletableFuture<NeuralNet> load(String config, String weightsFile)
+   {
+      return CompletableFuture.supplyAsync(() -> {
+         NeuralNet model = NeuralNet.loadModel(config, weightsFile);
+         validate(model);
+         swap(model);
+         return model;
+      }, loader).whenComplete((model, failure) -> {
+         if (failure != null)
+         {
+            System.err.println("Kept model version " + getVersion() + "; could not load " + weightsFile + ": " +
+               failure.getCause());
+         }
+      });
+   } // public CompletableFuture<NeuralNet> load(String config, String weightsFile)
+
+   /**
+    * Checks that a network can replace the current one: the same inputs (including resampling) and outputs, so
+    * images already decoded for the old network still fit, and finite outputs in 0 - 1 for a blank and a full image.
+    *
+    * @param model the new network.
+    */
+   public void validate(NeuralNet model)
+   {
+      try (Lease lease = acquire())
+      {
+         NeuralNet old = lease.getModel();
+         if (model.getNumInputNodes() != old.getNumInputNodes() || model.getNumOutputNodes() != old.getNumOutputNodes())
+         {
+            throw new IllegalArgumentException("New model has " + model.getNumInputNodes() + " inputs and " +
+               model.getNumOutputNodes() + " outputs but the current one has " + old.getNumInputNodes() + " and " +
+               old.getNumOutputNodes());
+         }
+         if (!String.valueOf(model.getResampler()).equals(String.valueOf(old.getResampler())))
+         {
+            throw new IllegalArgumentException("New model resamples with " + model.getResampler() +
+               " but the current one with " + old.getResampler());
+         }
+      }
+
+      double[] output = new double[model.getNumOutputNodes()];
+      for (double level = 0.0; level <= 1.0; level += 1.0)
+      {
+         double[] probe = new double[model.getNumInputNodes()];
+         Arrays.fill(probe, level);
+         model.predict(probe, output);
+         for (double value : output)
+         {
+            if (!(value >= 0.0 && value <= 1.0))                    // Also catches NaN.
+            {
+               throw new IllegalArgumentException("New model gives output " + value + " for a probe image");
+            }
+         }
+      }
+   } // public void validate(NeuralNet model)
+
+   /**
+    * Publishes a network. Leases already taken keep the old one until they are closed. Does not validate.
+    *
+    * @param model the new network.
+    */
+   public synchronized void swap(NeuralNet model)
+   {
+      Version old = current;
+      current = new Version(model, old.number + 1);
+      NeuralNetMetrics.getInstance().modelPublished(current.number);
+      old.retired = true;
+      if (old.readers.get() == 0)
+      {
+         release(old);
+      }
+   } // public synchronized void swap(NeuralNet model)
+
+   /**
+    * Drops a replaced network once nobody reads it. Runs at most once per network.
+    */
+   private void release(Version version)
+   {
+      if (version.released.compareAndSet(false, true))
+      {
+         version.model = null;
+         NeuralNetMetrics.getInstance().modelReleased();
+      }
+   }
+
+   /**
+    * Stops the loader thread.
+    */
+   public void close()
+   {
+      loader.shutdownNow();
+   }
+} // public class ModelHolder
@@ -0,0 +1,242 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for training and for reading data, so a recording (java -XX:StartFlightRecording, or
+ * JFR.start through jcmd) shows where a run spent its time next to the JVM's own GC, JIT and I/O events. Every event
+ * has JFR's start time and duration; the fields below add what the network was doing.
+ *
+ * NeuralNet.trainNeural emits an Epoch for every iteration and, for one training set in NeuralNetMetrics.PHASE_SAMPLE,
+ * a Forward and a BackProp with the set's index. DatasetCache.load emits a DatasetLoad, DibDump a DibDumpDecode for
+ * every bitmap it decodes, and NeuralNet.writeWeights a CheckpointWrite.
+ *
+ * When JFR is not recording, begin(), end() and shouldCommit() compile to nothing and an event is a short lived object
+ * that escape analysis usually removes, so the call sites do not check whether JFR is on. The fields are only filled
+ * in once shouldCommit() says the event will be written.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public final class NetworkEvents
+{
+   private NetworkEvents()
+   {
+   }
+
+   /**
+    * The fields every per-set training event has.
+    */
+   abstract static class SetEvent extends Event
+   {
+      @Label("Topology")
+      @Description("The layer sizes, e.g. 2500-10-50-5")
+      String topology;
+
+      @Label("Sample Index")
+      @Description("The training set")
+      int sample;
+   }
+
+   @Name("neuralnet.Epoch")
+   @Label("Training Epoch")
+   @Category({"Neural Network", "Training"})
+   @Description("One iteration over every training set")
+   public static final class Epoch extends Event
+   {
+      @Label("Topology")
+      @Description("The layer sizes, e.g. 2500-10-50-5")
+      String topology;
+
+      @Label("Iteration")
+      int iteration;
+
+      @Label("Training Sets")
+      int sets;
+
+      @Label("Error")
+      @Description("The error trainNeural compares with the error threshold")
+      double error;
+   }
+
+   @Name("neuralnet.Forward")
+   @Label("Forward Pass")
+   @Category({"Neural Network", "Training"})
+   @Description("The forward pass of a sampled training set")
+   public static final class Forward extends SetEvent
+   {
+   }
+
+   @Name("neuralnet.BackProp")
+   @Label("Back Propagation")
+   @Category({"Neural Network", "Training"})
+   @Description("Back propagation of a sampled training set, including the weight changes")
+   public static final class BackProp extends SetEvent
+   {
+   }
+
+   @Name("neuralnet.CheckpointWrite")
+   @Label("Checkpoint Write")
+   @Category({"Neural Network", "I/O"})
+   @Description("Trained weights written to a file")
+   public static final class CheckpointWrite extends Event
+   {
+      @Label("Topology")
+      String topology;
+
+      @Label("File")
+      String file;
+
+      @Label("Weights")
+      int weights;
+
+      @Label("Size")
+      @DataAmount
+      long bytes;
+   }
+
+   @Name("neuralnet.DatasetLoad")
+   @Label("Dataset Load")
+   @Category({"Neural Network", "I/O"})
+   @Description("A dataset loaded from its config file and pel files, or from their cache")
+   public static final class DatasetLoad extends Event
+   {
+      @Label("Config")
+      String config;
+
+      @Label("Training Sets")
+      int sets;
+
+      @Label("Inputs")
+      int inputs;
+
+      @Label("Cache Hit")
+      @Description("Whether the dataset came from the cache without parsing any file")
+      boolean cacheHit;
+
+      @Label("Re-parsed Pel Files")
+      @Description("The pel files read again because they are new or changed since the cache was written")
+      int reparsed;
+   }
+
+   @Name("neuralnet.DibDumpDecode")
+   @Label("Bitmap Decode")
+   @Category({"Neural Network", "I/O"})
+   @Description("A bitmap decoded by DibDump into its pel array or into input activations")
+   public static final class DibDumpDecode extends Event
+   {
+      @Label("Width")
+      int width;
+
+      @Label("Height")
+      int height;
+
+      @Label("Bits Per Pel")
+      int bitCount;
+
+      @Label("Threads")
+      int threads;
+
+      @Label("To Inputs")
+      @Description("Whether the gray levels went straight to input activations")
+      boolean toInputs;
+   }
+
+   /**
+    * Starts timing a forward pass.
+    */
+   static Forward forward()
+   {
+      Forward event = new Forward();
+      event.begin();
+      return event;
+   }
+
+   /**
+    * Starts timing back propagation.
+    */
+   static BackProp backProp()
+   {
+      BackProp event = new BackProp();
+      event.begin();
+      return event;
+   }
+
+   /**
+    * Ends a per-set event and writes it if JFR is recording it.
+    *
+    * @param event    the event from forward() or backProp().
+    * @param topology the network's layer sizes.
+    * @param sample   the training set.
+    */
+   static void commit(SetEvent event, String topology, int sample)
+   {
+      event.end();
+      if (event.shouldCommit())
+      {
+         event.topology = topology;
+         event.sample = sample;
+         event.commit();
+      }
+   }
+
+   /**
+    * Starts timing an iteration.
+    */
+   static Epoch epoch()
+   {
+      Epoch event = new Epoch();
+      event.begin();
+      return event;
+   }
+
+   /**
+    * Ends an iteration's event and writes it if JFR is recording it.
+    */
+   static void commit(Epoch event, String topology, int iteration, int sets, double error)
+   {
+      event.end();
+      if (event.shouldCommit())
+      {
+         event.topology = topology;
+         event.iteration = iteration;
+         event.sets = sets;
+         event.error = error;
+         event.commit();
+      }
+   } // static void commit(Epoch event, String topology, int iteration, int sets, double error)
+
+   /**
+    * Starts timing a bitmap decode.
+    */
+   static DibDumpDecode dibDumpDecode()
+   {
+      DibDumpDecode event = new DibDumpDecode();
+      event.begin();
+      return event;
+   }
+
+   /**
+    * Ends a bitmap decode's event and writes it if JFR is recording it.
+    *
+    * @param event    the event from dibDumpDecode().
+    * @param dib      the DibDump that decoded the bitmap; its header fields describe it.
+    * @param threads  the threads the rows were split over.
+    * @param toInputs whether the bitmap was decoded into input activations rather than imageArray.
+    */
+   static void commit(DibDumpDecode event, DibDump dib, int threads, boolean toInputs)
+   {
+      event.end();
+      if (event.shouldCommit())
+      {
+         event.width = dib.bmpInfoHeader_biWidth;
+         event.height = dib.bmpInfoHeader_biHeight;
+         event.bitCount = dib.bmpInfoHeader_biBitCount;
+         event.threads = threads;
+         event.toInputs = toInputs;
+         event.commit();
+      }
+   } // static void commit(DibDumpDecode event, DibDump dib, int threads, boolean toInputs)
+} // public final class NetworkEvents
@@ -1,5 +1,6 @@
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.io.*;
 
 /**
@@ -10,6 +11,11 @@ import java.io.*;
  */
 public class NeuralNet
 {
+   /**
+    * Starts the line of a weights file that records the seed the weights were randomized from.
+    */
+   public static final String SEED_KEYWORD = "seed";
+
    /**
     * The number of user-input nodes.
     */
@@ -88,6 +94,16 @@ public class NeuralNet
     */
    private int iterations;
 
+   /**
+    * The error of the last iteration trainNeural trained.
+    */
+   private double finalError = Double.NaN;
+
+   /**
+    * Set by stop() from any thread and checked by trainNeural after every iteration.
+    */
+   private volatile boolean stopRequested;
+
    /**
     * The most number of nodes in a vertical layer. Needed to know the smallest possible size of the arrays to make.
     * Can be used as a variable within a method, but it's included here for future design options.
@@ -163,6 +179,49 @@ public class NeuralNet
 
    private boolean imageRecognition;
 
+   /**
+    * Resamples raw images to the input layer's size, or null if the inputs are the raw pels. Comes from the config
+    * file when training and from the trained weights file when the weights are loaded.
+    */
+   private Resampler resampler;
+
+   /**
+    * The seed of the random weights: drawn when the network is made unless setSeed is called. Every setWeightsRandom
+    * starts over from it, so the same seed always gives the same weights. writeWeights records it.
+    */
+   private long seed = ThreadLocalRandom.current().nextLong();
+
+   /**
+    * The source of the random weights, rebuilt from seed by setWeightsRandom. A SplittableRandom of its own, so
+    * networks trained on different threads share no state.
+    */
+   private SplittableRandom random = new SplittableRandom(seed);
+
+   /**
+    * Where trainNeural reports its progress (see NeuralNetMetrics), or null when not training.
+    */
+   private NeuralNetMetrics metrics;
+
+   /**
+    * Whether trainNeural reports to NeuralNetMetrics at all.
+    */
+   private boolean metricsEnabled = true;
+
+   /**
+    * Counts the training sets, so every NeuralNetMetrics.PHASE_SAMPLE-th one is timed.
+    */
+   private int phaseCount;
+
+   /**
+    * The layer sizes, e.g. "2500-10-50-5", made by getTopology the first time it is needed.
+    */
+   private String topology;
+
+   /**
+    * Told about every iteration of trainNeural and every writeWeights. Empty unless addTrainingListener is called.
+    */
+   private TrainingListeners listeners = new TrainingListeners();
+
    /**
     * Constructor for the neural network. Assigns number of Inputs.txt, number of nodes in each hidden layer, number of
     * layers in the network, size of the arrays, and sets the default weights.
@@ -294,68 +353,78 @@ public class NeuralNet
    } // Constructor public NeuralNet()
 
    /**
-    * Constructor for the neural network. Reads the FILE given. Assigns number of Inputs.txt, number of nodes in each
-    * hidden layer, number of layers in the network, size of the arrays, and sets the default weights.
+    * Constructor for the neural network. Reads the FILE given through DatasetCache, so pel files that have not
+    * changed since the last run are not parsed again. Assigns number of Inputs.txt, number of nodes in each hidden
+    * layer, number of layers in the network, size of the arrays, and sets the default weights.
     */
    public NeuralNet(String config)
    {
-      imageRecognition = true;
-      gradient = true;
-      testingAll = false;
+      this(DatasetCache.load(config));
 
-      try
+      System.out.print("\nTraining a ");
+      for (int n = 0; n < totalLayers; n++)
       {
-         Scanner in = new Scanner(new File(config));
-         numInputNodes = in.nextInt();
-         hiddenLayer = new int[in.nextInt()];
-         numHiddenLayers = hiddenLayer.length;
-         for (int i = 0; i < hiddenLayer.length; i++)
+         if (n + 1 >= totalLayers)
          {
-            hiddenLayer[i] = in.nextInt(); // Since just 1 hidden layer I can just set hiddenLayer to {2}
+            System.out.print(verticalLayers[n] + " network.\n");
          }
-         numOutputNodes = in.nextInt();
-         numSets = in.nextInt();
-
-         inputs = new double[numInputNodes];
-         expectedOutput = new double[numOutputNodes];
-
-         inputSets = new double[numSets][numInputNodes];
-         for (int set = 0; set < numSets; set++)
+         else
          {
-            try
-            {
-               Scanner pelReader = new Scanner(new File(in.next()));
-               for (int k = 0; k < numInputNodes; k++)
-               {
-                  double inp = pelReader.nextDouble();
-                  inputSets[set][k] = inp;
-                  inputs[k] = inp;
-               }
-            }
-            catch(FileNotFoundException e)
-            {
-               throw new RuntimeException(e);
-            }
-
+            System.out.print(verticalLayers[n] + "-");
          }
+      }
 
-
-
-         expected = new double[numSets][numOutputNodes];
-         for (int t = 0; t < numSets; t++)
+      System.out.println("Num Sets: " + numSets);
+      System.out.println("Inputs: ");
+      for (int t = 0; t < numSets; t++)
+      {
+         System.out.println("Set " + t);
+         for (int k = 0; k < numInputNodes; k++)
          {
-            for (int i = 0; i < numOutputNodes; i++)
-            {
-               double out = in.nextDouble();
-               expected[t][i] = out;
-               expectedOutput[i] = out;
-            }
+            System.out.print(inputSets[t][k] + " ");
          }
-         in.close();
-      } // Reads the input file. try{
-      catch (FileNotFoundException e)
+         System.out.println("\n");
+      }
+      System.out.println("Expected: ");
+      for (int t = 0; t < numSets; t++)
       {
-         throw new RuntimeException(e);
+         System.out.println("Set " + t);
+         for (int k = 0; k < numOutputNodes; k++)
+         {
+            System.out.print(expected[t][k] + " ");
+         }
+         System.out.println("\n");
+      }
+   } // Constructor public NeuralNet(String FileName)
+
+   /**
+    * Constructor for the neural network. Takes the topology and training sets from an already loaded Dataset (see
+    * DatasetCache). The input and expected arrays are shared with the Dataset, not copied, since training only
+    * reads them. Does not print anything.
+    *
+    * @param data the training sets.
+    */
+   public NeuralNet(Dataset data)
+   {
+      imageRecognition = true;
+      gradient = true;
+      testingAll = false;
+
+      numInputNodes = data.getNumInputNodes();
+      hiddenLayer = data.getHiddenLayer();
+      numHiddenLayers = hiddenLayer.length;
+      numOutputNodes = data.getNumOutputNodes();
+      numSets = data.getNumSets();
+      inputSets = data.getInputSets();
+      expected = data.getExpected();
+      resampler = data.getResampler();
+
+      inputs = new double[numInputNodes];
+      expectedOutput = new double[numOutputNodes];
+      if (numSets > 0)                             // Like the file reader, keeps the last set's values.
+      {
+         System.arraycopy(inputSets[numSets - 1], 0, inputs, 0, numInputNodes);
+         System.arraycopy(expected[numSets - 1], 0, expectedOutput, 0, numOutputNodes);
       }
 
       totalLayers = numHiddenLayers + 2;
@@ -397,44 +466,7 @@ public class NeuralNet
       layer2 = new double[maxActivations];
 
       setWeightsDefault();
-
-      System.out.print("\nTraining a ");
-      for (int n = 0; n < totalLayers; n++)
-      {
-         if (n + 1 >= totalLayers)
-         {
-            System.out.print(verticalLayers[n] + " network.\n");
-         }
-         else
-         {
-            System.out.print(verticalLayers[n] + "-");
-         }
-      }
-
-      System.out.println("Num Sets: " + numSets);
-      System.out.println("Inputs: ");
-      for (int t = 0; t < numSets; t++)
-      {
-         System.out.println("Set " + t);
-         for (int k = 0; k < numInputNodes; k++)
-         {
-            System.out.print(inputSets[t][k] + " ");
-         }
-         System.out.println("\n");
-      }
-      System.out.println("Expected: ");
-      for (int t = 0; t < numSets; t++)
-      {
-         System.out.println("Set " + t);
-         for (int k = 0; k < numOutputNodes; k++)
-         {
-            System.out.print(expected[t][k] + " ");
-         }
-         System.out.println("\n");
-      }
-
-
-   } // Constructor public NeuralNet(String FileName)
+   } // Constructor public NeuralNet(Dataset data)
 
 
    /**
@@ -452,6 +484,28 @@ public class NeuralNet
       minLambda = 0.0;
    }
 
+   /**
+    * Sets the gradient parameters for trainNeural, like answering the testGradientDescent prompts. The others keep
+    * their default values (see setGradientDefault).
+    *
+    * @param lambda         the learning factor.
+    * @param maxIterations  the most iterations to train.
+    * @param errorThreshold the error below which training stops.
+    * @param minWeight      the least random weight.
+    * @param maxWeight      the greatest random weight.
+    */
+   public void setGradient(double lambda, int maxIterations, double errorThreshold, double minWeight,
+                           double maxWeight)
+   {
+      setGradientDefault();
+      this.lambda = lambda;
+      startingLambda = lambda;
+      this.maxIterations = maxIterations;
+      this.errorThreshold = errorThreshold;
+      this.minWeight = minWeight;
+      this.maxWeight = maxWeight;
+   } // public void setGradient(double lambda, int maxIterations, double errorThreshold, double minWeight, ...)
+
    /**
     * Reads the File given and sets the needed instance variables and arrays with the file information.
     * @param file the File to be read.
@@ -742,13 +796,31 @@ public class NeuralNet
    } // Sets Weights to User's choice. public void setUserWeights()
 
    /**
-    * Sets weights to the weights given by a file.
+    * Sets weights to the weights given by a file. If the file starts with a seed line, the network is seeded the
+    * same way (see getSeed), and if it has a resample line, the network resamples raw images the same way before they
+    * reach the input layer.
     */
    public void setFileWeights(String fileName)
    {
       try
       {
-         Scanner sc2 = new Scanner(new File("trainedWeights.txt"));
+         Scanner sc2 = new Scanner(new File(fileName));
+         if (sc2.hasNext(SEED_KEYWORD))
+         {
+            sc2.next();
+            setSeed(sc2.nextLong());
+         }
+         if (sc2.hasNext(Resampler.KEYWORD))
+         {
+            sc2.next();
+            resampler = Resampler.read(sc2);
+            if (resampler.getTargetSize() != numInputNodes)
+            {
+               throw new IllegalArgumentException(fileName + " was trained with " + resampler + " but this network has "
+                  + numInputNodes + " input nodes");
+            }
+            System.out.println("Resampling inputs: " + resampler);
+         }
          int count = 0;
          while (sc2.hasNextDouble())
          {
@@ -774,7 +846,15 @@ public class NeuralNet
          System.out.println("Number of weights: " + count);
 
 
-         Scanner sc = new Scanner(new File("trainedWeights.txt"));
+         Scanner sc = new Scanner(new File(fileName));
+         if (sc.hasNext(SEED_KEYWORD))
+         {
+            sc.nextLine();
+         }
+         if (sc.hasNext(Resampler.KEYWORD))
+         {
+            sc.nextLine();
+         }
 
          for (int n = 0; n < numHiddenLayers + 1; n++)
          {
@@ -795,6 +875,53 @@ public class NeuralNet
 
    }
 
+   /**
+    * Writes the weights in the format setFileWeights reads: the seed line, so the run can be repeated, the resample
+    * line, if the network resamples its inputs, then every weight followed by a space. The training listeners are
+    * told the file was saved, and it is recorded as a NetworkEvents.CheckpointWrite when JFR is recording.
+    *
+    * @param fileName the file to write.
+    * @throws IOException if the file could not be written.
+    */
+   public void writeWeights(String fileName) throws IOException
+   {
+      NetworkEvents.CheckpointWrite event = new NetworkEvents.CheckpointWrite();
+      event.begin();
+      int count = 0;
+      try (Writer out = new BufferedWriter(new FileWriter(fileName)))
+      {
+         out.write(SEED_KEYWORD + " " + seed + "\n");
+         if (resampler != null)
+         {
+            out.write(resampler + "\n");              // So inference resamples its images the same way.
+         }
+         for (int n = 0; n < numHiddenLayers + 1; n++)
+         {
+            for (int k = 0; k < verticalLayers[n]; k++)
+            {
+               for (int j = 0; j < verticalLayers[n+1]; j++)
+               {
+                  out.write(weight[n][k][j] + " ");
+                  count++;
+               }
+            }
+         }
+      } // try (Writer out = new BufferedWriter(new FileWriter(fileName)))
+
+      event.end();
+      if (event.shouldCommit())
+      {
+         event.topology = getTopology();
+         event.file = fileName;
+         event.weights = count;
+         event.bytes = new File(fileName).length();
+         event.commit();
+      }
+
+      TrainingEvent saved = trainingEvent(iterations, Double.NaN, fileName);
+      listeners.dispatch(listener -> listener.checkpointSaved(saved));
+   } // public void writeWeights(String fileName)
+
    /**
     * Randomizes a number between min and max.
     * @param min the minimum number
@@ -803,7 +930,25 @@ public class NeuralNet
     */
    public double randomize(double min, double max)
    {
-      return (Math.random() * (max - min)) + min;
+      return (random.nextDouble() * (max - min)) + min;
+   }
+
+   /**
+    * Seeds the random weights, so two networks seeded the same start from the same weights.
+    * @param seed the seed.
+    */
+   public void setSeed(long seed)
+   {
+      this.seed = seed;
+      random = new SplittableRandom(seed);
+   }
+
+   /**
+    * @return the seed of the random weights.
+    */
+   public long getSeed()
+   {
+      return seed;
    }
 
    /**
@@ -811,6 +956,7 @@ public class NeuralNet
     */
    public void setWeightsRandom()
    {
+      random = new SplittableRandom(seed);                // The same seed, the same weights, every run.
       for (int n = 0; n < numHiddenLayers + 1; n++)
       {
          for (int k = 0; k < verticalLayers[n]; k++)
@@ -883,37 +1029,57 @@ public class NeuralNet
    } // Calculates the Delta Weights. public void backProp(int testCase)
 
    /**
-    * Fills the activation 2d array with the calculated activations given weights and inputs.
-    * THIS VERSION Can do a 3 layer. Evaluates the network and finds omegas, thetas, and psis.
+    * Evaluates the network for the inputs already in activation[0], filling thetas and the activations of every
+    * other layer. Each layer is computed once (the original loops recomputed the hidden layers for every output
+    * node), adding the terms in the same order, so the results are the same to the last bit. Like before, node 0 of
+    * the first hidden layer is not evaluated, which keeps previously trained weights valid.
     */
-   public void fillActivations(int trainingTest)
+   private void forward()
    {
+      for (int k = 1; k < verticalLayers[1]; k++)
+      {
+         thetas[1][k] = 0.0;
+         for (int m = 0; m < verticalLayers[0]; m++)
+         {
+            thetas[1][k] += activation[0][m] * weight[0][m][k];
+         }
+         activation[1][k] = thresholdFunction(thetas[1][k]);
+      }
+
+      for (int j = 0; j < verticalLayers[2]; j++)
+      {
+         thetas[2][j] = 0.0;
+         for (int k = 1; k < verticalLayers[1]; k++)
+         {
+            thetas[2][j] += activation[1][k] * weight[1][k][j];
+         }
+         activation[2][j] = thresholdFunction(thetas[2][j]);
+      }
+
       for (int i = 0; i < verticalLayers[3]; i++)
       {
          thetas[3][i] = 0.0;
          for (int j = 0; j < verticalLayers[2]; j++)
          {
-            thetas[2][j] = 0.0;
-            for (int k = 1; k < verticalLayers[1]; k++)
-            {
-               thetas[1][k] = 0.0;
-               for (int m = 0; m < verticalLayers[0]; m++)
-               {
-                  thetas[1][k] += activation[0][m] * weight[0][m][k];
-               }
-
-               activation[1][k] = thresholdFunction(thetas[1][k]);
-               thetas[2][j] += activation[1][k] * weight[1][k][j];
-            }//for (int k = 1; k < verticalLayers[1]; k++)
-
-            activation[2][j] = thresholdFunction(thetas[2][j]);
             thetas[3][i] += activation[2][j] * weight[2][j][i];
-         } //for (int j = 0; j < verticalLayers[2]; j++)
-
+         }
          activation[3][i] = thresholdFunction(thetas[3][i]);
+      }
+   } // private void forward()
+
+   /**
+    * Fills the activation 2d array with the calculated activations given weights and inputs.
+    * THIS VERSION Can do a 3 layer. Evaluates the network and finds omegas, thetas, and psis.
+    */
+   public void fillActivations(int trainingTest)
+   {
+      forward();
+
+      for (int i = 0; i < verticalLayers[3]; i++)
+      {
          omegas[i] = expected[trainingTest][i] - activation[3][i];
          psis[i] = omegas[i] * derivativeThreshold(thetas[3][i]);
-      } //for (int i = 0; i < verticalLayers[3]; i++)
+      }
 
       /*
       for (int alpha = 1; alpha < totalLayers; alpha++)
@@ -937,6 +1103,129 @@ public class NeuralNet
       */
    }//Fills the Activations. public void fillActivations(int trainingTest)
 
+   /**
+    * Runs the network on one input vector, e.g. one filled by DibDump.decodeToInputs, and copies the output
+    * activations into output. Nothing is allocated, so the same arrays can be reused for every image.
+    *
+    * @param input  the input activations. Must hold the number of input nodes.
+    * @param output receives the output activations. Must hold the number of output nodes.
+    */
+   public void predict(double[] input, double[] output)
+   {
+      if (input.length != numInputNodes || output.length != numOutputNodes)
+      {
+         throw new IllegalArgumentException("Expected " + numInputNodes + " inputs and " + numOutputNodes +
+            " outputs but got " + input.length + " and " + output.length);
+      }
+
+      System.arraycopy(input, 0, activation[0], 0, numInputNodes);
+      forward();
+      System.arraycopy(activation[totalLayers - 1], 0, output, 0, numOutputNodes);
+   } // public void predict(double[] input, double[] output)
+
+   /**
+    * Runs the network on a batch of input vectors, one after the other, so a caller holding the network for a batch
+    * does not have to take it once per image.
+    *
+    * @param inputs  the input activations of each image.
+    * @param outputs receives the output activations of each image.
+    * @param count   the number of images in the batch, from index 0.
+    */
+   public void predict(double[][] inputs, double[][] outputs, int count)
+   {
+      for (int b = 0; b < count; b++)
+      {
+         predict(inputs[b], outputs[b]);
+      }
+   }
+
+   /**
+    * Loads a trained network for inference. Only the topology line at the top of the config file is read, so the
+    * training sets it names need not exist. If the weights file starts with a resample line, the network has the
+    * resampler's target size of input nodes and resamples raw images of the config's input size.
+    *
+    * @param config      the config file the network was trained with.
+    * @param weightsFile the trained weights, as written by testGradientDescent().
+    * @return the network.
+    */
+   public static NeuralNet loadModel(String config, String weightsFile)
+   {
+      try
+      {
+         Scanner in = new Scanner(new File(config));
+         int numInputNodes = in.nextInt();
+         int[] hiddenLayer = new int[in.nextInt()];
+         for (int i = 0; i < hiddenLayer.length; i++)
+         {
+            hiddenLayer[i] = in.nextInt();
+         }
+         int numOutputNodes = in.nextInt();
+         in.close();
+
+         Scanner weights = new Scanner(new File(weightsFile));
+         if (weights.hasNext(SEED_KEYWORD))
+         {
+            weights.nextLine();
+         }
+         if (weights.hasNext(Resampler.KEYWORD))
+         {
+            weights.next();
+            numInputNodes = Resampler.read(weights).getTargetSize();
+         }
+         weights.close();
+
+         NeuralNet net = new NeuralNet(new Dataset(numInputNodes, hiddenLayer, numOutputNodes,
+            new double[1][numInputNodes], new double[1][numOutputNodes]));
+         net.setFileWeights(weightsFile);
+         return net;
+      } // Reads the topology and the weights. try{
+      catch (FileNotFoundException e)
+      {
+         throw new RuntimeException(e);
+      }
+   } // public static NeuralNet loadModel(String config, String weightsFile)
+
+   /**
+    * @return the number of input nodes.
+    */
+   public int getNumInputNodes()
+   {
+      return numInputNodes;
+   }
+
+   /**
+    * @return the number of output nodes.
+    */
+   public int getNumOutputNodes()
+   {
+      return numOutputNodes;
+   }
+
+   /**
+    * @return the resampler raw images go through before the input layer, or null if they are used as they are.
+    */
+   public Resampler getResampler()
+   {
+      return resampler;
+   }
+
+   /**
+    * @return the iterations the last trainNeural trained.
+    */
+   public int getIterations()
+   {
+      return iterations;
+   }
+
+   /**
+    * @return the error of the last iteration of the last trainNeural, the one compared with the error threshold, or
+    *         NaN if the network has not been trained.
+    */
+   public double getFinalError()
+   {
+      return finalError;
+   }
+
    /**
     * Calculates the error of the given training test. 1/2 * (T-F)^2.
     * @param trainingTest the test case being tested.
@@ -975,7 +1264,8 @@ public class NeuralNet
    /**
     * Trains the 3 plus layer A-B-C neural network by running train Weights until lambda reaches min lambda, the error
     * threshold is reached, or the max iterations is reached. Adaptive Learning has been taken out. Trains by using
-    * each test case and calculating delta weights for each.
+    * each test case and calculating delta weights for each. Progress goes to the training listeners (see
+    * addTrainingListener); nothing is printed.
     */
    public void trainNeural()
    {
@@ -985,69 +1275,391 @@ public class NeuralNet
       setWeightsRandom();
       boolean finish = false;
       double prevError = Double.MAX_VALUE;
+      startMetrics();
+      try
+      {
+         while (!finish)
+         {
+            iterations++;
+            epochStarted(iterations);
+            NetworkEvents.Epoch epoch = NetworkEvents.epoch();
+            err = trainEpoch();
+            epochEnded(epoch, iterations, err);
+            finish = isFinished(iterations, err);
+
+            /*if (lambda <= minLambda)                            //For adaptive lambda, NOT YET IMPLEMENTED
+            {
+               System.out.println("DEBUG: Lambda Reached minimum");
+               finish = true;
+            }*/
+
+         } //Loop that determines when the training should stop.  while (!finish)
+      }
+      finally
+      {
+         stopMetrics();
+      }
+      this.iterations = iterations;
+      finalError = err;
+      stopRequested = false;
+   } // public void trainNeural()
+
+   /**
+    * Starts reporting to the JVM's NeuralNetMetrics, unless reporting is off.
+    */
+   private void startMetrics()
+   {
+      if (metricsEnabled)
+      {
+         metrics = NeuralNetMetrics.getInstance();
+         metrics.trainingStarted(getTopology(), numSets, maxIterations, lambda);
+      }
+   }
+
+   /**
+    * Reports a finished iteration to NeuralNetMetrics, the training listeners and, if JFR is recording, as a
+    * NetworkEvents.Epoch.
+    *
+    * @param event     the event started with the iteration.
+    * @param iteration the iteration, from 1.
+    * @param err       its error.
+    */
+   private void epochEnded(NetworkEvents.Epoch event, int iteration, double err)
+   {
+      if (metrics != null)
+      {
+         metrics.epoch(iteration, err, lambda);
+      }
+      NetworkEvents.commit(event, getTopology(), iteration, numSets, err);
+      if (!listeners.isEmpty())
+      {
+         TrainingEvent ended = trainingEvent(iteration, err, null);
+         listeners.dispatchEpoch(listener -> listener.epochEnded(ended));
+      }
+   } // private void epochEnded(NetworkEvents.Epoch event, int iteration, double err)
 
-      while (!finish)
+   /**
+    * Decides whether trainNeural stops after an iteration, telling the training listeners why it does.
+    *
+    * @param iteration the iteration just ended, from 1.
+    * @param err       its error.
+    * @return true if the iteration reached maxIterations, its error is below errorThreshold, or stop() was called.
+    */
+   private boolean isFinished(int iteration, double err)
+   {
+      boolean finish = stopRequested;
+      TrainingEvent event = listeners.isEmpty() ? null : trainingEvent(iteration, err, null);
+      if (iteration >= maxIterations)
       {
-         err = 0.0;
-         iterations++;
+         listeners.dispatch(listener -> listener.maxIterationsReached(event));
+         finish = true;
+      }
 
-         for (int test = 0; test < numSets; test++) //runs through each training test.
+      if (err < errorThreshold)
+      {
+         listeners.dispatch(listener -> listener.thresholdReached(event));
+         finish = true;
+      }
+      return finish;
+   } // private boolean isFinished(int iteration, double err)
+
+   /**
+    * @return the layer sizes, e.g. "2500-10-50-5".
+    */
+   public String getTopology()
+   {
+      if (topology == null)
+      {
+         StringBuilder layers = new StringBuilder().append(numInputNodes);
+         for (int nodes : hiddenLayer)
          {
-            for (int j = 0; j < numInputNodes; j++) //Sets inputs into activation.
-            {
-               activation[0][j] = inputSets[test][j];
-            }
-            fillActivations(test);                      //Fills with original activations.
+            layers.append('-').append(nodes);
+         }
+         topology = layers.append('-').append(numOutputNodes).toString();
+      }
+      return topology;
+   } // public String getTopology()
 
-            saveWeights = weight;
+   /**
+    * Stops reporting to NeuralNetMetrics.
+    */
+   private void stopMetrics()
+   {
+      if (metrics != null)
+      {
+         metrics.trainingStopped();
+         metrics = null;
+      }
+   }
 
-            backProp();
+   /**
+    * Turns reporting to NeuralNetMetrics on or off for the next trainNeural. The metrics describe one run at a time,
+    * so code training many networks at once turns it off for them.
+    *
+    * @param enabled false to train without reporting. On by default.
+    */
+   public void setMetricsEnabled(boolean enabled)
+   {
+      metricsEnabled = enabled;
+   }
 
-            for (int j = 0; j < numInputNodes; j++)       //Sets inputs into activation.
-            {
-               activation[0][j] = inputSets[test][j];
-            }
-            fillActivations(test);                         // Fills the activations with changed weights.
+   /**
+    * Asks trainNeural to stop after the iteration in progress, keeping the weights it has; it may be called from any
+    * thread. If the network is not training, the next trainNeural stops after its first iteration.
+    */
+   public void stop()
+   {
+      stopRequested = true;
+   }
+
+   /**
+    * Adds a listener that is told about every iteration of trainNeural and every writeWeights, on another thread.
+    *
+    * @param listener the listener, e.g. a ConsoleTrainingListener.
+    */
+   public void addTrainingListener(TrainingListener listener)
+   {
+      listeners.add(listener);
+   }
+
+   public void removeTrainingListener(TrainingListener listener)
+   {
+      listeners.remove(listener);
+   }
+
+   /**
+    * @param iteration the iterations trained so far.
+    * @param err       the error of the last iteration, or NaN.
+    * @param file      the weights file, or null.
+    * @return what the training listeners are told.
+    */
+   private TrainingEvent trainingEvent(int iteration, double err, String file)
+   {
+      return new TrainingEvent(getTopology(), iteration, maxIterations, err, errorThreshold, lambda, file);
+   }
+
+   /**
+    * Tells the training listeners that an iteration is starting.
+    *
+    * @param iteration the iteration, from 1.
+    */
+   private void epochStarted(int iteration)
+   {
+      if (!listeners.isEmpty())
+      {
+         TrainingEvent event = trainingEvent(iteration, Double.NaN, null);
+         listeners.dispatchEpoch(listener -> listener.epochStarted(event));
+      }
+   }
+
+   /**
+    * Trains on every training set once, in order. This is one iteration of trainNeural, without the printing.
+    *
+    * @return the error of the iteration, the running average trainNeural compares with the error threshold.
+    */
+   public double trainEpoch()
+   {
+      double err = 0.0;
+      for (int test = 0; test < numSets; test++) //runs through each training test.
+      {
+         err += trainSet(inputSets[test], test);        //Calculates total Error.
+         err /= numSets;
+
+         /*
+         if (prevError > err)
+         {
+            lambda *= 2.0;
+            prevError = err;
+         }
+         else if (prevError < err)
+         {
+            lambda /= 1.5;
+            weight = saveWeights;
+            fillActivations(test);
+         }*/
+      } // Loop that iterates through each test case.  for (int test = 0; test < numSets; test++)
+      return err;
+   } // public double trainEpoch()
+
+   /**
+    * Evaluates the network on one training set without training.
+    *
+    * @param test the training set.
+    * @return the error of the training set, 1/2 * (T-F)^2 summed over the outputs.
+    */
+   public double testSet(int test)
+   {
+      for (int j = 0; j < numInputNodes; j++)
+      {
+         activation[0][j] = inputSets[test][j];
+      }
+      fillActivations(test);
+      return calculateError(test);
+   }
+
+   /**
+    * Trains on one training set: evaluates the network, runs back propagation, and evaluates it again with the
+    * changed weights.
+    *
+    * @param input the input activations, either inputSets[test] or a variant of it.
+    * @param test  the training set, which selects the expected outputs.
+    * @return the error of the training set after the weights changed.
+    */
+   private double trainSet(double[] input, int test)
+   {
+      boolean sampled = ++phaseCount % NeuralNetMetrics.PHASE_SAMPLE == 0;
+      boolean timed = sampled && metrics != null;
+      NetworkEvents.Forward forwardEvent = sampled ? NetworkEvents.forward() : null;
+      long start = timed ? System.nanoTime() : 0L;
+
+      for (int j = 0; j < numInputNodes; j++) //Sets inputs into activation.
+      {
+         activation[0][j] = input[j];
+      }
+      fillActivations(test);                      //Fills with original activations.
+      long forward = timed ? System.nanoTime() : 0L;
+      NetworkEvents.BackProp backPropEvent = null;
+      if (sampled)
+      {
+         NetworkEvents.commit(forwardEvent, getTopology(), test);
+         backPropEvent = NetworkEvents.backProp();
+      }
+
+      saveWeights = weight;
+
+      backProp();
+      long backward = timed ? System.nanoTime() : 0L;
+      if (sampled)
+      {
+         NetworkEvents.commit(backPropEvent, getTopology(), test);
+      }
+
+      for (int j = 0; j < numInputNodes; j++)       //Sets inputs into activation.
+      {
+         activation[0][j] = input[j];
+      }
+      fillActivations(test);                         // Fills the activations with changed weights.
+
+      double error = calculateError(test);
+      if (timed)
+      {
+         metrics.phases(forward - start, backward - forward, System.nanoTime() - backward);
+      }
+      return error;
+   } // private double trainSet(double[] input, int test)
+
+   /**
+    * Trains like trainNeural() but on augmented variants of the training sets made on the pipeline's worker threads
+    * while the network trains. Each iteration takes as many samples from the pipeline as there are training sets, so
+    * the network never sees the same image twice. The pipeline is started here and closed when training stops. Like
+    * trainNeural(), this prints nothing; feed.printReport() shows how much the trainer waited for augmentation.
+    *
+    * @param feed the augmentation pipeline. Must augment this network's dataset.
+    */
+   public void trainNeural(AugmentationPipeline feed)
+   {
+      int iterations = 0;
+      lambda = startingLambda;
+      double err = 0.0;
+      setWeightsRandom();
+      boolean finish = false;
 
-            err += calculateError(test);                   //Calculates total Error.
-            err /= numSets;
+      feed.start();
+      startMetrics();
+      try
+      {
+         while (!finish)
+         {
+            err = 0.0;
+            iterations++;
+            epochStarted(iterations);
+            NetworkEvents.Epoch epoch = NetworkEvents.epoch();
 
-            /*
-            if (prevError > err)
+            for (int test = 0; test < numSets; test++)
             {
-               lambda *= 2.0;
-               prevError = err;
+               AugmentationPipeline.Sample sample = feed.take();
+               err += trainSet(sample.getInputs(), sample.getSet());
+               err /= numSets;
+               feed.release(sample);
             }
-            else if (prevError < err)
-            {
-               lambda /= 1.5;
-               weight = saveWeights;
-               fillActivations(test);
-            }*/
-         } // Loop that iterates through each test case.  for (int test = 0; test < numSets; test++)
-         System.out.println("Iteration: " + iterations + " Total Error: " + err);
+            epochEnded(epoch, iterations, err);
+            finish = isFinished(iterations, err);
+         } //Loop that determines when the training should stop.  while (!finish)
+      }
+      finally
+      {
+         feed.close();
+         stopMetrics();
+      }
+
+      this.iterations = iterations;
+      finalError = err;
+      stopRequested = false;
+   } // public void trainNeural(AugmentationPipeline feed)
+
+   /**
+    * Trains like trainNeural() on a dataset that a TrainingPipeline is still loading. The first iteration trains on
+    * each batch as soon as it arrives, so training overlaps reading and decoding the later images; once every batch
+    * has arrived the dataset is complete and later iterations run over it as usual. The pipeline is started here and
+    * closed when the first iteration ends. Like trainNeural(), this prints nothing; feed.printReport() shows which
+    * stage limited the first iteration.
+    *
+    * @param feed the pipeline. Must be loading this network's dataset, i.e. the network was made from
+    *             feed.getDataset().
+    */
+   public void trainNeural(TrainingPipeline feed)
+   {
+      int iterations = 1;
+      lambda = startingLambda;
+      double err = 0.0;
+      setWeightsRandom();
 
-         if (iterations >= maxIterations)
+      feed.start();
+      startMetrics();
+      try
+      {
+         epochStarted(iterations);
+         NetworkEvents.Epoch firstEpoch = NetworkEvents.epoch();
+         try
          {
-            System.out.println("DEBUG: Max Iterations Reached");
-            finish = true;
+            for (int b = 0; b < feed.getNumBatches(); b++)
+            {
+               int[] batch = feed.takeBatch();
+               long start = System.nanoTime();
+               for (int test : batch)
+               {
+                  err += trainSet(inputSets[test], test);
+                  err /= numSets;
+               }
+               feed.trained(start, batch.length);
+            }
          }
-
-         if (err < errorThreshold)
+         finally
          {
-            System.out.println("DEBUG: Error Threshold Reached" + err);
-            finish = true;
+            feed.close();
          }
+         epochEnded(firstEpoch, iterations, err);
 
-         /*if (lambda <= minLambda)                            //For adaptive lambda, NOT YET IMPLEMENTED
-         {
-            System.out.println("DEBUG: Lambda Reached minimum");
-            finish = true;
-         }*/
+         boolean finish = isFinished(iterations, err);
 
-      } //Loop that determines when the training should stop.  while (!finish)
+         while (!finish)
+         {
+            iterations++;
+            epochStarted(iterations);
+            NetworkEvents.Epoch epoch = NetworkEvents.epoch();
+            err = trainEpoch();
+            epochEnded(epoch, iterations, err);
+            finish = isFinished(iterations, err);
+         } //Loop that determines when the training should stop.  while (!finish)
+      }
+      finally
+      {
+         stopMetrics();
+      }
       this.iterations = iterations;
-   } // public void trainNeural()
+      finalError = err;
+      stopRequested = false;
+   } // public void trainNeural(TrainingPipeline feed)
 
 
 
@@ -1238,7 +1850,10 @@ public class NeuralNet
 
       System.out.println("\nOutput: ");
 
+      TrainingListener console = new ConsoleTrainingListener();
+      addTrainingListener(console);
       trainNeural(); //Trains the network
+      listeners.flush();                  // So the iterations are printed before the results.
 
       System.out.print("\nTesting a ");
       for (int n = 0; n < totalLayers; n++)
@@ -1260,27 +1875,16 @@ public class NeuralNet
       System.out.println("Min Weight: " + minWeight);
       System.out.println("Max iterations: " + maxIterations);
 
-      String trainedW = "";
-      for (int n = 0; n < numHiddenLayers + 1; n++)
-      {
-         for (int k = 0; k < verticalLayers[n]; k++)
-         {
-            for (int j = 0; j < verticalLayers[n+1]; j++)
-            {
-               trainedW += weight[n][k][j] + " ";
-            }
-         }
-      }
       try
       {
-         FileWriter trainedWeights = new FileWriter("trainedWeights.txt");
-         trainedWeights.write(trainedW);
-         System.out.println("Weights saved.");
+         writeWeights("trainedWeights.txt");
       }
       catch (Exception e)
       {
          System.err.println("File output error " + e);
       }
+      listeners.flush();
+      removeTrainingListener(console);
 
       double error = 0.0;
 
@@ -1324,15 +1928,7 @@ public class NeuralNet
       {
          Scanner conf = new Scanner(new File(user.next()));
          String bmpFileName = conf.next();
-         String pelFileName = conf.next();
-         try
-         {
-            dip.bmpToPelFile(bmpFileName, pelFileName);
-         }
-         catch (Exception e)
-         {
-            System.err.println("File IO error " + e);
-         }
+         conf.next();                                     // The pel file name. The bitmap is decoded in memory.
 
          numSets = conf.nextInt();
 
@@ -1341,19 +1937,20 @@ public class NeuralNet
 
          try
          {
-            Scanner inputss = new Scanner(new File(pelFileName));
-            for (int t = 0; t < numSets; t++)
+            if (resampler == null)
             {
-               for (int k = 0; k < numInputNodes; k++)
-               {
-                  inputSets[t][k] = inputss.nextDouble();
-               }
+               dip.decodeToInputs(bmpFileName, inputSets[0]);
+            }
+            else
+            {
+               double[] pels = new double[resampler.getSourceSize()];
+               dip.decodeToInputs(bmpFileName, pels);
+               resampler.resample(pels, inputSets[0]);
             }
-            inputss.close();
          }
-         catch (FileNotFoundException e)
+         catch (IOException e)
          {
-            throw new RuntimeException(e);
+            throw new RuntimeException(e);                // Do not predict on the blank inputs.
          }
 
          for (int t = 0; t < numSets; t++)
@@ -1375,10 +1972,11 @@ public class NeuralNet
       //printWeights();
 
       System.out.println("\nOutput: ");
-      fillActivations(0);
+      double[] output = new double[numOutputNodes];
+      predict(inputSets[0], output);
       for (int i = 0; i < numOutputNodes; i++)
       {
-         System.out.println(activation[totalLayers - 1][i] + " ");
+         System.out.println(output[i] + " ");
       }
    } //public void testNetwork()
 
@@ -1397,17 +1995,17 @@ public class NeuralNet
       */
 
 
-      DibDump dib = new DibDump();
-      dib.bmpToPelFile("FingerFiles/one.bmp", "DibDumpInputs/DibDump0.txt");
-      dib.bmpToPelFile("FingerFiles/one_diagonal.bmp", "DibDumpInputs/DibDump1.txt");
-      dib.bmpToPelFile("FingerFiles/two.bmp", "DibDumpInputs/DibDump2.txt");
-      dib.bmpToPelFile("FingerFiles/two_diagonal.bmp", "DibDumpInputs/DibDump3.txt");
-      dib.bmpToPelFile("FingerFiles/three.bmp", "DibDumpInputs/DibDump4.txt");
-      dib.bmpToPelFile("FingerFiles/four.bmp", "DibDumpInputs/DibDump5.txt");
-      dib.bmpToPelFile("FingerFiles/five.bmp", "DibDumpInputs/DibDump6.txt");
-      dib.bmpToPelFile("FingerFiles/three_diagonal.bmp", "DibDumpInputs/DibDump7.txt");
-      dib.bmpToPelFile("FingerFiles/four_diagonal.bmp", "DibDumpInputs/DibDump8.txt");
-      dib.bmpToPelFile("FingerFiles/five_diagonal.bmp", "DibDumpInputs/DibDump9.txt");
+      String[] fingers = {"one", "one_diagonal", "two", "two_diagonal", "three", "four", "five", "three_diagonal",
+         "four_diagonal", "five_diagonal"};
+      String[] bmpFiles = new String[fingers.length];
+      String[] pelFiles = new String[fingers.length];
+      for (int i = 0; i < fingers.length; i++)
+      {
+         bmpFiles[i] = "FingerFiles/" + fingers[i] + ".bmp";
+         pelFiles[i] = "DibDumpInputs/DibDump" + i + ".txt";
+      }
+      DibDumpBatch batch = new DibDumpBatch();
+      batch.printReport(batch.convert(bmpFiles, pelFiles));
       NeuralNet neuro = new NeuralNet("config");
       neuro.testGradientDescent();
       neuro.testNetwork();
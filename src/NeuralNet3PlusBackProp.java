@@ -3,6 +3,8 @@ import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class NeuralNet3PlusBackProp
 {
@@ -157,6 +159,23 @@ public class NeuralNet3PlusBackProp
       private double[] layer2;
       private double[][][] saveWeights;
 
+      /**
+       * Whether setWeightsRandom prints every weight. Off for networks made from a Dataset.
+       */
+      private boolean verbose = true;
+
+      /**
+       * The seed of the random weights: drawn when the network is made unless setSeed is called. Every setWeightsRandom
+       * starts over from it, so the same seed always gives the same weights.
+       */
+      private long seed = ThreadLocalRandom.current().nextLong();
+
+      /**
+       * The source of the random weights, rebuilt from seed by setWeightsRandom. A SplittableRandom of its own, so
+       * networks trained on different threads share no state.
+       */
+      private SplittableRandom random = new SplittableRandom(seed);
+
       /**
        * Constructor for the neural network. Assigns number of Inputs.txt, number of nodes in each hidden layer, number of
        * layers in the network, size of the arrays, and sets the default weights.
@@ -285,6 +304,69 @@ public class NeuralNet3PlusBackProp
          setWeightsDefault();
       } // Constructor public NeuralNet(String FileName)
 
+      /**
+       * Constructor for the neural network. Takes the topology and training sets from an already loaded Dataset
+       * instead of asking for them. The input and expected arrays are shared with the Dataset, not copied. Does not
+       * print anything.
+       *
+       * @param data the training sets.
+       */
+      public NeuralNet3PlusBackProp(Dataset data)
+      {
+         gradient = true;
+         testingAll = false;
+         verbose = false;
+
+         numInputNodes = data.getNumInputNodes();
+         hiddenLayer = data.getHiddenLayer();
+         numHiddenLayers = hiddenLayer.length;
+         numOutputNodes = data.getNumOutputNodes();
+         numSets = data.getNumSets();
+         inputSets = data.getInputSets();
+         expected = data.getExpected();
+
+         totalLayers = numHiddenLayers + 2;
+
+         int maxActivations = 0;                      // This stores the largest number of nodes in a vertical layer.
+         for (int i = 0; i < numHiddenLayers; i++)
+         {
+            maxActivations = Math.max(maxActivations, hiddenLayer[i]);
+         }
+         maxActivations = Math.max(maxActivations, numInputNodes);
+         maxActivations = Math.max(maxActivations, numOutputNodes);
+         this.maxActivations = maxActivations;
+
+         activation = new double[totalLayers][maxActivations];
+         thetas = new double[totalLayers][maxActivations];
+
+         weight = new double[numHiddenLayers + 1][maxActivations][maxActivations];
+         saveWeights = new double[numHiddenLayers + 1][maxActivations][maxActivations];
+
+         for (int j = 0; j < numInputNodes; j++)
+         {
+            activation[0][j] = inputSets[0][j];
+         }
+
+         delta = new double[totalLayers - 1][maxActivations][maxActivations];
+         trainingErrors = new double[numSets];
+
+         verticalLayers = new int[totalLayers];       //Number of nodes in each layer
+         verticalLayers[0] = numInputNodes;
+         verticalLayers[numHiddenLayers + 1] = numOutputNodes;
+
+         for (int j = 1; j < numHiddenLayers + 1; j++)
+         {
+            verticalLayers[j] = hiddenLayer[j - 1];
+         }
+
+         omegas = new double[maxActivations];
+         psis = new double[maxActivations];
+         psis2 = new double[maxActivations];
+         layer2 = new double[maxActivations];
+
+         setWeightsDefault();
+      } // Constructor public NeuralNet3PlusBackProp(Dataset data)
+
 
       /**
        * Sets the gradient parameters to the default values. Does not include adaptive learning.
@@ -598,7 +680,25 @@ public class NeuralNet3PlusBackProp
        */
       public double randomize(double min, double max)
       {
-         return (Math.random() * (max - min)) + min;
+         return (random.nextDouble() * (max - min)) + min;
+      }
+
+      /**
+       * Seeds the random weights, so two networks seeded the same start from the same weights.
+       * @param seed the seed.
+       */
+      public void setSeed(long seed)
+      {
+         this.seed = seed;
+         random = new SplittableRandom(seed);
+      }
+
+      /**
+       * @return the seed of the random weights.
+       */
+      public long getSeed()
+      {
+         return seed;
       }
 
       /**
@@ -606,6 +706,7 @@ public class NeuralNet3PlusBackProp
        */
       public void setWeightsRandom()
       {
+         random = new SplittableRandom(seed);
          for (int n = 0; n < numHiddenLayers + 1; n++)
          {
             for (int k = 0; k < verticalLayers[n]; k++)
@@ -613,7 +714,10 @@ public class NeuralNet3PlusBackProp
                for (int j = 0; j < verticalLayers[n + 1]; j++)
                {
                   weight[n][k][j] = randomize(minWeight, maxWeight);
-                  System.out.println("DEBUG: Weight w" + n + k + j + " set to " + weight[n][k][j] + ".\n");
+                  if (verbose)
+                  {
+                     System.out.println("DEBUG: Weight w" + n + k + j + " set to " + weight[n][k][j] + ".\n");
+                  }
                }
             }
          }
@@ -784,28 +888,8 @@ public class NeuralNet3PlusBackProp
 
          while (!finish)
          {
-            err = 0.0;
             iterations++;
-
-            for (int test = 0; test < numSets; test++) //runs through each training test.
-            {
-               for (int j = 0; j < numInputNodes; j++) //Sets inputs into activation.
-               {
-                  activation[0][j] = inputSets[test][j];
-               }
-               fillActivations(test);                      //Fills with original activations.
-
-               backProp();
-
-               for (int j = 0; j < numInputNodes; j++)       //Sets inputs into activation.
-               {
-                  activation[0][j] = inputSets[test][j];
-               }
-               fillActivations(test);                         // Fills the activations with changed weights.
-
-               err += calculateError(test);                   //Calculates total Error.
-               err /= numSets;
-            } // Loop that iterates through each test case.  for (int test = 0; test < numSets; test++)
+            err = trainEpoch();
             System.out.println("Total Error: " + err);
 
             if (iterations >= maxIterations)
@@ -830,6 +914,52 @@ public class NeuralNet3PlusBackProp
          this.iterations = iterations;
       } // public void trainNeural()
 
+      /**
+       * Trains on every training set once, in order. This is one iteration of trainNeural, without the printing.
+       *
+       * @return the error of the iteration, the running average trainNeural compares with the error threshold.
+       */
+      public double trainEpoch()
+      {
+         double err = 0.0;
+         for (int test = 0; test < numSets; test++) //runs through each training test.
+         {
+            for (int j = 0; j < numInputNodes; j++) //Sets inputs into activation.
+            {
+               activation[0][j] = inputSets[test][j];
+            }
+            fillActivations(test);                      //Fills with original activations.
+
+            backProp();
+
+            for (int j = 0; j < numInputNodes; j++)       //Sets inputs into activation.
+            {
+               activation[0][j] = inputSets[test][j];
+            }
+            fillActivations(test);                         // Fills the activations with changed weights.
+
+            err += calculateError(test);                   //Calculates total Error.
+            err /= numSets;
+         } // Loop that iterates through each test case.  for (int test = 0; test < numSets; test++)
+         return err;
+      } // public double trainEpoch()
+
+      /**
+       * Evaluates the network on one training set without training.
+       *
+       * @param test the training set.
+       * @return the error of the training set, 1/2 * (T-F)^2 summed over the outputs.
+       */
+      public double testSet(int test)
+      {
+         for (int j = 0; j < numInputNodes; j++)
+         {
+            activation[0][j] = inputSets[test][j];
+         }
+         fillActivations(test);
+         return calculateError(test);
+      }
+
 
 
       /**
@@ -1,5 +1,6 @@
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.io.*;
 
 /**
@@ -151,6 +152,22 @@ public class NeuralNetGradient
     */
    private double multiplier;
 
+   /**
+    * Whether setWeightsRandom prints every weight. Off for networks made from a Dataset.
+    */
+   private boolean verbose = true;
+
+   /**
+    * The seed of the random weights: drawn when the network is made unless setSeed is called. Every setWeightsRandom
+    * starts over from it, so the same seed always gives the same weights.
+    */
+   private long seed = ThreadLocalRandom.current().nextLong();
+
+   /**
+    * The source of the random weights, rebuilt from seed by setWeightsRandom. A SplittableRandom of its own, so
+    * networks trained on different threads share no state.
+    */
+   private SplittableRandom random = new SplittableRandom(seed);
 
    /**
     * Constructor for the neural network. Assigns number of Inputs.txt, number of nodes in each hidden layer, number of
@@ -195,6 +212,52 @@ public class NeuralNetGradient
       setWeightsDefault();
    }
 
+   /**
+    * Constructor for the neural network. Takes the topology and training sets from an already loaded Dataset instead
+    * of asking for them. The input and expected arrays are shared with the Dataset, not copied. Does not print
+    * anything.
+    *
+    * @param data the training sets. Must have one hidden layer and one output.
+    */
+   public NeuralNetGradient(Dataset data)
+   {
+      gradient = true;
+      verbose = false;
+
+      numInputNodes = data.getNumInputNodes();
+      hiddenLayer = data.getHiddenLayer();
+      numHiddenLayers = hiddenLayer.length;
+      numOutputNodes = data.getNumOutputNodes();
+      numSets = data.getNumSets();
+      inputSets = data.getInputSets();
+      expected = data.getExpected();
+      totalLayers = numHiddenLayers + 2;
+
+      int maxActivations = 0;                      // This stores the largest number of nodes in a vertical layer.
+      for (int i = 0; i < numHiddenLayers; i++)
+      {
+         maxActivations = Math.max(maxActivations, hiddenLayer[i]);
+      }
+      maxActivations = Math.max(maxActivations, numInputNodes);
+      maxActivations = Math.max(maxActivations, numOutputNodes);
+      this.maxActivations = maxActivations;
+
+      activation = new double[totalLayers][maxActivations];
+      weight = new double[numHiddenLayers + 1][maxActivations][maxActivations];
+      activation[0] = inputSets[0];
+      delta = new double[totalLayers - 1][maxActivations][maxActivations];
+      trainingErrors = new double[numSets];
+
+      verticalLayers = new int[totalLayers];       //Number of nodes in each layer
+      verticalLayers[0] = numInputNodes;
+      verticalLayers[numHiddenLayers + 1] = numOutputNodes;
+      for (int j = 1; j < numHiddenLayers + 1; j++)
+      {
+         verticalLayers[j] = hiddenLayer[j - 1];
+      }
+      setWeightsDefault();
+   }
+
    /**
     * Sets the gradient parameters to the default values. Does not include adaptive learning.
     */
@@ -445,7 +508,25 @@ public class NeuralNetGradient
     */
    public double randomize(double min, double max)
    {
-      return (Math.random() * (max - min)) + min;
+      return (random.nextDouble() * (max - min)) + min;
+   }
+
+   /**
+    * Seeds the random weights, so two networks seeded the same start from the same weights.
+    * @param seed the seed.
+    */
+   public void setSeed(long seed)
+   {
+      this.seed = seed;
+      random = new SplittableRandom(seed);
+   }
+
+   /**
+    * @return the seed of the random weights.
+    */
+   public long getSeed()
+   {
+      return seed;
    }
 
    /**
@@ -453,6 +534,7 @@ public class NeuralNetGradient
     */
    public void setWeightsRandom()
    {
+      random = new SplittableRandom(seed);
       for (int n = 0; n < numHiddenLayers + 1; n++)
       {
          for (int k = 0; k < verticalLayers[n]; k++)
@@ -460,7 +542,10 @@ public class NeuralNetGradient
             for (int j = 0; j < verticalLayers[n + 1]; j++)
             {
                weight[n][k][j] = randomize(minWeight, maxWeight);
-               System.out.println("DEBUG: Weight w" + n + k + j + " set to " + weight[n][k][j] + ".\n");
+               if (verbose)
+               {
+                  System.out.println("DEBUG: Weight w" + n + k + j + " set to " + weight[n][k][j] + ".\n");
+               }
             }
          }
       }
@@ -620,10 +705,7 @@ public class NeuralNetGradient
 
          for (int test = 0; test < numSets; test++) //runs through each training test.
          {
-            activation[0] = inputSets[test];        //Sets inputs into activation.
-            fillActivations();                      //Fills with original activations.
-
-            deltaWeights(test);                     //Calculates the delta weights.
+            err += trainSet(test);                   //Calculates total Error.
 
             System.out.println("DEBUG: ");
             for (int n = 0; n < numHiddenLayers + 1; n++)
@@ -637,12 +719,6 @@ public class NeuralNetGradient
                }
             }
 
-            trainWeights();                          //Adds delta weights to weights.
-            activation[0] = inputSets[test];
-            fillActivations();                       // Fills the activations with changed weights.
-
-            err += calculateError(test);             //Calculates total Error.
-
             System.out.println("DEBUG: ");
             printActivations();
             printWeights();
@@ -675,6 +751,55 @@ public class NeuralNetGradient
       this.iterations = iterations;
    }
 
+   /**
+    * Trains on one training set: evaluates the network, calculates and adds the delta weights, and evaluates it again
+    * with the changed weights.
+    *
+    * @param test the training set.
+    * @return the error of the training set after the weights changed.
+    */
+   private double trainSet(int test)
+   {
+      activation[0] = inputSets[test];        //Sets inputs into activation.
+      fillActivations();                      //Fills with original activations.
+
+      deltaWeights(test);                     //Calculates the delta weights.
+
+      trainWeights();                          //Adds delta weights to weights.
+      activation[0] = inputSets[test];
+      fillActivations();                       // Fills the activations with changed weights.
+
+      return calculateError(test);
+   }
+
+   /**
+    * Trains on every training set once, in order. This is one iteration of trainNeural, without the printing.
+    *
+    * @return the error of the iteration, summed over the training sets as trainNeural compares it.
+    */
+   public double trainEpoch()
+   {
+      double err = 0.0;
+      for (int test = 0; test < numSets; test++)
+      {
+         err += trainSet(test);
+      }
+      return err;
+   }
+
+   /**
+    * Evaluates the network on one training set without training.
+    *
+    * @param test the training set.
+    * @return the error of the training set, 1/2 * (T-F)^2 summed over the outputs.
+    */
+   public double testSet(int test)
+   {
+      activation[0] = inputSets[test];
+      fillActivations();
+      return calculateError(test);
+   }
+
 
 
    /**
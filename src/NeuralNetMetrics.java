@@ -0,0 +1,329 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live training and inference metrics, published as the MBean NeuralNet:type=Metrics so a long training run or an
+ * inference service can be watched in JConsole or VisualVM instead of through its output. There is one instance per
+ * JVM, registered with the platform MBean server the first time getInstance() is called.
+ *
+ * NeuralNet.trainNeural reports every iteration (its error, lambda and rates) and the time of each phase of training
+ * one set: the forward pass, back propagation (which also applies the weight changes), and the evaluation with the
+ * changed weights. Timing every set would cost more than the smallest networks take to train one, so only one set in
+ * PHASE_SAMPLE is timed. HotFolderInference and InferenceServer report every prediction and its latency, which goes
+ * into a histogram with fixed buckets and a LatencyRecorder for the percentiles. ModelHolder reports every network it
+ * publishes and every replaced one it lets go.
+ *
+ * The training attributes belong to the run that reported last, so with several networks training at once they jump
+ * between them; Training and ActiveRuns count every run until it stops. Runners that train many networks at once,
+ * such as HyperparameterSweep and RandomRestarts, turn reporting off for their networks (see
+ * NeuralNet.setMetricsEnabled). Writers are the training and inference threads, readers the JMX threads; every field
+ * is volatile or atomic.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class NeuralNetMetrics implements NeuralNetMetricsMBean
+{
+   /**
+    * The name the metrics are registered under.
+    */
+   public static final String NAME = "NeuralNet:type=Metrics";
+
+   /**
+    * One training set in this many has its phases timed.
+    */
+   public static final int PHASE_SAMPLE = 64;
+
+   /**
+    * The weight of the latest iteration in the smoothed rates.
+    */
+   private static final double SMOOTHING = 0.1;
+
+   /**
+    * Upper bounds of the latency histogram's buckets, in milliseconds. The last bucket holds everything slower.
+    */
+   private static final double[] BUCKETS_MILLIS = {0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0, 25.0, 50.0, 100.0, 250.0,
+      500.0, 1000.0};
+
+   private static NeuralNetMetrics instance;
+
+   private AtomicInteger activeRuns = new AtomicInteger();
+   private volatile String topology = "";
+   private volatile int iteration;
+   private volatile int maxIterations;
+   private volatile double error;
+   private volatile double lambda;
+   private volatile int numSets;
+   private volatile long trainingStart;
+   private volatile long trainingEnd;
+   private volatile long lastEpoch;
+   private volatile double epochsPerSecond;
+
+   private volatile double forwardNanos;
+   private volatile double backPropNanos;
+   private volatile double reevaluateNanos;
+
+   private AtomicLongArray histogram = new AtomicLongArray(BUCKETS_MILLIS.length + 1);
+   private volatile LatencyRecorder latency = new LatencyRecorder();
+
+   private volatile int modelVersion;
+   private AtomicInteger retiredModels = new AtomicInteger();
+
+   /**
+    * @return the metrics of this JVM, registered as NAME.
+    */
+   public static synchronized NeuralNetMetrics getInstance()
+   {
+      if (instance == null)
+      {
+         instance = new NeuralNetMetrics();
+         try
+         {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(instance, new ObjectName(NAME));
+         }
+         catch (JMException e)
+         {
+            System.err.println("Could not register " + NAME + ": " + e);
+         }
+      }
+      return instance;
+   } // public static synchronized NeuralNetMetrics getInstance()
+
+   /**
+    * Reports that a network started training.
+    *
+    * @param topology      the layer sizes, e.g. "2500-10-50-5".
+    * @param numSets       the number of training sets in an iteration.
+    * @param maxIterations the most iterations the run will train.
+    * @param lambda        the learning factor.
+    */
+   public void trainingStarted(String topology, int numSets, int maxIterations, double lambda)
+   {
+      this.topology = topology;
+      this.numSets = numSets;
+      this.maxIterations = maxIterations;
+      this.lambda = lambda;
+      iteration = 0;
+      error = Double.NaN;
+      epochsPerSecond = 0.0;
+      forwardNanos = 0.0;
+      backPropNanos = 0.0;
+      reevaluateNanos = 0.0;
+      trainingStart = System.nanoTime();
+      lastEpoch = trainingStart;
+      activeRuns.incrementAndGet();
+   } // public void trainingStarted(String topology, int numSets, int maxIterations, double lambda)
+
+   /**
+    * Reports a finished iteration.
+    *
+    * @param iteration the iteration, from 1.
+    * @param error     its error.
+    * @param lambda    the learning factor it trained with.
+    */
+   public void epoch(int iteration, double error, double lambda)
+   {
+      long now = System.nanoTime();
+      double rate = 1e9 / Math.max(1L, now - lastEpoch);
+      epochsPerSecond = epochsPerSecond == 0.0 ? rate : epochsPerSecond + SMOOTHING * (rate - epochsPerSecond);
+      lastEpoch = now;
+      this.iteration = iteration;
+      this.error = error;
+      this.lambda = lambda;
+   }
+
+   /**
+    * Reports the phases of one sampled training set.
+    *
+    * @param forward    the forward pass, in nanoseconds.
+    * @param backProp   back propagation, including the weight changes.
+    * @param reevaluate the forward pass with the changed weights and the error.
+    */
+   public void phases(long forward, long backProp, long reevaluate)
+   {
+      forwardNanos = smooth(forwardNanos, forward);
+      backPropNanos = smooth(backPropNanos, backProp);
+      reevaluateNanos = smooth(reevaluateNanos, reevaluate);
+   }
+
+   private static double smooth(double average, long sample)
+   {
+      return average == 0.0 ? sample : average + SMOOTHING * (sample - average);
+   }
+
+   /**
+    * Reports that a training run ended. Training stays true until every run that started has stopped.
+    */
+   public void trainingStopped()
+   {
+      trainingEnd = System.nanoTime();
+      activeRuns.decrementAndGet();
+   }
+
+   /**
+    * Reports one served prediction.
+    *
+    * @param nanos its latency, from when the request or file arrived until the answer was given.
+    */
+   public void predicted(long nanos)
+   {
+      latency.record(nanos);
+      double millis = nanos / 1e6;
+      int bucket = 0;
+      while (bucket < BUCKETS_MILLIS.length && millis > BUCKETS_MILLIS[bucket])
+      {
+         bucket++;
+      }
+      histogram.incrementAndGet(bucket);
+   } // public void predicted(long nanos)
+
+   /**
+    * Reports that a ModelHolder published a network. Every network after the first replaces one, which is held until
+    * modelReleased().
+    *
+    * @param version the new network's version, from 1.
+    */
+   public void modelPublished(int version)
+   {
+      modelVersion = version;
+      if (version > 1)
+      {
+         retiredModels.incrementAndGet();
+      }
+   }
+
+   /**
+    * Reports that a replaced network's last lease was closed and the holder let it go.
+    */
+   public void modelReleased()
+   {
+      retiredModels.decrementAndGet();
+   }
+
+   public boolean isTraining()
+   {
+      return activeRuns.get() > 0;
+   }
+
+   public int getActiveRuns()
+   {
+      return activeRuns.get();
+   }
+
+   public String getTopology()
+   {
+      return topology;
+   }
+
+   public int getIteration()
+   {
+      return iteration;
+   }
+
+   public int getMaxIterations()
+   {
+      return maxIterations;
+   }
+
+   public double getError()
+   {
+      return error;
+   }
+
+   public double getLambda()
+   {
+      return lambda;
+   }
+
+   public double getEpochsPerSecond()
+   {
+      return epochsPerSecond;
+   }
+
+   public double getSamplesPerSecond()
+   {
+      return epochsPerSecond * numSets;
+   }
+
+   public double getTrainingSeconds()
+   {
+      return ((isTraining() ? System.nanoTime() : trainingEnd) - trainingStart) / 1e9;
+   }
+
+   public double getForwardMicros()
+   {
+      return forwardNanos / 1e3;
+   }
+
+   public double getBackPropMicros()
+   {
+      return backPropNanos / 1e3;
+   }
+
+   public double getReevaluateMicros()
+   {
+      return reevaluateNanos / 1e3;
+   }
+
+   public long getPredictionsServed()
+   {
+      return latency.getCount();
+   }
+
+   public double getLatencyMeanMillis()
+   {
+      return latency.getMeanNanos() / 1e6;
+   }
+
+   public double getLatencyP50Millis()
+   {
+      return latency.percentile(50.0) / 1e6;
+   }
+
+   public double getLatencyP99Millis()
+   {
+      return latency.percentile(99.0) / 1e6;
+   }
+
+   public double getLatencyMaxMillis()
+   {
+      return latency.getMaxNanos() / 1e6;
+   }
+
+   public double[] getLatencyBucketsMillis()
+   {
+      return BUCKETS_MILLIS.clone();
+   }
+
+   public long[] getLatencyHistogram()
+   {
+      long[] counts = new long[histogram.length()];
+      for (int b = 0; b < counts.length; b++)
+      {
+         counts[b] = histogram.get(b);
+      }
+      return counts;
+   }
+
+   public int getModelVersion()
+   {
+      return modelVersion;
+   }
+
+   public int getRetiredModelsHeld()
+   {
+      return retiredModels.get();
+   }
+
+   public void resetInference()
+   {
+      latency = new LatencyRecorder();
+      for (int b = 0; b < histogram.length(); b++)
+      {
+         histogram.set(b, 0L);
+      }
+   }
+} // public class NeuralNetMetrics
@@ -0,0 +1,66 @@
+/**
+ * The management interface of NeuralNetMetrics: what JConsole or VisualVM show under NeuralNet:type=Metrics.
+ * Training attributes describe the run in progress (or the last one); times are means over sampled training sets.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public interface NeuralNetMetricsMBean
+{
+   boolean isTraining();
+
+   /**
+    * @return the networks reporting to the metrics that are training now.
+    */
+   int getActiveRuns();
+
+   String getTopology();
+
+   int getIteration();
+
+   int getMaxIterations();
+
+   double getError();
+
+   double getLambda();
+
+   double getEpochsPerSecond();
+
+   double getSamplesPerSecond();
+
+   double getTrainingSeconds();
+
+   double getForwardMicros();
+
+   double getBackPropMicros();
+
+   double getReevaluateMicros();
+
+   long getPredictionsServed();
+
+   double getLatencyMeanMillis();
+
+   double getLatencyP50Millis();
+
+   double getLatencyP99Millis();
+
+   double getLatencyMaxMillis();
+
+   double[] getLatencyBucketsMillis();
+
+   long[] getLatencyHistogram();
+
+   /**
+    * @return the version of the network a ModelHolder serves now, or 0 if none was published.
+    */
+   int getModelVersion();
+
+   /**
+    * @return the replaced networks still held because a lease on them is open.
+    */
+   int getRetiredModelsHeld();
+
+   /**
+    * Clears the inference counters and histogram.
+    */
+   void resetInference();
+} // public interface NeuralNetMetricsMBean
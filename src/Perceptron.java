@@ -1,6 +1,8 @@
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /*
  * This class defines a neural network consisting of any number input nodes in the input layer, any number of
@@ -12,14 +14,24 @@ import java.util.Scanner;
  * void initializeWeights()
  * void initializeActivations()
  * void setWeights()
+ * void randomizeWeights()
+ * void setTrainingData(double[][] inputs, double[][] outputs, int iterations, double learningRate,
+ *                      double threshold, double min, double max)
  * double randomizer(double min, double max)
+ * void setSeed(long seed)
+ * long getSeed()
  * double activationFunction(double val)
  * double activationFunctionDerivative(double val)
  * void calculateOutputValue(int indexBeingTested)
  * void backProp(int indexBeingTested)
  * double calculateError(int index)
+ * double trainEpoch()
+ * double testSet(int index)
  * void printHyperParams()
  * void train()
+ * void printResults()
+ * void addTrainingListener(TrainingListener listener)
+ * void removeTrainingListener(TrainingListener listener)
  * void main(String[] args)
  *
  * @author Srivishnu Pyda
@@ -35,6 +47,12 @@ public class Perceptron
 
    private int[] networkStructure;
    private int numberOfLayers;
+   private long seed = ThreadLocalRandom.current().nextLong();
+   private SplittableRandom random = new SplittableRandom(seed);
+   private TrainingListeners listeners = new TrainingListeners();
+   private String topology;
+   private int trainedIterations;
+   private double trainedError = Double.NaN;
 
    private static double[][] userInputs;
    private static double[][] userOutputs;
@@ -58,6 +76,18 @@ public class Perceptron
     * number of nodes in each hidden layer, and the number of nodes in the output later.
     */
    public Perceptron(int[] networkStructure)
+   {
+      this(networkStructure, true);
+   } // public Perceptron(int[] networkStructure)
+
+   /*
+    * Constructor for Perceptron that can skip the weights prompt. When askForWeights is false the weights
+    * are randomized between minWeight and maxWeight, so a Perceptron can be built from code (see setTrainingData).
+    *
+    * @param networkStructure array containing the number of nodes in each layer.
+    * @param askForWeights true to ask the user how to set the weights, false to randomize them.
+    */
+   public Perceptron(int[] networkStructure, boolean askForWeights)
    {
       this.networkStructure = networkStructure;
       this.numberOfLayers = networkStructure.length;
@@ -87,8 +117,15 @@ public class Perceptron
          }
       }
 
-      setWeights();
-   } // public Perceptron(int[] networkStructure)
+      if (askForWeights)
+      {
+         setWeights();
+      }
+      else
+      {
+         randomizeWeights();
+      }
+   } // public Perceptron(int[] networkStructure, boolean askForWeights)
 
    /*
     * This method, initializeWeights, initializes the dimensions of the 3-dimensional,
@@ -141,16 +178,7 @@ public class Perceptron
 
       if (answer == 1)
       {
-         for (int n = 0; n < numberOfLayers - 1; n++)
-         {
-            for (int start = 0; start < networkStructure[n]; start++)
-            {
-               for (int end = 0; end < networkStructure[n + 1]; end++)
-               {
-                  all_weights[n][start][end] = randomizer(minWeight, maxWeight);
-               } // for (int end = 0; end < networkStructure[n+1]; end++)
-            } // for (int start = 0; start < networkStructure[n]; start++)
-         } // for (int n = 0; n < numberOfLayers - 1; n++)
+         randomizeWeights();
       } // if (answer == 1)
       else
       {
@@ -168,6 +196,63 @@ public class Perceptron
       } // else
    } // public void setWeights()
 
+   /*
+    * The method, randomizeWeights, populates the 3-dimensional weight matrix, all_weights, with
+    * random weights between minWeight and maxWeight. It starts over from the seed every time, so
+    * the same seed always gives the same weights.
+    */
+   public void randomizeWeights()
+   {
+      random = new SplittableRandom(seed);
+      for (int n = 0; n < numberOfLayers - 1; n++)
+      {
+         for (int start = 0; start < networkStructure[n]; start++)
+         {
+            for (int end = 0; end < networkStructure[n + 1]; end++)
+            {
+               all_weights[n][start][end] = randomizer(minWeight, maxWeight);
+            } // for (int end = 0; end < networkStructure[n+1]; end++)
+         } // for (int start = 0; start < networkStructure[n]; start++)
+      } // for (int n = 0; n < numberOfLayers - 1; n++)
+   } // public void randomizeWeights()
+
+   /*
+    * This method, setTrainingData, sets the training sets and hyperparameters that main otherwise
+    * reads from the user and the config file, so the network can be trained from code without prompts.
+    *
+    * @param inputs the input activations of each training case.
+    * @param outputs the expected outputs of each training case, indexed [case][output].
+    * @param iterations max number of iterations.
+    * @param learningRate lambda.
+    * @param threshold the error threshold.
+    * @param min the min weight for random weights.
+    * @param max the max weight for random weights.
+    */
+   public static void setTrainingData(double[][] inputs, double[][] outputs, int iterations, double learningRate,
+                                      double threshold, double min, double max)
+   {
+      numTrainingCases = inputs.length;
+      userInputs = inputs;
+      userInputsArrayLength = inputs[0].length;
+      userInputColumnLength = inputs.length;
+
+      userOutputs = new double[outputs[0].length][numTrainingCases];
+      userOutputsColumnLength = userOutputs.length;
+      for (int i = 0; i < numTrainingCases; i++)
+      {
+         for (int n = 0; n < userOutputsColumnLength; n++)
+         {
+            userOutputs[n][i] = outputs[i][n];
+         }
+      }
+
+      numIterations = iterations;
+      lambda = learningRate;
+      errorThreshold = threshold;
+      minWeight = min;
+      maxWeight = max;
+   } // public static void setTrainingData(double[][] inputs, double[][] outputs, ...)
+
    /*
     * This method, randomizer, that returns a random number of the data-type double
     * within a user-defined range.
@@ -179,9 +264,32 @@ public class Perceptron
    public double randomizer(double min, double max)
    {
       double range = (max - min) + 1.0;
-      return (Math.random() * range) + min;
+      return (random.nextDouble() * range) + min;
    } // public double randomizer(double min, double max)
 
+   /*
+    * This method, setSeed, seeds the random weights, so two networks seeded the same
+    * start from the same weights. Call randomizeWeights afterwards to use it.
+    *
+    * @param seed the seed.
+    */
+   public void setSeed(long seed)
+   {
+      this.seed = seed;
+      random = new SplittableRandom(seed);
+   } // public void setSeed(long seed)
+
+   /*
+    * This method, getSeed, returns the seed of the random weights. Unless setSeed was called it
+    * was drawn when the Perceptron was made.
+    *
+    * @return the seed.
+    */
+   public long getSeed()
+   {
+      return seed;
+   } // public long getSeed()
+
    /*
     * This method performs the activation function on a
     * given value, and returns the resulting value.
@@ -302,6 +410,40 @@ public class Perceptron
       return error;
    } // public double calculateError(double output)
 
+   /*
+    * This method, trainEpoch, trains on every training case once, in order. This is
+    * one iteration of train, without the printing.
+    *
+    * @return the error of the iteration, the running average train compares with the error threshold.
+    */
+   public double trainEpoch()
+   {
+      double totalError = 0.0;
+
+      for (int k = 0; k < numTrainingCases; k++)
+      {
+         calculateOutputValue(k);
+         backProp(k);
+         calculateOutputValue(k);
+         totalError += calculateError(k);
+         totalError /= numTrainingCases;
+      } // for (int k = 0; k < numTrainingCases; k++)
+
+      return totalError;
+   } // public double trainEpoch()
+
+   /*
+    * This method, testSet, evaluates the network on one training case without training.
+    *
+    * @param index index of the training case.
+    * @return the error of the training case, as calculateError.
+    */
+   public double testSet(int index)
+   {
+      calculateOutputValue(index);
+      return calculateError(index);
+   } // public double testSet(int index)
+
    /*
     * This methods prints the hyper parameters of the
     * networks, including the weight range, the configuration
@@ -337,98 +479,124 @@ public class Perceptron
     * terminates if the number of iterations (of the while loop) is greater than the number
     * of iterations specified by the user. Additionally, if the error threshold exceeds the total error or
     * the lower learning rate threshold exceeds the given learning rate, the training terminates.
+    * Progress goes to the training listeners (see addTrainingListener) and the results are printed
+    * by printResults, so train itself prints nothing.
     */
    public void train()
    {
       int trackingIterations = 0;
       double totalError = 0.0;
-      int caseNumber = 1;
       boolean flag = true;
 
       while (flag)
       {
          trackingIterations++;
-         totalError = 0.0;
+         if (!listeners.isEmpty())
+         {
+            TrainingEvent started = trainingEvent(trackingIterations, Double.NaN);
+            listeners.dispatchEpoch(listener -> listener.epochStarted(started));
+         }
 
-         for (int k = 0; k < numTrainingCases; k++)
+         totalError = trainEpoch();
+         boolean reached = totalError < errorThreshold;
+         boolean timedOut = trackingIterations >= numIterations;
+         flag = !reached && !timedOut;
+
+         if (!listeners.isEmpty())
          {
-            calculateOutputValue(k);
-            backProp(k);
-            calculateOutputValue(k);
-            totalError += calculateError(k);
-            totalError /= numTrainingCases;
-         } // for (int k = 0; k < numTrainingCases; k++)
+            TrainingEvent event = trainingEvent(trackingIterations, totalError);
+            listeners.dispatchEpoch(listener -> listener.epochEnded(event));
+            if (reached)
+            {
+               listeners.dispatch(listener -> listener.thresholdReached(event));
+            }
+            if (timedOut)
+            {
+               listeners.dispatch(listener -> listener.maxIterationsReached(event));
+            }
+         } // if (!listeners.isEmpty())
+      } // while (flag)
 
+      trainedIterations = trackingIterations;
+      trainedError = totalError;
+   } // public void train()
 
+   /*
+    * This method, printResults, prints how the last train ended, the calculated and true outputs
+    * of every training case, and the hyper parameters.
+    */
+   public void printResults()
+   {
+      System.out.println("");
+      if (trainedError < errorThreshold)
+      {
+         System.out.println("Training completed with error below the error threshold of " + errorThreshold);
+         System.out.println("Total error is " + trainedError);
+         System.out.println("Number of iterations:" + trainedIterations);
+         System.out.println("Max number of iterations: " + numIterations);
+      }
+      else
+      {
+         System.out.println("The training timed out with " + trainedIterations + " iterations");
+         System.out.println("Total error was " + trainedError);
+      }
+      System.out.println("Learning rate: " + lambda);
+      System.out.println("");
 
-         if (totalError < errorThreshold)
+      for (int i = 0; i < userInputColumnLength; i++)
+      {
+         calculateOutputValue(i);
+
+         for (int j = 0; j < userInputsArrayLength; j++)
          {
-            System.out.println("");
-            System.out.println("Training completed with error below the error threshold of " + errorThreshold);
-            System.out.println("Total error is " + totalError);
-            System.out.println("Number of iterations:" + trackingIterations);
-            System.out.println("Max number of iterations: " + numIterations);
-            System.out.println("Learning rate: " + lambda);
-            System.out.println("");
+            all_activations[0][j] = userInputs[i][j];
+         }
 
-            for (int i = 0; i < userInputColumnLength; i++)
-            {
-               calculateOutputValue(i);
+         System.out.println("Calculated Outputs for case " + (i + 1) + " is: " + all_activations[numberOfLayers-1][0]
+                 + ", " + all_activations[numberOfLayers-1][1] + ", " + all_activations[numberOfLayers-1][2]
+                 + ", " + all_activations[numberOfLayers-1][3] + ", " + all_activations[numberOfLayers-1][4]);
+         System.out.println("True Outputs for case " + userOutputs[0][i] + ", " + userOutputs[1][i] + ", " +
+                 userOutputs[2][i] + ", " + userOutputs[3][i] + ", " + userOutputs[4][i]);
+         System.out.println("");
+      } // for (int i = 0; i < userInputColumnLength; i++)
 
-               for (int j = 0; j < userInputsArrayLength; j++)
-               {
-                  all_activations[0][j] = userInputs[i][j];
-               }
-
-               //System.out.println("Inputs for case " + caseNumber + " are: " + userInputs[i][0] + " and " + userInputs[i][1]);
-               System.out.println("Calculated Outputs for case " + caseNumber + " is: " + all_activations[numberOfLayers-1][0]
-                       + ", " + all_activations[numberOfLayers-1][1] + ", " + all_activations[numberOfLayers-1][2]
-                       + ", " + all_activations[numberOfLayers-1][3] + ", " + all_activations[numberOfLayers-1][4]);
-               System.out.println("True Outputs for case " + userOutputs[0][i] + ", " + userOutputs[1][i] + ", " +
-                       ", " + userOutputs[2][i] + ", " + userOutputs[3][i] + ", " + userOutputs[4][i]);
-               System.out.println("");
-               caseNumber++;
-            } // for (int i = 0; i < userInputColumnLength; i++)
-
-            flag = false;
-         } // if (totalError < errorThreshold)
-         System.out.println("Iteration: " + trackingIterations + " Total Error: " + totalError);
-
-         if (trackingIterations >= numIterations)
-         {
-            caseNumber = 1;
-            System.out.println("");
-            System.out.println("The training timed out with " + trackingIterations + " iterations");
-            System.out.println("Total error was " + totalError);
-            System.out.println("Learning rate: " + lambda);
-            System.out.println("");
+      printHyperParams();
+   } // public void printResults()
 
-            for (int i = 0; i < userInputColumnLength; i++)
-            {
-               calculateOutputValue(i);
+   /*
+    * Adds a listener that is told about every iteration of train, on another thread.
+    *
+    * @param listener the listener, e.g. a ConsoleTrainingListener.
+    */
+   public void addTrainingListener(TrainingListener listener)
+   {
+      listeners.add(listener);
+   }
 
-               for (int j = 0; j < userInputsArrayLength; j++)
-               {
-                  all_activations[0][j] = userInputs[i][j];
-               }
-
-               System.out.println("Calc");
-               //System.out.println("Inputs for case " + caseNumber + " are: " + userInputs[i][0] + " and " + userInputs[i][1]);
-               System.out.println("Calculated Outputs for case " + i + " is: " + all_activations[numberOfLayers-1][0]
-                       + ", " + all_activations[numberOfLayers-1][1] + ", " + all_activations[numberOfLayers-1][2]
-                       + ", " + all_activations[numberOfLayers-1][3] + ", " + all_activations[numberOfLayers-1][4]);
-               System.out.println("True Outputs for case " + userOutputs[0][i] + ", " + userOutputs[1][i] + ", " +
-                       + userOutputs[2][i] + ", " + userOutputs[3][i] + ", " + userOutputs[4][i]);
-               System.out.println("");
-               caseNumber++;
-            } // for (int i = 0; i < userInputColumnLength; i++)
-
-            flag = false;
-         } // if (trackingIterations >= numIterations)
-      } // while (flag)
+   public void removeTrainingListener(TrainingListener listener)
+   {
+      listeners.remove(listener);
+   }
 
-      printHyperParams();
-   } // public void train()
+   /*
+    * This method, trainingEvent, makes what the training listeners are told about an iteration.
+    *
+    * @param iteration the iteration, from 1.
+    * @param error the error of the iteration, or NaN if it has not ended.
+    */
+   private TrainingEvent trainingEvent(int iteration, double error)
+   {
+      if (topology == null)
+      {
+         StringBuilder layers = new StringBuilder().append(networkStructure[0]);
+         for (int n = 1; n < numberOfLayers; n++)
+         {
+            layers.append('-').append(networkStructure[n]);
+         }
+         topology = layers.toString();
+      }
+      return new TrainingEvent(topology, iteration, numIterations, error, errorThreshold, lambda, null);
+   } // private TrainingEvent trainingEvent(int iteration, double error)
 
    /*
     * The main method asks the user for the desired number of nodes in the input layer
@@ -442,17 +610,17 @@ public class Perceptron
    public static void main(String[] args) throws FileNotFoundException
    {
 
-      DibDump dib = new DibDump();
-      dib.bmpToPelFile("FingerFiles/one.bmp", "DibDumpInputs/DibDump0.txt");
-      dib.bmpToPelFile("FingerFiles/one_diagonal.bmp", "DibDumpInputs/DibDump1.txt");
-      dib.bmpToPelFile("FingerFiles/two.bmp", "DibDumpInputs/DibDump2.txt");
-      dib.bmpToPelFile("FingerFiles/two_diagonal.bmp", "DibDumpInputs/DibDump3.txt");
-      dib.bmpToPelFile("FingerFiles/three.bmp", "DibDumpInputs/DibDump4.txt");
-      dib.bmpToPelFile("FingerFiles/four.bmp", "DibDumpInputs/DibDump5.txt");
-      dib.bmpToPelFile("FingerFiles/five.bmp", "DibDumpInputs/DibDump6.txt");
-      dib.bmpToPelFile("FingerFiles/three_diagonal.bmp", "DibDumpInputs/DibDump7.txt");
-      dib.bmpToPelFile("FingerFiles/four_diagonal.bmp", "DibDumpInputs/DibDump8.txt");
-      dib.bmpToPelFile("FingerFiles/five_diagonal.bmp", "DibDumpInputs/DibDump9.txt");
+      String[] fingers = {"one", "one_diagonal", "two", "two_diagonal", "three", "four", "five", "three_diagonal",
+         "four_diagonal", "five_diagonal"};
+      String[] bmpFiles = new String[fingers.length];
+      String[] pelFiles = new String[fingers.length];
+      for (int i = 0; i < fingers.length; i++)
+      {
+         bmpFiles[i] = "FingerFiles/" + fingers[i] + ".bmp";
+         pelFiles[i] = "DibDumpInputs/DibDump" + i + ".txt";
+      }
+      DibDumpBatch batch = new DibDumpBatch();
+      batch.printReport(batch.convert(bmpFiles, pelFiles));
       Scanner sc = new Scanner(System.in);
 
       System.out.println("");
@@ -528,7 +696,10 @@ public class Perceptron
 
       // Creating a new Perceptron object in order to train the neural network to minimize the error function.
       Perceptron p = new Perceptron(userNetworkStructure);
+      p.addTrainingListener(new ConsoleTrainingListener());
       p.train();
+      p.listeners.flush();
+      p.printResults();
 
    } // public static void main(String[] args)
 } // public class Perceptron
\ No newline at end of file
@@ -0,0 +1,225 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of network outputs, so an image that is submitted again is answered without another forward pass.
+ * Entries are keyed by a 64-bit hash of the image, either of the bitmap file's bytes (which skips decoding as well)
+ * or of the decoded input vector. Two different images with the same 64-bit hash would share an entry; with a few
+ * thousand entries the chance of that is negligible. When the cache is full the least recently used entry is evicted.
+ *
+ * Every entry belongs to the model version (see ModelHolder.Lease.getVersion) that computed it, and the cache only
+ * holds entries of the newest version it has seen. The first lookup or store for a newer version, i.e. after a new
+ * model has been published, empties the cache once, so stale outputs are never returned. Requests still finishing on
+ * an older version during the swap miss and store nothing, rather than emptying the cache again. Only the version
+ * number is kept, never the network, so a retired model can be collected. The cache counts hits, misses, evictions and
+ * invalidations. All methods are synchronized.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class PredictionCache
+{
+   /**
+    * Multipliers of the hash, from the 64-bit golden ratio and MurmurHash3's finalizer.
+    */
+   private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+   private static final long MIX1 = 0xBF58476D1CE4E5B9L;
+   private static final long MIX2 = 0x94D049BB133111EBL;
+
+   private int capacity;
+   private LinkedHashMap<Long, double[]> entries;
+
+   /**
+    * The model version of the entries, or 0 before the first lookup or store.
+    */
+   private int version;
+
+   private long hits;
+   private long misses;
+   private long evictions;
+   private long invalidations;
+
+   /**
+    * Constructor for a cache.
+    *
+    * @param capacity the largest number of outputs kept.
+    */
+   public PredictionCache(int capacity)
+   {
+      this.capacity = Math.max(1, capacity);
+      entries = new LinkedHashMap<Long, double[]>(16, 0.75f, true)  // Access order, so the eldest is the LRU.
+      {
+         protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest)
+         {
+            if (size() > PredictionCache.this.capacity)
+            {
+               evictions++;
+               return true;
+            }
+            return false;
+         }
+      };
+   } // public PredictionCache(int capacity)
+
+   /**
+    * Looks up the outputs of an image.
+    *
+    * @param version the version of the network that would compute them.
+    * @param key     the image's hash, from hash().
+    * @return the outputs, or null on a miss. The array is shared and must not be changed.
+    */
+   public synchronized double[] get(int version, long key)
+   {
+      double[] output = isCurrent(version) ? entries.get(key) : null;
+      if (output == null)
+      {
+         misses++;
+      }
+      else
+      {
+         hits++;
+      }
+      return output;
+   } // public synchronized double[] get(int version, long key)
+
+   /**
+    * Stores the outputs of an image. Outputs of a version older than the cache's are not stored.
+    *
+    * @param version the version of the network that computed them.
+    * @param key     the image's hash, from hash().
+    * @param output  the outputs. A copy is stored.
+    */
+   public synchronized void put(int version, long key, double[] output)
+   {
+      if (isCurrent(version))
+      {
+         entries.put(key, output.clone());
+      }
+   }
+
+   /**
+    * Empties the cache the first time a newer version is seen.
+    *
+    * @return false if the version is older than the cache's entries.
+    */
+   private boolean isCurrent(int version)
+   {
+      if (version > this.version)
+      {
+         if (this.version != 0)
+         {
+            invalidate();
+         }
+         this.version = version;
+      }
+      return version == this.version;
+   } // private boolean isCurrent(int version)
+
+   /**
+    * Empties the cache.
+    */
+   public synchronized void invalidate()
+   {
+      entries.clear();
+      invalidations++;
+   }
+
+   /**
+    * Hashes the bytes of a bitmap file, eight at a time. The buffer's position is not changed.
+    *
+    * @param bmp the bytes.
+    * @return the hash.
+    */
+   public static long hash(ByteBuffer bmp)
+   {
+      ByteBuffer in = bmp.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      long h = in.remaining() * GOLDEN;
+      while (in.remaining() >= Long.BYTES)
+      {
+         h = mix(h ^ in.getLong());
+      }
+      while (in.hasRemaining())
+      {
+         h = mix(h ^ (in.get() & 0xFF));
+      }
+      return h;
+   } // public static long hash(ByteBuffer bmp)
+
+   /**
+    * Hashes a decoded input vector.
+    *
+    * @param inputs the input activations.
+    * @return the hash.
+    */
+   public static long hash(double[] inputs)
+   {
+      long h = inputs.length * GOLDEN;
+      for (double input : inputs)
+      {
+         h = mix(h ^ Double.doubleToRawLongBits(input));
+      }
+      return h;
+   }
+
+   /**
+    * Scrambles the bits of a hash so every input bit affects every output bit.
+    */
+   private static long mix(long h)
+   {
+      h = (h ^ (h >>> 30)) * MIX1;
+      h = (h ^ (h >>> 27)) * MIX2;
+      return (h ^ (h >>> 31)) + GOLDEN;
+   }
+
+   /**
+    * @return the number of lookups that found outputs.
+    */
+   public synchronized long getHits()
+   {
+      return hits;
+   }
+
+   /**
+    * @return the number of lookups that found nothing.
+    */
+   public synchronized long getMisses()
+   {
+      return misses;
+   }
+
+   /**
+    * @return the number of entries evicted to make room.
+    */
+   public synchronized long getEvictions()
+   {
+      return evictions;
+   }
+
+   /**
+    * @return the number of times the cache was emptied, including once for every new model version.
+    */
+   public synchronized long getInvalidations()
+   {
+      return invalidations;
+   }
+
+   /**
+    * @return the number of outputs in the cache.
+    */
+   public synchronized int size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * @return a one-line summary of the cache's counters.
+    */
+   public synchronized String summary()
+   {
+      long lookups = hits + misses;
+      return String.format("cache %d/%d entries, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations",
+         entries.size(), capacity, hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions,
+         invalidations);
+   }
+} // public class PredictionCache
@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Trains the same NeuralNet configuration from several random starting weights at once and keeps the best. A sigmoid
+ * network started from unlucky weights can sit in a local minimum for all of maxIterations, so instead of waiting for
+ * one start, N starts (restarts) with seeds drawn from the given one train in parallel, and the first to get its error
+ * under the threshold wins. The others are then told to stop (NeuralNet.stop), which they do after the iteration they
+ * are in, and restarts that have not started yet are skipped, so the time to a usable model is that of the fastest
+ * start.
+ * If no restart reaches the threshold, the one with the lowest final error is kept. Restarts running in parallel do not
+ * report to NeuralNetMetrics (see NeuralNet.setMetricsEnabled).
+ *
+ *    java RandomRestarts [data [restarts [threshold [seed [threads]]]]]
+ *    java RandomRestarts xor 8 0.01 42
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class RandomRestarts
+{
+   /**
+    * How one restart ended.
+    */
+   public enum Status
+   {
+      WON, REACHED, STOPPED, NOT_REACHED, SKIPPED
+   }
+
+   /**
+    * One restart and how it ended.
+    */
+   public static class Restart
+   {
+      private long seed;
+      private Status status = Status.SKIPPED;
+      private int iterations;
+      private double finalError = Double.NaN;
+      private long trainNanos;
+      private NeuralNet net;
+
+      public long getSeed()
+      {
+         return seed;
+      }
+
+      public Status getStatus()
+      {
+         return status;
+      }
+
+      public int getIterations()
+      {
+         return iterations;
+      }
+
+      public double getFinalError()
+      {
+         return finalError;
+      }
+
+      public double getSeconds()
+      {
+         return trainNanos / 1e9;
+      }
+
+      /**
+       * @return the trained network, or null if the restart was skipped.
+       */
+      public NeuralNet getNet()
+      {
+         return net;
+      }
+   } // public static class Restart
+
+   private Dataset data;
+   private double errorThreshold;
+   private int threads;
+
+   private List<Restart> restarts;
+   private Restart best;
+   private long winnerNanos;
+
+   /**
+    * Constructor for a multi-start trainer.
+    *
+    * @param data           the training sets, shared by every restart.
+    * @param errorThreshold the error a restart has to get under to win.
+    * @param threads        the restarts trained at once.
+    */
+   public RandomRestarts(Dataset data, double errorThreshold, int threads)
+   {
+      this.data = data;
+      this.errorThreshold = errorThreshold;
+      this.threads = Math.max(1, threads);
+   }
+
+   /**
+    * Trains count restarts of a configuration until one reaches the threshold or all have ended.
+    *
+    * @param trial the configuration. The restarts' seeds are drawn from a SplittableRandom seeded with its seed.
+    * @param count the number of restarts.
+    * @return the winner, or the restart with the lowest final error if none won.
+    */
+   public Restart train(HyperparameterSweep.Trial trial, int count)
+   {
+      restarts = new ArrayList<>();
+      best = null;
+      winnerNanos = 0L;
+      SplittableRandom seeds = new SplittableRandom(trial.getSeed());
+      AtomicReference<Restart> winner = new AtomicReference<>();
+      Queue<NeuralNet> running = new ConcurrentLinkedQueue<>();
+      long start = System.nanoTime();
+
+      ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+         Thread thread = new Thread(runnable, "RandomRestarts restart");
+         thread.setDaemon(true);
+         return thread;
+      });
+      try
+      {
+         List<Future<?>> futures = new ArrayList<>();
+         for (int i = 0; i < count; i++)
+         {
+            Restart restart = new Restart();
+            restart.seed = seeds.nextLong();
+            restarts.add(restart);
+            futures.add(pool.submit(() -> {
+               if (winner.get() != null)
+               {
+                  return;                                   // Someone already won; leave it SKIPPED.
+               }
+               NeuralNet net = new NeuralNet(data.withHiddenLayer(trial.getHiddenLayer()));
+               net.setGradient(trial.getLambda(), trial.getMaxIterations(), errorThreshold, trial.getMinWeight(),
+                  trial.getMaxWeight());
+               net.setSeed(restart.seed);
+               net.setMetricsEnabled(threads == 1);           // NeuralNetMetrics describes one run at a time.
+               restart.net = net;
+               running.add(net);
+               if (winner.get() != null)
+               {
+                  net.stop();                                // Won while this one was being set up.
+               }
+
+               long trainStart = System.nanoTime();
+               net.trainNeural();
+               restart.trainNanos = System.nanoTime() - trainStart;
+               running.remove(net);
+               restart.iterations = net.getIterations();
+               restart.finalError = net.getFinalError();
+
+               if (restart.finalError < errorThreshold && winner.compareAndSet(null, restart))
+               {
+                  winnerNanos = System.nanoTime() - start;
+                  restart.status = Status.WON;
+                  for (NeuralNet other : running)
+                  {
+                     other.stop();
+                  }
+               }
+               else if (restart.finalError < errorThreshold)
+               {
+                  restart.status = Status.REACHED;
+               }
+               else
+               {
+                  restart.status = winner.get() != null ? Status.STOPPED : Status.NOT_REACHED;
+               }
+            }));
+         } // for (int i = 0; i < count; i++)
+
+         for (Future<?> future : futures)
+         {
+            future.get();
+         }
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      }
+      catch (ExecutionException e)
+      {
+         throw new RuntimeException(e.getCause());
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+
+      best = winner.get();
+      if (best == null)
+      {
+         for (Restart restart : restarts)
+         {
+            if (restart.net != null && (best == null || restart.finalError < best.finalError))
+            {
+               best = restart;
+            }
+         }
+      }
+      return best;
+   } // public Restart train(HyperparameterSweep.Trial trial, int count)
+
+   /**
+    * @return every restart of the last train, in seed order.
+    */
+   public List<Restart> getRestarts()
+   {
+      return restarts;
+   }
+
+   /**
+    * Prints every restart of the last train and which was kept.
+    */
+   public void printReport()
+   {
+      System.out.printf("%20s %-12s %10s %12s %10s%n", "Seed", "Status", "Iterations", "Final error", "Time (ms)");
+      for (Restart restart : restarts)
+      {
+         if (restart.status == Status.SKIPPED)
+         {
+            System.out.printf("%20d %s%n", restart.seed, restart.status);
+            continue;
+         }
+         System.out.printf("%20d %-12s %10d %12.6f %10.1f%n", restart.seed, restart.status, restart.iterations,
+            restart.finalError, restart.trainNanos / 1e6);
+      }
+      if (best != null && best.status == Status.WON)
+      {
+         System.out.printf("Kept seed %d, which reached %s after %.1f ms.%n", best.seed, errorThreshold,
+            winnerNanos / 1e6);
+      }
+      else if (best != null)
+      {
+         System.out.println("No restart reached " + errorThreshold + "; kept seed " + best.seed +
+            ", the lowest error.");
+      }
+   } // public void printReport()
+
+   /**
+    * Trains restarts of a problem or a config file with the gradient defaults (lambda 5, weights in -2 - 2) and
+    * prints the report.
+    *
+    * @param args [data [restarts [threshold [seed [threads]]]]]: xor, all or finger (see EngineComparison.problem)
+    *             or a config file (default xor), the restarts (default 8), the error threshold (default 0.01), the
+    *             seed the restarts' seeds are drawn from (default 42) and the threads (default one per processor).
+    */
+   public static void main(String[] args) throws IOException
+   {
+      String name = args.length > 0 ? args[0] : "xor";
+      int count = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+      double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+      long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+      int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+      Dataset data;
+      int maxIterations = 10000;
+      if (name.equalsIgnoreCase("xor") || name.equalsIgnoreCase("all") || name.equalsIgnoreCase("finger"))
+      {
+         EngineComparison.Problem problem = EngineComparison.problem(name);
+         data = problem.toDataset(problem.getTwoHidden());
+         maxIterations = problem.getMaxEpochs();
+      }
+      else
+      {
+         data = DatasetCache.load(name);
+      }
+
+      RandomRestarts trainer = new RandomRestarts(data, threshold, threads);
+      trainer.train(new HyperparameterSweep.Trial(data.getHiddenLayer(), 5.0, -2.0, 2.0, maxIterations, seed), count);
+      trainer.printReport();
+   } // public static void main(String[] args)
+} // public class RandomRestarts
@@ -0,0 +1,226 @@
+import java.util.Scanner;
+
+/**
+ * Resamples a grayscale image held as a flat array of pels (one row after the other, as in a pel file) from one
+ * resolution to another before it reaches the input layer. Two filters are supported: "area" averages every source
+ * pel a target pel covers, weighted by how much of it is covered, and "bilinear" interpolates between the four
+ * nearest source pels. The weights for every target row and column are computed once in the constructor, so
+ * resample() allocates nothing and a single Resampler can be used by several threads at once.
+ *
+ * A Resampler is written as the line "resample srcWidth srcHeight dstWidth dstHeight filter", both at the end of a
+ * config file (to resample the training sets) and at the top of a trained weights file (so inference applies the
+ * same transform).
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class Resampler
+{
+   /**
+    * The keyword that starts a resample line.
+    */
+   public static final String KEYWORD = "resample";
+
+   /**
+    * Area-average filter.
+    */
+   public static final String AREA = "area";
+
+   /**
+    * Bilinear filter.
+    */
+   public static final String BILINEAR = "bilinear";
+
+   private int srcWidth;
+   private int srcHeight;
+   private int dstWidth;
+   private int dstHeight;
+   private String filter;
+
+   /**
+    * For each target column, the first source column it reads and the weight of each source column from there on.
+    */
+   private int[] colStart;
+   private double[][] colWeights;
+
+   /**
+    * For each target row, the first source row it reads and the weight of each source row from there on.
+    */
+   private int[] rowStart;
+   private double[][] rowWeights;
+
+   /**
+    * Constructor for a resampler.
+    *
+    * @param srcWidth  the width of the images given to resample().
+    * @param srcHeight the height of the images given to resample().
+    * @param dstWidth  the width of the resampled images.
+    * @param dstHeight the height of the resampled images.
+    * @param filter    AREA or BILINEAR.
+    */
+   public Resampler(int srcWidth, int srcHeight, int dstWidth, int dstHeight, String filter)
+   {
+      if (srcWidth < 1 || srcHeight < 1 || dstWidth < 1 || dstHeight < 1)
+      {
+         throw new IllegalArgumentException("Bad resample size " + srcWidth + "x" + srcHeight + " to " + dstWidth +
+            "x" + dstHeight);
+      }
+
+      this.srcWidth = srcWidth;
+      this.srcHeight = srcHeight;
+      this.dstWidth = dstWidth;
+      this.dstHeight = dstHeight;
+      this.filter = filter.toLowerCase();
+
+      colStart = new int[dstWidth];
+      colWeights = new double[dstWidth][];
+      rowStart = new int[dstHeight];
+      rowWeights = new double[dstHeight][];
+
+      if (this.filter.equals(AREA))
+      {
+         areaWeights(srcWidth, colStart, colWeights);
+         areaWeights(srcHeight, rowStart, rowWeights);
+      }
+      else if (this.filter.equals(BILINEAR))
+      {
+         bilinearWeights(srcWidth, colStart, colWeights);
+         bilinearWeights(srcHeight, rowStart, rowWeights);
+      }
+      else
+      {
+         throw new IllegalArgumentException("Unknown resample filter " + filter + ". Use " + AREA + " or " +
+            BILINEAR + ".");
+      }
+   } // public Resampler(int srcWidth, int srcHeight, int dstWidth, int dstHeight, String filter)
+
+   /**
+    * Reads the rest of a resample line, after the keyword.
+    *
+    * @param in the scanner positioned just after "resample".
+    * @return the resampler.
+    */
+   public static Resampler read(Scanner in)
+   {
+      int srcWidth = in.nextInt();
+      int srcHeight = in.nextInt();
+      int dstWidth = in.nextInt();
+      int dstHeight = in.nextInt();
+      return new Resampler(srcWidth, srcHeight, dstWidth, dstHeight, in.next());
+   }
+
+   /**
+    * Area weights along one axis. Target pel t covers the source interval [t * scale, (t + 1) * scale) and each
+    * source pel is weighted by the part of it inside that interval, divided by the interval's length.
+    */
+   private static void areaWeights(int srcSize, int[] start, double[][] weights)
+   {
+      int dstSize = start.length;
+      double scale = (double) srcSize / dstSize;
+      for (int t = 0; t < dstSize; t++)
+      {
+         double from = t * scale;
+         double to = (t + 1) * scale;
+         int first = (int) Math.floor(from);
+         int last = Math.min(srcSize - 1, (int) Math.ceil(to) - 1);
+
+         start[t] = first;
+         weights[t] = new double[last - first + 1];
+         for (int s = first; s <= last; s++)
+         {
+            weights[t][s - first] = (Math.min(to, s + 1) - Math.max(from, s)) / scale;
+         }
+      }
+   } // private static void areaWeights(int srcSize, int[] start, double[][] weights)
+
+   /**
+    * Bilinear weights along one axis. The centers of the target pels are mapped onto the source and each target pel
+    * is interpolated between the two source pels around its center. Pels past the edge repeat the edge pel.
+    */
+   private static void bilinearWeights(int srcSize, int[] start, double[][] weights)
+   {
+      int dstSize = start.length;
+      double scale = (double) srcSize / dstSize;
+      for (int t = 0; t < dstSize; t++)
+      {
+         double center = Math.max(0.0, Math.min(srcSize - 1, (t + 0.5) * scale - 0.5));
+         int first = Math.min((int) Math.floor(center), Math.max(0, srcSize - 2));
+         double fraction = center - first;
+
+         start[t] = first;
+         weights[t] = srcSize > 1 ? new double[] {1.0 - fraction, fraction} : new double[] {1.0};
+      }
+   } // private static void bilinearWeights(int srcSize, int[] start, double[][] weights)
+
+   /**
+    * Resamples one image.
+    *
+    * @param src the source pels, srcWidth * srcHeight of them.
+    * @param dst receives the resampled pels, dstWidth * dstHeight of them.
+    */
+   public void resample(double[] src, double[] dst)
+   {
+      if (src.length != getSourceSize() || dst.length != getTargetSize())
+      {
+         throw new IllegalArgumentException("Resampler expects " + getSourceSize() + " pels in and " +
+            getTargetSize() + " out but got " + src.length + " and " + dst.length);
+      }
+
+      for (int y = 0; y < dstHeight; y++)
+      {
+         double[] wy = rowWeights[y];
+         for (int x = 0; x < dstWidth; x++)
+         {
+            double[] wx = colWeights[x];
+            double sum = 0.0;
+            for (int r = 0; r < wy.length; r++)
+            {
+               int base = (rowStart[y] + r) * srcWidth + colStart[x];
+               double rowSum = 0.0;
+               for (int c = 0; c < wx.length; c++)
+               {
+                  rowSum += src[base + c] * wx[c];
+               }
+               sum += rowSum * wy[r];
+            }
+            dst[y * dstWidth + x] = sum;
+         }
+      }
+   } // public void resample(double[] src, double[] dst)
+
+   /**
+    * Resamples one image into a new array.
+    *
+    * @param src the source pels.
+    * @return the resampled pels.
+    */
+   public double[] resample(double[] src)
+   {
+      double[] dst = new double[getTargetSize()];
+      resample(src, dst);
+      return dst;
+   }
+
+   /**
+    * @return the number of pels in a source image.
+    */
+   public int getSourceSize()
+   {
+      return srcWidth * srcHeight;
+   }
+
+   /**
+    * @return the number of pels in a resampled image, which is the number of input nodes of the network.
+    */
+   public int getTargetSize()
+   {
+      return dstWidth * dstHeight;
+   }
+
+   /**
+    * @return the resample line, e.g. "resample 50 50 25 25 area".
+    */
+   public String toString()
+   {
+      return KEYWORD + " " + srcWidth + " " + srcHeight + " " + dstWidth + " " + dstHeight + " " + filter;
+   }
+} // public class Resampler
@@ -0,0 +1,172 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue for any number of producer and consumer threads. It is an array ring in which every slot
+ * carries a sequence number that says whether the slot is ready to be written or read on the current lap, so a
+ * producer or consumer only has to win a compare-and-set on the tail or head counter to claim a slot and never takes
+ * a lock. offer() and poll() never block; put() and take() spin, then yield, then park briefly while the queue is full
+ * or empty, which is the backpressure between pipeline stages.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ * @param <T> the type of the elements.
+ */
+public class RingQueue<T>
+{
+   /**
+    * The number of failed attempts after which put() and take() stop spinning and start parking.
+    */
+   private static final int SPINS = 64;
+
+   /**
+    * How long put() and take() park between attempts once they stop spinning, in nanoseconds.
+    */
+   private static final long PARK_NANOS = 50_000L;
+
+   private int mask;
+   private AtomicReferenceArray<T> elements;
+   private AtomicLongArray sequences;
+   private AtomicLong head = new AtomicLong();
+   private AtomicLong tail = new AtomicLong();
+
+   /**
+    * Constructor for a queue.
+    *
+    * @param capacity the least number of elements the queue can hold. Rounded up to a power of two.
+    */
+   public RingQueue(int capacity)
+   {
+      int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+      mask = size - 1;
+      elements = new AtomicReferenceArray<T>(size);
+      sequences = new AtomicLongArray(size);
+      for (int i = 0; i < size; i++)
+      {
+         sequences.set(i, i);
+      }
+   }
+
+   /**
+    * Adds an element if there is room.
+    *
+    * @param element the element. Must not be null.
+    * @return false if the queue was full.
+    */
+   public boolean offer(T element)
+   {
+      while (true)
+      {
+         long position = tail.get();
+         int slot = (int) position & mask;
+         long difference = sequences.get(slot) - position;
+
+         if (difference == 0)                              // The slot is free on this lap.
+         {
+            if (tail.compareAndSet(position, position + 1))
+            {
+               elements.lazySet(slot, element);
+               sequences.set(slot, position + 1);          // Publishes the element to consumers.
+               return true;
+            }
+         }
+         else if (difference < 0)                          // The consumers have not emptied the slot yet: full.
+         {
+            return false;
+         }
+      } // while (true)
+   } // public boolean offer(T element)
+
+   /**
+    * Removes the oldest element if there is one.
+    *
+    * @return the element, or null if the queue was empty.
+    */
+   public T poll()
+   {
+      while (true)
+      {
+         long position = head.get();
+         int slot = (int) position & mask;
+         long difference = sequences.get(slot) - (position + 1);
+
+         if (difference == 0)                              // The slot holds an element of this lap.
+         {
+            if (head.compareAndSet(position, position + 1))
+            {
+               T element = elements.get(slot);
+               elements.lazySet(slot, null);
+               sequences.set(slot, position + mask + 1);   // Frees the slot for the next lap.
+               return element;
+            }
+         }
+         else if (difference < 0)                          // Nothing written here yet: empty.
+         {
+            return null;
+         }
+      } // while (true)
+   } // public T poll()
+
+   /**
+    * Adds an element, waiting for room.
+    *
+    * @param element the element.
+    */
+   public void put(T element)
+   {
+      for (int attempt = 0; !offer(element); attempt++)
+      {
+         backOff(attempt);
+      }
+   }
+
+   /**
+    * Removes the oldest element, waiting for one.
+    *
+    * @return the element.
+    */
+   public T take()
+   {
+      T element;
+      for (int attempt = 0; (element = poll()) == null; attempt++)
+      {
+         backOff(attempt);
+      }
+      return element;
+   }
+
+   /**
+    * Waits a little before trying again: spins at first, then yields, then parks.
+    *
+    * @param attempt the number of failed attempts so far.
+    */
+   static void backOff(int attempt)
+   {
+      if (Thread.currentThread().isInterrupted())
+      {
+         throw new RuntimeException(new InterruptedException());
+      }
+
+      if (attempt < SPINS)
+      {
+         Thread.onSpinWait();
+      }
+      else if (attempt < 2 * SPINS)
+      {
+         Thread.yield();
+      }
+      else
+      {
+         LockSupport.parkNanos(PARK_NANOS);
+      }
+   } // static void backOff(int attempt)
+
+   /**
+    * @return the number of elements in the queue. Only a snapshot while other threads are using it.
+    */
+   public int size()
+   {
+      return (int) Math.max(0L, Math.min(mask + 1L, tail.get() - head.get()));
+   }
+} // public class RingQueue
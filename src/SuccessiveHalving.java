@@ -0,0 +1,430 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Schedules hyperparameter trials by successive halving instead of training every one to the end. A bracket starts
+ * many trials (see HyperparameterSweep.Trial) with a small budget of epochs, keeps the best 1/eta of them, and trains
+ * those on from where they stopped with eta times the budget, until one is left, the budget reaches maxEpochs, or the
+ * best has an error under the threshold. Each trial keeps its NeuralNet between rungs and trains it with trainEpoch, so
+ * a survivor resumes from its weights in memory; the networks of eliminated trials are dropped. Hyperband runs
+ * brackets from many trials with a small budget to few trials with the whole budget, which hedges against
+ * configurations that only get good late.
+ *
+ * Every rung of every bracket trains on one worker pool. The error is the one trainNeural compares with the
+ * threshold, the last iteration's running average, so rankings agree with HyperparameterSweep. A trial's own
+ * maxIterations is ignored; the scheduler sets the budget. All survivors of a rung are in memory at once, which for
+ * the finger topology is about 300 MB a network. Nothing is printed while scheduling; getRungs() has the best trial
+ * of every rung.
+ *
+ *    java SuccessiveHalving [data [maxEpochs [threshold [seed [threads]]]]]
+ *    java SuccessiveHalving xor 10000 0.01 42
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class SuccessiveHalving
+{
+   /**
+    * A trial being scheduled: its network and how far it got.
+    */
+   public static class Candidate
+   {
+      private HyperparameterSweep.Trial trial;
+      private NeuralNet net;
+      private int epochs;
+      private double error = Double.NaN;
+      private int rungs;
+      private int bracket;
+
+      public HyperparameterSweep.Trial getTrial()
+      {
+         return trial;
+      }
+
+      /**
+       * @return the trained network, or null if the trial was eliminated.
+       */
+      public NeuralNet getNet()
+      {
+         return net;
+      }
+
+      public int getEpochs()
+      {
+         return epochs;
+      }
+
+      public double getError()
+      {
+         return error;
+      }
+
+      /**
+       * @return the rungs the trial was trained in, 1 if it was eliminated after the first.
+       */
+      public int getRungs()
+      {
+         return rungs;
+      }
+   } // public static class Candidate
+
+   /**
+    * One rung of a bracket: the trials trained to the same budget and the best of them.
+    */
+   public static class Rung
+   {
+      private int bracket;
+      private int trials;
+      private int epochs;
+      private Candidate best;
+      private double bestError;
+
+      public int getBracket()
+      {
+         return bracket;
+      }
+
+      public int getTrials()
+      {
+         return trials;
+      }
+
+      /**
+       * @return the epochs every trial of the rung was trained to, unless it reached the threshold sooner.
+       */
+      public int getEpochs()
+      {
+         return epochs;
+      }
+
+      public Candidate getBest()
+      {
+         return best;
+      }
+
+      /**
+       * @return the best error at the end of the rung; the best candidate's error changes if it trains on.
+       */
+      public double getBestError()
+      {
+         return bestError;
+      }
+   } // public static class Rung
+
+   private Dataset data;
+   private double errorThreshold;
+   private int eta;
+   private ExecutorService pool;
+
+   /**
+    * The rungs of the last run or hyperband, in the order they were trained.
+    */
+   private List<Rung> rungs = new ArrayList<>();
+
+   /**
+    * Under the threshold first, in fewer epochs, then the lower error. NaN (never trained) goes last.
+    */
+   private Comparator<Candidate> ranking = (a, b) -> {
+      boolean aReached = a.error < errorThreshold;
+      boolean bReached = b.error < errorThreshold;
+      if (aReached != bReached)
+      {
+         return aReached ? -1 : 1;
+      }
+      return aReached ? Integer.compare(a.epochs, b.epochs) : Double.compare(a.error, b.error);
+   };
+
+   /**
+    * Constructor for a scheduler.
+    *
+    * @param data           the training sets, shared by every trial.
+    * @param errorThreshold the error at which a trial is good enough and stops.
+    * @param eta            the factor the trials are cut by and the budget grows by each rung, usually 3.
+    * @param threads        the trials trained at once.
+    */
+   public SuccessiveHalving(Dataset data, double errorThreshold, int eta, int threads)
+   {
+      if (eta < 2)
+      {
+         throw new IllegalArgumentException("eta must be at least 2, not " + eta);
+      }
+      this.data = data;
+      this.errorThreshold = errorThreshold;
+      this.eta = eta;
+      pool = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+         Thread thread = new Thread(runnable, "SuccessiveHalving worker");
+         thread.setDaemon(true);
+         return thread;
+      });
+   } // public SuccessiveHalving(Dataset data, double errorThreshold, int eta, int threads)
+
+   /**
+    * Runs one bracket of successive halving.
+    *
+    * @param trials    the trials to start.
+    * @param minEpochs the budget of the first rung.
+    * @param maxEpochs the most epochs any trial trains.
+    * @return every trial, best first.
+    */
+   public List<Candidate> run(List<HyperparameterSweep.Trial> trials, int minEpochs, int maxEpochs)
+   {
+      rungs = new ArrayList<>();
+      return bracket(trials, minEpochs, maxEpochs, 0);
+   }
+
+   private List<Candidate> bracket(List<HyperparameterSweep.Trial> trials, int minEpochs, int maxEpochs, int number)
+   {
+      List<Candidate> all = new ArrayList<>();
+      for (HyperparameterSweep.Trial trial : trials)
+      {
+         Candidate candidate = new Candidate();
+         candidate.trial = trial;
+         candidate.bracket = number;
+         all.add(candidate);
+      }
+
+      List<Candidate> survivors = new ArrayList<>(all);
+      int budget = Math.max(1, Math.min(minEpochs, maxEpochs));
+      while (true)
+      {
+         List<Callable<Void>> rung = new ArrayList<>();
+         for (Candidate candidate : survivors)
+         {
+            int epochs = budget;
+            rung.add(() -> {
+               trainTo(candidate, epochs, maxEpochs);
+               return null;
+            });
+         }
+         invokeAll(rung);
+         Collections.sort(survivors, ranking);
+         Candidate best = survivors.get(0);
+         Rung done = new Rung();
+         done.bracket = number;
+         done.trials = survivors.size();
+         done.epochs = budget;
+         done.best = best;
+         done.bestError = best.error;
+         rungs.add(done);
+
+         if (survivors.size() <= 1 || budget >= maxEpochs || best.error < errorThreshold)
+         {
+            break;
+         }
+         int keep = Math.max(1, survivors.size() / eta);
+         for (Candidate eliminated : survivors.subList(keep, survivors.size()))
+         {
+            eliminated.net = null;                       // Frees its weights; only the survivors go on.
+         }
+         survivors = new ArrayList<>(survivors.subList(0, keep));
+         budget = (int) Math.min((long) maxEpochs, (long) budget * eta);
+      } // while (true)
+
+      Collections.sort(all, ranking);
+      return all;
+   } // private List<Candidate> bracket(List<HyperparameterSweep.Trial> trials, int minEpochs, int maxEpochs, ...)
+
+   /**
+    * Runs Hyperband: brackets from the most trials at minEpochs to the fewest at maxEpochs, each spending about the
+    * same number of epochs.
+    *
+    * @param minEpochs the smallest budget a trial is judged on.
+    * @param maxEpochs the most epochs any trial trains.
+    * @param sample    makes the given number of new trials for a bracket, e.g. with HyperparameterSweep.random.
+    * @return the trials of every bracket, best first.
+    */
+   public List<Candidate> hyperband(int minEpochs, int maxEpochs, IntFunction<List<HyperparameterSweep.Trial>> sample)
+   {
+      minEpochs = Math.max(1, Math.min(minEpochs, maxEpochs));
+      int sMax = 0;
+      while ((long) minEpochs * pow(eta, sMax + 1) <= maxEpochs)
+      {
+         sMax++;
+      }
+
+      rungs = new ArrayList<>();
+      List<Candidate> all = new ArrayList<>();
+      for (int s = sMax; s >= 0; s--)
+      {
+         int count = (int) Math.ceil((double) (sMax + 1) / (s + 1) * pow(eta, s));
+         int budget = (int) Math.max(minEpochs, maxEpochs / pow(eta, s));
+         all.addAll(bracket(sample.apply(count), budget, maxEpochs, sMax - s));
+      }
+      Collections.sort(all, ranking);
+      return all;
+   } // public List<Candidate> hyperband(int minEpochs, int maxEpochs, ...)
+
+   private static long pow(int base, int exponent)
+   {
+      long result = 1L;
+      for (int i = 0; i < exponent; i++)
+      {
+         result *= base;
+      }
+      return result;
+   }
+
+   /**
+    * Trains a trial on until it has trained epochs epochs or its error is under the threshold, making its network
+    * the first time.
+    */
+   private void trainTo(Candidate candidate, int epochs, int maxEpochs)
+   {
+      HyperparameterSweep.Trial trial = candidate.trial;
+      if (candidate.net == null)
+      {
+         candidate.net = new NeuralNet(data.withHiddenLayer(trial.getHiddenLayer()));
+         candidate.net.setGradient(trial.getLambda(), maxEpochs, errorThreshold, trial.getMinWeight(),
+            trial.getMaxWeight());
+         candidate.net.setSeed(trial.getSeed());
+         candidate.net.setWeightsRandom();
+      }
+
+      while (candidate.epochs < epochs && !(candidate.error < errorThreshold))
+      {
+         candidate.error = candidate.net.trainEpoch();
+         candidate.epochs++;
+      }
+      candidate.rungs++;
+   } // private void trainTo(Candidate candidate, int epochs, int maxEpochs)
+
+   private void invokeAll(List<Callable<Void>> tasks)
+   {
+      try
+      {
+         for (Future<Void> future : pool.invokeAll(tasks))
+         {
+            future.get();
+         }
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(e);
+      }
+      catch (ExecutionException e)
+      {
+         throw new RuntimeException(e.getCause());
+      }
+   } // private void invokeAll(List<Callable<Void>> tasks)
+
+   /**
+    * Stops the worker pool. The scheduler cannot be used afterwards.
+    */
+   public void close()
+   {
+      pool.shutdownNow();
+   }
+
+   /**
+    * @return the rungs of the last run or hyperband, in the order they were trained.
+    */
+   public List<Rung> getRungs()
+   {
+      return rungs;
+   }
+
+   /**
+    * Prints a line per rung of the last run or hyperband.
+    */
+   public void printRungs()
+   {
+      for (Rung rung : rungs)
+      {
+         System.out.printf("Bracket %d, %d trials at %d epochs: best error %.6f (%s).%n", rung.bracket, rung.trials,
+            rung.epochs, rung.bestError, rung.best.trial);
+      }
+   }
+
+   /**
+    * Prints the best trials as a table.
+    *
+    * @param results the trials, best first.
+    * @param rows    the most rows to print.
+    */
+   public void printTable(List<Candidate> results, int rows)
+   {
+      System.out.printf("%4s %7s %-10s %10s %18s %8s %6s %12s%n", "Rank", "Bracket", "Hidden", "Lambda", "Weights",
+         "Epochs", "Rungs", "Error");
+      for (int i = 0; i < Math.min(rows, results.size()); i++)
+      {
+         Candidate candidate = results.get(i);
+         HyperparameterSweep.Trial trial = candidate.trial;
+         int[] hidden = trial.getHiddenLayer();
+         System.out.printf("%4d %7d %-10s %10.4g %18s %8d %6d %12.6f%n", i + 1, candidate.bracket,
+            hidden[0] + "-" + hidden[1], trial.getLambda(),
+            String.format("%.3g - %.3g", trial.getMinWeight(), trial.getMaxWeight()), candidate.epochs,
+            candidate.rungs, candidate.error);
+      }
+
+      long epochs = 0L;
+      for (Candidate candidate : results)
+      {
+         epochs += candidate.epochs;
+      }
+      System.out.println(results.size() + " trials, " + epochs + " epochs in all; threshold " + errorThreshold
+         + ", eta " + eta + ".");
+   } // public void printTable(List<Candidate> results, int rows)
+
+   /**
+    * Runs Hyperband on a problem or a config file, with random trials over the space HyperparameterSweep.main
+    * searches, and prints every rung and the best twenty. The smallest budget is maxEpochs / 81, so there are five
+    * brackets.
+    *
+    * @param args [data [maxEpochs [threshold [seed [threads]]]]]: xor, all or finger (see EngineComparison.problem)
+    *             or a config file (default xor), the most epochs a trial trains (default the problem's, or 10000),
+    *             the error threshold (default 0.01), the seed (default 42) and the threads (default one per
+    *             processor).
+    */
+   public static void main(String[] args) throws IOException
+   {
+      String name = args.length > 0 ? args[0] : "xor";
+      double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+      long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+      int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+      Dataset data;
+      int maxEpochs = 10000;
+      if (name.equalsIgnoreCase("xor") || name.equalsIgnoreCase("all") || name.equalsIgnoreCase("finger"))
+      {
+         EngineComparison.Problem problem = EngineComparison.problem(name);
+         data = problem.toDataset(problem.getTwoHidden());
+         maxEpochs = problem.getMaxEpochs();
+      }
+      else
+      {
+         data = DatasetCache.load(name);
+      }
+      if (args.length > 1)
+      {
+         maxEpochs = Integer.parseInt(args[1]);
+      }
+
+      int[] own = data.getHiddenLayer();
+      int[][] hiddenLayers = {{Math.max(1, own[0] / 2), Math.max(1, own[1] / 2)}, own, {own[0] * 2, own[1] * 2}};
+      int budget = maxEpochs;
+      SplittableRandom brackets = new SplittableRandom(seed);
+      SuccessiveHalving scheduler = new SuccessiveHalving(data, threshold, 3, threads);
+      try
+      {
+         List<Candidate> results = scheduler.hyperband(Math.max(1, budget / 81), budget, count -> {
+            return HyperparameterSweep.random(count, brackets.nextLong(), hiddenLayers, 0.5, 20.0, 0.25, 3.0, budget);
+         });
+         scheduler.printRungs();
+         scheduler.printTable(results, 20);
+      }
+      finally
+      {
+         scheduler.close();
+      }
+   } // public static void main(String[] args)
+} // public class SuccessiveHalving
@@ -0,0 +1,74 @@
+/**
+ * What a TrainingListener is told about a training run. Listeners run on another thread while the network keeps
+ * training, so an event is a copy of the values at the time it happened rather than a view of the network.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public final class TrainingEvent
+{
+   private final String topology;
+   private final int iteration;
+   private final int maxIterations;
+   private final double error;
+   private final double errorThreshold;
+   private final double lambda;
+   private final String file;
+
+   /**
+    * Constructor for an event.
+    *
+    * @param topology       the layer sizes, e.g. "2500-10-50-5".
+    * @param iteration      the iteration, from 1, or the iterations trained so far for a checkpoint.
+    * @param maxIterations  the most iterations the run will train.
+    * @param error          the error of the iteration, or NaN if it has not ended.
+    * @param errorThreshold the error below which training stops.
+    * @param lambda         the learning factor.
+    * @param file           the file written, or null unless this is a checkpoint.
+    */
+   TrainingEvent(String topology, int iteration, int maxIterations, double error, double errorThreshold,
+                 double lambda, String file)
+   {
+      this.topology = topology;
+      this.iteration = iteration;
+      this.maxIterations = maxIterations;
+      this.error = error;
+      this.errorThreshold = errorThreshold;
+      this.lambda = lambda;
+      this.file = file;
+   }
+
+   public String getTopology()
+   {
+      return topology;
+   }
+
+   public int getIteration()
+   {
+      return iteration;
+   }
+
+   public int getMaxIterations()
+   {
+      return maxIterations;
+   }
+
+   public double getError()
+   {
+      return error;
+   }
+
+   public double getErrorThreshold()
+   {
+      return errorThreshold;
+   }
+
+   public double getLambda()
+   {
+      return lambda;
+   }
+
+   public String getFile()
+   {
+      return file;
+   }
+} // public final class TrainingEvent
@@ -0,0 +1,47 @@
+/**
+ * Receives the progress of a training run: NeuralNet.trainNeural and Perceptron.train report every iteration and why
+ * they stopped, and NeuralNet.writeWeights reports every weights file it writes. Listeners are added to a network with
+ * addTrainingListener and are called on the TrainingListeners delivery thread, never on the training thread, so a
+ * slow listener delays the delivery of later events but not the training. A listener that falls far behind misses
+ * some epochStarted and epochEnded events (see TrainingListeners.MAX_PENDING_EPOCHS), never the others. Every method
+ * does nothing unless overridden. ConsoleTrainingListener prints what the networks used to print themselves.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public interface TrainingListener
+{
+   /**
+    * An iteration is about to train.
+    */
+   default void epochStarted(TrainingEvent event)
+   {
+   }
+
+   /**
+    * An iteration finished; the event has its error.
+    */
+   default void epochEnded(TrainingEvent event)
+   {
+   }
+
+   /**
+    * The error of the iteration just ended is below the error threshold, so training stops.
+    */
+   default void thresholdReached(TrainingEvent event)
+   {
+   }
+
+   /**
+    * The iteration just ended was the last one allowed, so training stops.
+    */
+   default void maxIterationsReached(TrainingEvent event)
+   {
+   }
+
+   /**
+    * The weights were written to event.getFile().
+    */
+   default void checkpointSaved(TrainingEvent event)
+   {
+   }
+} // public interface TrainingListener
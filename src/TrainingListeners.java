@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The listeners of one network and the delivery of its events to them. The training thread only queues an event
+ * (and makes nothing at all while there are no listeners); a single daemon thread shared by every network calls the
+ * listeners, in the order the events happened. A listener that throws is reported on System.err and the others still
+ * get the event. An event goes to the listeners there were when it happened.
+ *
+ * A listener slower than the training would let the queue grow without end on a long run, so at most
+ * MAX_PENDING_EPOCHS epochStarted and epochEnded events of a network wait at once; while that many wait, further ones
+ * are dropped and counted (see getDroppedEpochEvents). Threshold, max iterations and checkpoint events are never
+ * dropped.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class TrainingListeners
+{
+   /**
+    * The most epoch events of one network that may wait for delivery.
+    */
+   public static final int MAX_PENDING_EPOCHS = 1024;
+
+   private static ExecutorService delivery;
+
+   /**
+    * Never changed, only replaced, so an event can keep the list it was dispatched to.
+    */
+   private volatile List<TrainingListener> listeners = List.of();
+
+   /**
+    * Whether anything was queued since the last flush.
+    */
+   private boolean queued;
+
+   /**
+    * Epoch events queued and not yet delivered, and those dropped because too many were.
+    */
+   private AtomicInteger pendingEpochs = new AtomicInteger();
+   private AtomicLong droppedEpochs = new AtomicLong();
+
+   /**
+    * @return the delivery thread shared by every network, created on first use.
+    */
+   private static synchronized ExecutorService delivery()
+   {
+      if (delivery == null)
+      {
+         delivery = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TrainingListeners delivery");
+            thread.setDaemon(true);
+            return thread;
+         });
+      }
+      return delivery;
+   }
+
+   public synchronized void add(TrainingListener listener)
+   {
+      List<TrainingListener> changed = new ArrayList<>(listeners);
+      changed.add(listener);
+      listeners = List.copyOf(changed);
+   }
+
+   public synchronized void remove(TrainingListener listener)
+   {
+      List<TrainingListener> changed = new ArrayList<>(listeners);
+      changed.remove(listener);
+      listeners = List.copyOf(changed);
+   }
+
+   /**
+    * @return true if no listener would be told anything, so the caller need not make an event.
+    */
+   public boolean isEmpty()
+   {
+      return listeners.isEmpty();
+   }
+
+   /**
+    * Queues an event for every listener. Returns at once. The event is never dropped.
+    *
+    * @param call the listener method and its event, e.g. listener -> listener.thresholdReached(event).
+    */
+   public void dispatch(Consumer<TrainingListener> call)
+   {
+      List<TrainingListener> targets = listeners;
+      if (targets.isEmpty())
+      {
+         return;
+      }
+      queued = true;
+      delivery().execute(() -> deliver(targets, call));
+   }
+
+   /**
+    * Queues an epochStarted or epochEnded event for every listener, unless MAX_PENDING_EPOCHS of them are already
+    * waiting, in which case it is dropped and counted. Returns at once.
+    *
+    * @param call the listener method and its event, e.g. listener -> listener.epochEnded(event).
+    */
+   public void dispatchEpoch(Consumer<TrainingListener> call)
+   {
+      List<TrainingListener> targets = listeners;
+      if (targets.isEmpty())
+      {
+         return;
+      }
+      if (pendingEpochs.incrementAndGet() > MAX_PENDING_EPOCHS)
+      {
+         pendingEpochs.decrementAndGet();
+         droppedEpochs.incrementAndGet();
+         return;
+      }
+      queued = true;
+      delivery().execute(() -> {
+         pendingEpochs.decrementAndGet();
+         deliver(targets, call);
+      });
+   } // public void dispatchEpoch(Consumer<TrainingListener> call)
+
+   /**
+    * Calls every listener, on the delivery thread.
+    */
+   private static void deliver(List<TrainingListener> targets, Consumer<TrainingListener> call)
+   {
+      for (TrainingListener listener : targets)
+      {
+         try
+         {
+            call.accept(listener);
+         }
+         catch (RuntimeException e)
+         {
+            System.err.println("Training listener " + listener + " failed: " + e);
+         }
+      }
+   } // private static void deliver(List<TrainingListener> targets, Consumer<TrainingListener> call)
+
+   /**
+    * @return the epoch events dropped so far because the listeners were too far behind.
+    */
+   public long getDroppedEpochEvents()
+   {
+      return droppedEpochs.get();
+   }
+
+   /**
+    * Waits until every event queued so far has been delivered, e.g. so console output from the listeners comes
+    * before whatever the caller prints next. Called after training, never inside it, by the training thread.
+    */
+   public void flush()
+   {
+      if (!queued)
+      {
+         return;
+      }
+      queued = false;
+      try
+      {
+         delivery().submit(() -> { }).get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+      catch (ExecutionException e)
+      {
+         throw new RuntimeException(e);
+      }
+   } // public void flush()
+} // public class TrainingListeners
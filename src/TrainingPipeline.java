@@ -0,0 +1,405 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads a training set in stages so training can start on the first images while later ones are still being read
+ * and decoded. The stages are
+ *    read      - loads each file into a ByteBuffer (memory mapped when large, see DibDump.readFile)
+ *    decode    - decodes a bitmap to input activations with DibDump.decodeToInputs, or parses a pel file
+ *    normalize - resamples the activations if the config has a resample line, and stores them in the Dataset
+ *    batch     - groups the training sets into batches
+ *    train     - the trainer, on the caller's thread (see NeuralNet.trainNeural(TrainingPipeline))
+ * Each stage runs on its own executor and passes its work to the next through a bounded lock-free RingQueue, so a
+ * fast stage waits for a slow one instead of piling up work. Every stage counts its items and the time it was busy,
+ * and printReport() shows which stage limits the throughput.
+ *
+ * The config file has the format read by DatasetCache, except that each training set may name a .bmp file instead of
+ * a pel file.
+ * @author Nathan Wang
+ * @version October 19, 2026
+ */
+public class TrainingPipeline
+{
+   /**
+    * One training set on its way through the stages.
+    */
+   private static class Item
+   {
+      private int set;
+      private ByteBuffer bytes;
+      private double[] pels;
+   }
+
+   /**
+    * The throughput counters of one stage.
+    */
+   public static class Stage
+   {
+      private String name;
+      private int threads;
+      private AtomicLong items = new AtomicLong();
+      private AtomicLong busyNanos = new AtomicLong();
+
+      private Stage(String name, int threads)
+      {
+         this.name = name;
+         this.threads = threads;
+      }
+
+      /**
+       * Counts one item.
+       *
+       * @param start the System.nanoTime() at which work on the item started.
+       */
+      private void done(long start)
+      {
+         busyNanos.addAndGet(System.nanoTime() - start);
+         items.incrementAndGet();
+      }
+
+      /**
+       * @return the name of the stage.
+       */
+      public String getName()
+      {
+         return name;
+      }
+
+      /**
+       * @return the number of items the stage has finished.
+       */
+      public long getItems()
+      {
+         return items.get();
+      }
+
+      /**
+       * @return the time the stage's threads spent working, added up, in nanoseconds.
+       */
+      public long getBusyNanos()
+      {
+         return busyNanos.get();
+      }
+   } // public static class Stage
+
+   /**
+    * How many items may wait between two stages.
+    */
+   private static final int QUEUE_CAPACITY = 16;
+
+   private Dataset data;
+   private String[] files;
+   private Resampler resampler;
+   private int rawSize;
+   private int batchSize;
+   private int numBatches;
+
+   private RingQueue<Item> readQueue = new RingQueue<Item>(QUEUE_CAPACITY);
+   private RingQueue<Item> decodeQueue = new RingQueue<Item>(QUEUE_CAPACITY);
+   private RingQueue<Item> normalizeQueue = new RingQueue<Item>(QUEUE_CAPACITY);
+   private RingQueue<int[]> batchQueue = new RingQueue<int[]>(QUEUE_CAPACITY);
+
+   private Stage read = new Stage("read", 1);
+   private Stage decode;
+   private Stage normalize = new Stage("normalize", 1);
+   private Stage batch = new Stage("batch", 1);
+   private Stage train = new Stage("train", 1);
+
+   private List<ExecutorService> executors = new ArrayList<ExecutorService>();
+   private volatile Throwable failure;
+   private long startNanos;
+   private long endNanos;
+
+   /**
+    * Constructor for a pipeline. Reads the config file, but no training set until start() is called.
+    *
+    * @param config        the config file.
+    * @param batchSize     the number of training sets in each batch.
+    * @param decodeThreads the number of threads decoding at the same time.
+    */
+   public TrainingPipeline(String config, int batchSize, int decodeThreads)
+   {
+      this.batchSize = Math.max(1, batchSize);
+      decode = new Stage("decode", Math.max(1, decodeThreads));
+
+      try
+      {
+         Scanner in = new Scanner(new File(config));
+         int numInputNodes = in.nextInt();
+         int[] hiddenLayer = new int[in.nextInt()];
+         for (int i = 0; i < hiddenLayer.length; i++)
+         {
+            hiddenLayer[i] = in.nextInt();
+         }
+         int numOutputNodes = in.nextInt();
+         int numSets = in.nextInt();
+
+         files = new String[numSets];
+         for (int set = 0; set < numSets; set++)
+         {
+            files[set] = in.next();
+         }
+
+         double[][] expected = new double[numSets][numOutputNodes];
+         for (int t = 0; t < numSets; t++)
+         {
+            for (int i = 0; i < numOutputNodes; i++)
+            {
+               expected[t][i] = in.nextDouble();
+            }
+         }
+
+         if (in.hasNext(Resampler.KEYWORD))
+         {
+            in.next();
+            resampler = Resampler.read(in);
+         }
+         in.close();
+
+         rawSize = numInputNodes;
+         int inputs = resampler == null ? numInputNodes : resampler.getTargetSize();
+         data = new Dataset(inputs, hiddenLayer, numOutputNodes, new double[numSets][inputs], expected, resampler);
+         numBatches = (numSets + this.batchSize - 1) / this.batchSize;
+      } // Reads the config file. try{
+      catch (FileNotFoundException e)
+      {
+         throw new RuntimeException(e);
+      }
+   } // public TrainingPipeline(String config, int batchSize, int decodeThreads)
+
+   /**
+    * @return the dataset the pipeline fills. A training set's row is only complete once its batch has been taken.
+    */
+   public Dataset getDataset()
+   {
+      return data;
+   }
+
+   /**
+    * @return the number of batches takeBatch() will return.
+    */
+   public int getNumBatches()
+   {
+      return numBatches;
+   }
+
+   /**
+    * Starts every stage but training.
+    */
+   public void start()
+   {
+      startNanos = System.nanoTime();
+      int numSets = data.getNumSets();
+
+      runStage(read, () -> {
+         for (int set = 0; set < numSets; set++)
+         {
+            long start = System.nanoTime();
+            Item item = new Item();
+            item.set = set;
+            item.bytes = DibDump.readFile(files[set]);
+            read.done(start);
+            readQueue.put(item);
+         }
+      });
+
+      AtomicInteger claimed = new AtomicInteger();
+      runStage(decode, () -> {
+         DibDump dib = new DibDump();
+         dib.verbose = false;
+         while (claimed.getAndIncrement() < numSets)
+         {
+            Item item = readQueue.take();
+            long start = System.nanoTime();
+            item.pels = new double[rawSize];
+            if (files[item.set].toLowerCase().endsWith(".bmp"))
+            {
+               dib.decodeToInputs(item.bytes, item.pels);
+            }
+            else
+            {
+               parsePels(item.bytes, item.pels);
+            }
+            item.bytes = null;
+            decode.done(start);
+            decodeQueue.put(item);
+         }
+      });
+
+      runStage(normalize, () -> {
+         for (int n = 0; n < numSets; n++)
+         {
+            Item item = decodeQueue.take();
+            long start = System.nanoTime();
+            double[] row = data.getInputSets()[item.set];
+            if (resampler == null)
+            {
+               System.arraycopy(item.pels, 0, row, 0, row.length);
+            }
+            else
+            {
+               resampler.resample(item.pels, row);
+            }
+            item.pels = null;
+            normalize.done(start);
+            normalizeQueue.put(item);
+         }
+      });
+
+      runStage(batch, () -> {
+         for (int b = 0; b < numBatches; b++)
+         {
+            int[] sets = new int[Math.min(batchSize, numSets - b * batchSize)];
+            for (int i = 0; i < sets.length; i++)
+            {
+               Item item = normalizeQueue.take();
+               long start = System.nanoTime();
+               sets[i] = item.set;
+               batch.done(start);
+            }
+            batchQueue.put(sets);
+         }
+      });
+   } // public void start()
+
+   /**
+    * The work of one stage.
+    */
+   private interface StageWork
+   {
+      void run() throws Exception;
+   }
+
+   /**
+    * Runs a stage on its own executor, one copy of work per thread. If any stage fails, every stage is stopped and the
+    * trainer's next takeBatch() throws.
+    */
+   private void runStage(Stage stage, StageWork work)
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(stage.threads, runnable -> {
+         Thread thread = new Thread(runnable, "Pipeline " + stage.name);
+         thread.setDaemon(true);
+         return thread;
+      });
+      executors.add(executor);
+
+      for (int t = 0; t < stage.threads; t++)
+      {
+         executor.execute(() -> {
+            try
+            {
+               work.run();
+            }
+            catch (Throwable e)
+            {
+               if (failure == null)
+               {
+                  failure = e;
+               }
+               close();
+            }
+         });
+      }
+      executor.shutdown();                                     // The threads exit when their work is done.
+   } // private void runStage(Stage stage, StageWork work)
+
+   /**
+    * Parses the doubles of a pel file.
+    */
+   private static void parsePels(ByteBuffer bytes, double[] pels)
+   {
+      byte[] text = new byte[bytes.remaining()];
+      bytes.get(text);
+      Scanner in = new Scanner(new String(text, StandardCharsets.US_ASCII));
+      for (int k = 0; k < pels.length; k++)
+      {
+         pels[k] = in.nextDouble();
+      }
+   }
+
+   /**
+    * Waits for the next batch. Its training sets are complete in the dataset.
+    *
+    * @return the indexes of the training sets in the batch.
+    */
+   public int[] takeBatch()
+   {
+      int[] sets;
+      for (int attempt = 0; (sets = batchQueue.poll()) == null; attempt++)
+      {
+         if (failure != null)
+         {
+            throw new RuntimeException("Training pipeline failed", failure);
+         }
+         RingQueue.backOff(attempt);
+      }
+      endNanos = System.nanoTime();
+      return sets;
+   } // public int[] takeBatch()
+
+   /**
+    * Counts a batch the trainer has finished.
+    *
+    * @param start the System.nanoTime() at which training on the batch started.
+    * @param sets  the number of training sets in the batch.
+    */
+   public void trained(long start, int sets)
+   {
+      train.busyNanos.addAndGet(System.nanoTime() - start);
+      train.items.addAndGet(sets);
+      endNanos = System.nanoTime();
+   }
+
+   /**
+    * Stops every stage.
+    */
+   public void close()
+   {
+      for (ExecutorService executor : executors)
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * @return the counters of each stage, in pipeline order.
+    */
+   public Stage[] getStages()
+   {
+      return new Stage[] {read, decode, normalize, batch, train};
+   }
+
+   /**
+    * Prints the items, busy time, throughput and utilization of every stage. Throughput is items per second of busy
+    * time across the stage's threads, i.e. how fast the stage could go if it never waited; the stage with the highest
+    * utilization is the bottleneck.
+    */
+   public void printReport()
+   {
+      double wall = Math.max(1L, endNanos - startNanos);
+      Stage bottleneck = null;
+      System.out.printf("Pipeline: %d training sets in %.3f ms\n", data.getNumSets(), wall / 1e6);
+      for (Stage stage : getStages())
+      {
+         double busy = stage.busyNanos.get();
+         double utilization = busy / (wall * stage.threads);
+         System.out.printf("  %-10s %2d thread(s) %6d items %10.3f ms busy %12.1f items/s %6.1f%% busy\n", stage.name,
+            stage.threads, stage.items.get(), busy / 1e6, stage.items.get() * 1e9 * stage.threads / Math.max(1.0, busy),
+            100.0 * utilization);
+         if (bottleneck == null || busy / stage.threads > bottleneck.busyNanos.get() / (double) bottleneck.threads)
+         {
+            bottleneck = stage;
+         }
+      }
+      System.out.println("  Bottleneck: " + bottleneck.name);
+   } // public void printReport()
+} // public class TrainingPipeline